@@ -0,0 +1,172 @@
+package com.dbcontrol;
+
+import com.dbcontrol.config.DBControlConfig;
+import com.dbcontrol.results.DBMetaData.DBFieldType;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+/**
+ * The embedded in-memory Derby database the benchmarks run against, created once per JVM (JMH forks a JVM per benchmark).<br>
+ * bench_types has a column for each DBFieldType, bench_wide has {@link #WIDE_COLUMNS} mixed columns to select different row widths from.
+ */
+final class BenchDatabase {
+    static final String URL = "jdbc:derby:memory:bench;create=true";
+    static final int TYPE_ROWS = 1000;
+    static final int WIDE_ROWS = 10000;
+    static final int WIDE_COLUMNS = 32;
+
+    private static boolean created = false;
+
+    private BenchDatabase() {
+    }
+
+    /**
+     * Configuration for a DBControl on the benchmark database, with a statement cache so repeated SQL reuses statements.
+     */
+    static DBControlConfig config() throws SQLException {
+        create();
+        DBControlConfig config = DBControlConfig.derby("memory:bench");
+        config.setStatementCacheSize(32);
+        //benchmarks measure DBControl, not logging
+        config.getStatementInterceptors().clear();
+        return config;
+    }
+
+    /**
+     * A plain JDBC connection to the benchmark database.
+     */
+    static Connection connect() throws SQLException {
+        create();
+        return DriverManager.getConnection(URL);
+    }
+
+    /**
+     * The bench_types column that holds values of the type.<br>
+     * Derby has no NVARCHAR, TINYINT or FLOAT (single precision) columns, so those types are read from VARCHAR, SMALLINT and REAL columns
+     * through DBMetaData that declares the DBFieldType; DBRow reads them the same way it would from a database that has them.
+     */
+    static String typeColumn(DBFieldType type) {
+        switch (type) {
+            case NVARCHAR:
+                return "t_varchar";
+            case LONG:
+                return "t_bigint";
+            case SHORT:
+                return "t_smallint";
+            case FLOAT:
+                return "t_real";
+            case DATETIME:
+                return "t_timestamp";
+            default:
+                return "t_" + type.name().toLowerCase();
+        }
+    }
+
+    private static synchronized void create() throws SQLException {
+        if (created) {
+            return;
+        }
+        try (Connection connection = DriverManager.getConnection(URL)) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE bench_types (id INT PRIMARY KEY, t_char CHAR(16), t_varchar VARCHAR(64), t_clob CLOB,"
+                        + " t_bigint BIGINT, t_int INT, t_smallint SMALLINT, t_real REAL, t_double DOUBLE, t_decimal DECIMAL(15, 2),"
+                        + " t_date DATE, t_timestamp TIMESTAMP, t_time TIME, t_bool BOOLEAN, t_binary CHAR(16) FOR BIT DATA)");
+                StringBuilder wide = new StringBuilder("CREATE TABLE bench_wide (id INT PRIMARY KEY");
+                for (int c = 1; c <= WIDE_COLUMNS; c++) {
+                    wide.append(", c").append(c).append(wideType(c));
+                }
+                statement.execute(wide.append(")").toString());
+                statement.execute("CREATE TABLE bench_dml (id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, name VARCHAR(64),"
+                        + " amount DECIMAL(15, 2), created TIMESTAMP, active BOOLEAN)");
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO bench_types VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < TYPE_ROWS; i++) {
+                    ps.setInt(1, i);
+                    ps.setString(2, "char" + i);
+                    ps.setString(3, "varchar value " + i);
+                    ps.setString(4, "clob value " + i);
+                    ps.setLong(5, now + i);
+                    ps.setInt(6, i);
+                    ps.setShort(7, (short) (i % 128));
+                    ps.setFloat(8, i / 3f);
+                    ps.setDouble(9, i / 7d);
+                    ps.setBigDecimal(10, BigDecimal.valueOf(i * 100L + 99, 2));
+                    ps.setDate(11, new java.sql.Date(now - i * 86400000L));
+                    ps.setTimestamp(12, new Timestamp(now - i * 1000L));
+                    ps.setTime(13, new Time(i * 1000L));
+                    ps.setBoolean(14, i % 2 == 0);
+                    ps.setBytes(15, new byte[]{(byte) i, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15});
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            StringBuilder insert = new StringBuilder("INSERT INTO bench_wide VALUES (?");
+            for (int c = 1; c <= WIDE_COLUMNS; c++) {
+                insert.append(", ?");
+            }
+            try (PreparedStatement ps = connection.prepareStatement(insert.append(")").toString())) {
+                for (int i = 0; i < WIDE_ROWS; i++) {
+                    ps.setInt(1, i);
+                    for (int c = 1; c <= WIDE_COLUMNS; c++) {
+                        switch (c % 4) {
+                            case 0:
+                                ps.setInt(c + 1, i + c);
+                                break;
+                            case 1:
+                                ps.setString(c + 1, "value " + i + " " + c);
+                                break;
+                            case 2:
+                                ps.setTimestamp(c + 1, new Timestamp(i * 60000L + c));
+                                break;
+                            default:
+                                ps.setBigDecimal(c + 1, BigDecimal.valueOf(i * 100L + c, 2));
+                                break;
+                        }
+                    }
+                    ps.addBatch();
+                    if (i % 1000 == 999) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            connection.commit();
+        }
+        created = true;
+    }
+
+    private static String wideType(int column) {
+        switch (column % 4) {
+            case 0:
+                return " INT";
+            case 1:
+                return " VARCHAR(64)";
+            case 2:
+                return " TIMESTAMP";
+            default:
+                return " DECIMAL(15, 2)";
+        }
+    }
+
+    /**
+     * SELECT of the first columns of bench_wide.
+     */
+    static String wideSelect(int width, int rows) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int c = 1; c <= width; c++) {
+            sql.append(c > 1 ? ", c" : "c").append(c);
+        }
+        return sql.append(" FROM bench_wide ORDER BY id FETCH FIRST ").append(rows).append(" ROWS ONLY").toString();
+    }
+}
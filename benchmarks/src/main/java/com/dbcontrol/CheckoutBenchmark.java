@@ -0,0 +1,69 @@
+package com.dbcontrol;
+
+import com.dbcontrol.config.DBControlConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The overhead of withConnection (checking a connection out of the pool and back in) with no statements, from one thread
+ * and from more threads than the pool has connections.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CheckoutBenchmark {
+    @Param({"c3p0", "pooled"})
+    public String pool;
+
+    private DBControl db;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        DBControlConfig config = BenchDatabase.config();
+        config.setMinPoolSize(8);
+        config.setMaxPoolSize(8);
+        if (pool.equals("c3p0")) {
+            C3P0DBControl c3p0 = new C3P0DBControl();
+            c3p0.init(config);
+            db = c3p0;
+        } else {
+            PooledDBControl pooled = new PooledDBControl();
+            pooled.init(config);
+            db = pooled;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Benchmark
+    public DBConnection withConnection() throws SQLException {
+        return db.withConnection(connect -> connect);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public DBConnection withConnectionContended() throws SQLException {
+        return db.withConnection(connect -> connect);
+    }
+}
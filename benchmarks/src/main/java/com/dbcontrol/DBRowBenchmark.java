@@ -0,0 +1,82 @@
+package com.dbcontrol;
+
+import com.dbcontrol.results.DBMetaData;
+import com.dbcontrol.results.DBMetaData.DBFieldType;
+import com.dbcontrol.results.DBRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DBRow construction from a ResultSet for each DBFieldType.<br>
+ * The ResultSet is scrollable so every invocation only moves to a row that has already been read by the driver,
+ * {@link #position()} measures that part alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DBRowBenchmark {
+    @Param({"CHAR", "VARCHAR", "NVARCHAR", "CLOB", "LONG", "INT", "SHORT", "FLOAT", "DOUBLE", "DECIMAL", "DATE", "DATETIME", "TIME", "BOOL", "BINARY"})
+    public DBFieldType type;
+
+    private Connection connection;
+    private Statement statement;
+    private ResultSet rs;
+    private DBMetaData dbm;
+    private int row = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = BenchDatabase.connect();
+        statement = connection.createStatement(ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        rs = statement.executeQuery("SELECT " + BenchDatabase.typeColumn(type) + " AS field FROM bench_types ORDER BY id");
+        dbm = new DBMetaData(new String[]{"field"}, new DBFieldType[]{type}, new int[]{rs.getMetaData().getPrecision(1)});
+        //read every row once so the driver has materialized them
+        while (rs.next()) {
+            rs.getObject(1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        rs.close();
+        statement.close();
+        connection.close();
+    }
+
+    private void next() throws SQLException {
+        row = row % BenchDatabase.TYPE_ROWS + 1;
+        rs.absolute(row);
+    }
+
+    @Benchmark
+    public boolean position() throws SQLException {
+        next();
+        return rs.isAfterLast();
+    }
+
+    @Benchmark
+    public DBRow construct() throws SQLException {
+        next();
+        return new DBRow(dbm, rs);
+    }
+}
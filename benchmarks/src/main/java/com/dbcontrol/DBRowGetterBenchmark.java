@@ -0,0 +1,101 @@
+package com.dbcontrol;
+
+import com.dbcontrol.results.DBRow;
+import org.joda.time.LocalDateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DBRow typed getters by field name (including mixed case names) and by column number,
+ * on a row of the bench_types columns that Derby reports with a DBFieldType.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DBRowGetterBenchmark {
+    private DBRow row;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        try (Connection connection = BenchDatabase.connect();
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT t_char, t_varchar, t_clob, t_bigint, t_int, t_double, t_decimal,"
+                     + " t_date, t_timestamp, t_time, t_bool, t_binary FROM bench_types WHERE id = 1")) {
+            row = DataUtil.getRowsFromResultSet(rs).get(0);
+        }
+    }
+
+    @Benchmark
+    public String getString() {
+        return row.getString("t_varchar");
+    }
+
+    @Benchmark
+    public String getStringMixedCase() {
+        return row.getString("T_VarChar");
+    }
+
+    @Benchmark
+    public String getStringByColumn() {
+        return row.getString(2);
+    }
+
+    @Benchmark
+    public Long getLong() {
+        return row.getLong("t_bigint");
+    }
+
+    @Benchmark
+    public Integer getInt() {
+        return row.getInt("t_int");
+    }
+
+    @Benchmark
+    public Double getDouble() {
+        return row.getDouble("t_double");
+    }
+
+    @Benchmark
+    public BigDecimal getDecimal() {
+        return row.getDecimal("t_decimal");
+    }
+
+    @Benchmark
+    public LocalDateTime getDateTime() {
+        return row.getDateTime("t_timestamp");
+    }
+
+    @Benchmark
+    public Boolean getBool() {
+        return row.getBool("t_bool");
+    }
+
+    @Benchmark
+    public byte[] getBytes() {
+        return row.getBytes("t_binary");
+    }
+
+    @Benchmark
+    public Object getObject() {
+        return row.getObject("t_int");
+    }
+}
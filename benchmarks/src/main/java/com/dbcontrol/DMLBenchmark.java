@@ -0,0 +1,91 @@
+package com.dbcontrol;
+
+import com.dbcontrol.results.DBRow;
+import org.joda.time.LocalDateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * update/directInsert/delete through a C3P0DBControl with a statement cache, including the Derby round trip.<br>
+ * Compare with SqlBuildingBenchmark for the part spent building SQL.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DMLBenchmark {
+    private C3P0DBControl db;
+    private DBRow row;
+    private int counter = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        db = new C3P0DBControl();
+        db.init(BenchDatabase.config());
+        db.withConnection(connect -> connect.directInsert("bench_dml", values()));
+        List<DBRow> rows = db.withConnection(connect -> connect.query("SELECT * FROM bench_dml"));
+        row = rows.get(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clean() throws SQLException {
+        db.withConnection(connect -> connect.directExecute("DELETE FROM bench_dml WHERE id <> ?", row.getInt("id")));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    private Map<String, Object> values() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("name", "row " + counter++);
+        values.put("amount", new BigDecimal("12.50"));
+        values.put("created", new LocalDateTime(2026, 10, 17, 12, 0));
+        values.put("active", true);
+        return values;
+    }
+
+    @Benchmark
+    public Object directInsert() throws SQLException {
+        return db.withConnection(connect -> connect.directInsert("bench_dml", values()));
+    }
+
+    @Benchmark
+    public int update() throws SQLException {
+        Map<String, Object> set = new HashMap<>();
+        set.put("name", "row " + counter++);
+        set.put("active", counter % 2 == 0);
+        Map<String, Object> where = new HashMap<>();
+        where.put("id", row.getInt("id"));
+        return db.withConnection(connect -> connect.update("bench_dml", set, where));
+    }
+
+    @Benchmark
+    public int insertThenDelete() throws SQLException {
+        return db.withConnection(connect -> {
+            Object id = connect.directInsert("bench_dml", values());
+            List<DBRow> inserted = connect.query("SELECT * FROM bench_dml WHERE id = ?", ((Number) id).intValue());
+            return connect.delete("bench_dml", inserted.get(0));
+        });
+    }
+}
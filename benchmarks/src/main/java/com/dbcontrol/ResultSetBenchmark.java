@@ -0,0 +1,91 @@
+package com.dbcontrol;
+
+import com.dbcontrol.results.DBMetaData;
+import com.dbcontrol.results.DBRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataUtil.getRowsFromResultSet for different row widths and row counts of bench_wide.<br>
+ * {@link #iterate()} executes the same query and only reads the values with getObject, so the difference is the cost of building DBRows.
+ * {@link #readRowsWithMetaData()} reuses DBMetaData like cached statements do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetBenchmark {
+    @Param({"1", "8", "32"})
+    public int width;
+
+    @Param({"1", "100", "10000"})
+    public int rows;
+
+    private Connection connection;
+    private PreparedStatement ps;
+    private DBMetaData dbm;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = BenchDatabase.connect();
+        ps = connection.prepareStatement(BenchDatabase.wideSelect(width, rows));
+        try (ResultSet rs = ps.executeQuery()) {
+            dbm = new DBMetaData(rs.getMetaData());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        ps.close();
+        connection.close();
+    }
+
+    @Benchmark
+    public int iterate() throws SQLException {
+        int values = 0;
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                for (int c = 1; c <= width; c++) {
+                    if (rs.getObject(c) != null) {
+                        values++;
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    @Benchmark
+    public List<DBRow> readRows() throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            return DataUtil.getRowsFromResultSet(rs);
+        }
+    }
+
+    @Benchmark
+    public List<DBRow> readRowsWithMetaData() throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            return DataUtil.getRowsFromResultSet(rs, dbm);
+        }
+    }
+}
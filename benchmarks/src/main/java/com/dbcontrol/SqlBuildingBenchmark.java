@@ -0,0 +1,110 @@
+package com.dbcontrol;
+
+import com.dbcontrol.named.NamedQuery;
+import org.joda.time.LocalDateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL building without a database: NamedQuery.toQueryBuilder with scalar and collection parameters, and the column ordering
+ * and DMLShapes lookups that update/directInsert/delete do before preparing their statement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlBuildingBenchmark {
+    @Param({"4", "16"})
+    public int columns;
+
+    @Param({"10", "100"})
+    public int listSize;
+
+    private Map<String, Object> fieldValues;
+    private Map<String, Object> whereValues;
+    private List<Integer> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        fieldValues = new HashMap<>();
+        for (int c = 0; c < columns; c++) {
+            fieldValues.put("Column" + c, c % 2 == 0 ? (Object) ("value " + c) : new BigDecimal(c));
+        }
+        whereValues = new HashMap<>();
+        whereValues.put("id", 1234);
+        whereValues.put("tenant", "acme");
+        whereValues.put("deleted", null);
+        ids = new ArrayList<>();
+        for (int i = 0; i < listSize; i++) {
+            ids.add(i);
+        }
+    }
+
+    @Benchmark
+    public QueryBuilder namedQueryScalars() {
+        return NamedQuery.create("SELECT * FROM customer WHERE tenant = #tenant AND created > #since AND status = #status AND id = #id")
+                .param("tenant", "acme")
+                .param("since", new LocalDateTime(2026, 1, 1, 0, 0))
+                .param("status", 3)
+                .param("id", 1234L)
+                .toQueryBuilder();
+    }
+
+    @Benchmark
+    public QueryBuilder namedQueryList() {
+        return NamedQuery.create("SELECT * FROM customer WHERE tenant = #tenant AND id IN (#ids)")
+                .param("tenant", "acme")
+                .param("ids", ids)
+                .toQueryBuilder();
+    }
+
+    @Benchmark
+    public String insertSql() {
+        List<String> fields = new ArrayList<>(fieldValues.size());
+        for (Map.Entry<String, Object> entry : fieldValues.entrySet()) {
+            if (entry.getValue() != null) {
+                fields.add(entry.getKey());
+            }
+        }
+        fields.sort(DMLShapes.COLUMN_ORDER);
+        return DMLShapes.insert("customer", fields);
+    }
+
+    @Benchmark
+    public String updateSql() {
+        List<String> setColumns = new ArrayList<>(fieldValues.keySet());
+        setColumns.sort(DMLShapes.COLUMN_ORDER);
+        List<String> whereColumns = new ArrayList<>(whereValues.keySet());
+        whereColumns.sort(DMLShapes.COLUMN_ORDER);
+        List<Object> whereParams = new ArrayList<>(whereColumns.size());
+        for (String column : whereColumns) {
+            whereParams.add(DataUtil.getDBObject(whereValues.get(column)));
+        }
+        return DMLShapes.update("customer", setColumns, whereColumns, whereParams);
+    }
+
+    @Benchmark
+    public String deleteSql() {
+        return DMLShapes.delete("customer", Arrays.asList("id", "tenant", "deleted"), Arrays.asList((Object) 1234, "acme", null));
+    }
+}
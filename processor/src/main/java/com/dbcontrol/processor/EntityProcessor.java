@@ -0,0 +1,504 @@
+package com.dbcontrol.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates an EntityMapping for each class annotated with com.dbcontrol.entity.DBTable, in the same package and named after the class with a
+ * Mapping suffix (nested classes are joined with underscores, Eg. Outer_OrderMapping).<br>
+ * The generated class has the INSERT/UPDATE/DELETE/SELECT SQL as constants, binds each column with the typed PreparedStatement setter for its
+ * field's type, and has static insert/update/delete methods and batch variants (insertAll/updateAll/deleteAll) that call DBConnection.<br>
+ * The annotations are found by name so the processor doesn't depend on dbcontrol.
+ */
+@SupportedAnnotationTypes(EntityProcessor.DB_TABLE)
+public class EntityProcessor extends AbstractProcessor {
+    static final String DB_TABLE = "com.dbcontrol.entity.DBTable";
+    private static final String DB_COLUMN = "com.dbcontrol.entity.DBColumn";
+    private static final String DB_ID = "com.dbcontrol.entity.DBId";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement table = processingEnv.getElementUtils().getTypeElement(DB_TABLE);
+        if (table == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(table)) {
+            try {
+                generate(entity(element));
+            } catch (EntityException ex) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, ex.getMessage(), ex.element);
+            } catch (IOException ex) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write the EntityMapping: " + ex.getMessage(), element);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Thrown for a DBTable class that a mapping can't be generated for, reported as a compile error on the element.
+     */
+    private static class EntityException extends Exception {
+        private final Element element;
+
+        EntityException(String message, Element element) {
+            super(message);
+            this.element = element;
+        }
+    }
+
+    private static class Entity {
+        TypeElement type;
+        String packageName;
+        String mappingName;
+        String tableName;
+        List<Column> columns = new ArrayList<>();
+        Column id;
+    }
+
+    private static class Column {
+        VariableElement field;
+        String name;
+        TypeMirror type;
+        //expression reading the value from "entity"
+        String read;
+        boolean generated;
+    }
+
+    private Entity entity(Element element) throws EntityException {
+        if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.PRIVATE)
+                || element.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new EntityException("@DBTable must be on a non-private concrete class", element);
+        }
+        TypeElement type = (TypeElement) element;
+        Entity entity = new Entity();
+        entity.type = type;
+        entity.packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String name = type.getSimpleName().toString();
+        for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement; enclosing = enclosing.getEnclosingElement()) {
+            if (!enclosing.getModifiers().contains(Modifier.STATIC) && ((TypeElement) enclosing).getNestingKind() != NestingKind.TOP_LEVEL) {
+                throw new EntityException("@DBTable classes can't be inside inner classes", element);
+            }
+            name = enclosing.getSimpleName() + "_" + name;
+        }
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL && !type.getModifiers().contains(Modifier.STATIC)) {
+            throw new EntityException("Nested @DBTable classes must be static", element);
+        }
+        entity.mappingName = name + "Mapping";
+        String tableName = (String) annotationValue(type, DB_TABLE, "name");
+        entity.tableName = tableName == null || tableName.isEmpty() ? type.getSimpleName().toString() : tableName;
+
+        List<TypeElement> hierarchy = new ArrayList<>();
+        for (TypeElement t = type; t != null; t = superclass(t)) {
+            hierarchy.add(t);
+        }
+        Collections.reverse(hierarchy);
+        for (TypeElement t : hierarchy) {
+            for (Element member : t.getEnclosedElements()) {
+                if (member.getKind() != ElementKind.FIELD || member.getModifiers().contains(Modifier.STATIC)
+                        || member.getModifiers().contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                Column column = new Column();
+                column.field = (VariableElement) member;
+                column.type = member.asType();
+                String columnName = (String) annotationValue(member, DB_COLUMN, "name");
+                column.name = columnName == null || columnName.isEmpty() ? member.getSimpleName().toString() : columnName;
+                column.read = read(type, column.field);
+                if (annotation(member, DB_ID) != null) {
+                    if (entity.id != null) {
+                        throw new EntityException("@DBTable classes can only have one @DBId", member);
+                    }
+                    entity.id = column;
+                    column.generated = Boolean.TRUE.equals(annotationValue(member, DB_ID, "generated"));
+                    if (column.generated) {
+                        //checked now so the error is on the field
+                        write(type, column, "key");
+                    }
+                }
+                entity.columns.add(column);
+            }
+        }
+        if (entity.columns.isEmpty()) {
+            throw new EntityException("@DBTable class has no columns", element);
+        }
+        return entity;
+    }
+
+    private static TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+    }
+
+    private static AnnotationMirror annotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Object annotationValue(Element element, String annotationName, String valueName) {
+        AnnotationMirror mirror = annotation(element, annotationName);
+        if (mirror == null) {
+            return null;
+        }
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(valueName)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * If the generated class (in the entity's package) can use a member of the entity directly.
+     */
+    private boolean accessible(TypeElement type, Element member) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        PackageElement memberPackage = processingEnv.getElementUtils().getPackageOf(member);
+        return modifiers.contains(Modifier.PUBLIC) || memberPackage.equals(processingEnv.getElementUtils().getPackageOf(type));
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * The field if it's accessible, otherwise its getter.
+     */
+    private String read(TypeElement type, VariableElement field) throws EntityException {
+        String name = field.getSimpleName().toString();
+        if (accessible(type, field)) {
+            return "entity." + name;
+        }
+        for (Element member : processingEnv.getElementUtils().getAllMembers(type)) {
+            if (member.getKind() == ElementKind.METHOD && !member.getModifiers().contains(Modifier.STATIC) && accessible(type, member)) {
+                ExecutableElement method = (ExecutableElement) member;
+                String methodName = method.getSimpleName().toString();
+                boolean getter = methodName.equals("get" + capitalize(name))
+                        || (methodName.equals("is" + capitalize(name)) && field.asType().getKind() == TypeKind.BOOLEAN);
+                if (getter && method.getParameters().isEmpty()
+                        && processingEnv.getTypeUtils().isSameType(method.getReturnType(), field.asType())) {
+                    return "entity." + methodName + "()";
+                }
+            }
+        }
+        throw new EntityException("Field " + name + " is private and has no getter", field);
+    }
+
+    /**
+     * A statement setting a column from an expression, with the field if it's accessible and not final, otherwise its setter.
+     */
+    private String write(TypeElement type, Column column, String value) throws EntityException {
+        String name = column.field.getSimpleName().toString();
+        if (accessible(type, column.field) && !column.field.getModifiers().contains(Modifier.FINAL)) {
+            return "entity." + name + " = " + value + ";";
+        }
+        for (Element member : processingEnv.getElementUtils().getAllMembers(type)) {
+            if (member.getKind() == ElementKind.METHOD && !member.getModifiers().contains(Modifier.STATIC) && accessible(type, member)
+                    && member.getSimpleName().contentEquals("set" + capitalize(name))) {
+                List<? extends VariableElement> parameters = ((ExecutableElement) member).getParameters();
+                if (parameters.size() == 1 && processingEnv.getTypeUtils().isSameType(parameters.get(0).asType(), column.type)) {
+                    return "entity.set" + capitalize(name) + "(" + value + ");";
+                }
+            }
+        }
+        throw new EntityException("Generated @DBId field " + name + " is final or private without a setter", column.field);
+    }
+
+    /**
+     * How a Java type is bound: the PreparedStatement setter, the java.sql.Types for nulls (null if the setter accepts null or the type is
+     * primitive), and the conversion of the value to the setter's type ("%s" for none).
+     */
+    private static final class Binding {
+        final String setter;
+        final String sqlType;
+        final String conversion;
+
+        Binding(String setter, String sqlType, String conversion) {
+            this.setter = setter;
+            this.sqlType = sqlType;
+            this.conversion = conversion;
+        }
+    }
+
+    private Binding binding(TypeMirror type) {
+        switch (type.getKind()) {
+            case LONG:
+                return new Binding("setLong", null, "%s");
+            case INT:
+                return new Binding("setInt", null, "%s");
+            case SHORT:
+                return new Binding("setShort", null, "%s");
+            case BYTE:
+                return new Binding("setByte", null, "%s");
+            case DOUBLE:
+                return new Binding("setDouble", null, "%s");
+            case FLOAT:
+                return new Binding("setFloat", null, "%s");
+            case BOOLEAN:
+                return new Binding("setBoolean", null, "%s");
+            case CHAR:
+                return new Binding("setString", null, "String.valueOf(%s)");
+            case ARRAY:
+                if (((ArrayType) type).getComponentType().getKind() == TypeKind.BYTE) {
+                    return new Binding("setBytes", null, "%s");
+                }
+                return new Binding("setObject", null, "%s");
+            case DECLARED:
+                break;
+            default:
+                return new Binding("setObject", null, "%s");
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        if (element.getKind() == ElementKind.ENUM) {
+            return new Binding("setString", "VARCHAR", "%s.name()");
+        }
+        switch (element.getQualifiedName().toString()) {
+            case "java.lang.Long":
+                return new Binding("setLong", "BIGINT", "%s");
+            case "java.lang.Integer":
+                return new Binding("setInt", "INTEGER", "%s");
+            case "java.lang.Short":
+                return new Binding("setShort", "SMALLINT", "%s");
+            case "java.lang.Byte":
+                return new Binding("setByte", "TINYINT", "%s");
+            case "java.lang.Double":
+                return new Binding("setDouble", "DOUBLE", "%s");
+            case "java.lang.Float":
+                return new Binding("setFloat", "REAL", "%s");
+            case "java.lang.Boolean":
+                return new Binding("setBoolean", "BOOLEAN", "%s");
+            case "java.lang.String":
+                return new Binding("setString", null, "%s");
+            case "java.math.BigDecimal":
+                return new Binding("setBigDecimal", null, "%s");
+            case "java.sql.Date":
+                return new Binding("setDate", null, "%s");
+            case "java.sql.Timestamp":
+                return new Binding("setTimestamp", null, "%s");
+            case "java.sql.Time":
+                return new Binding("setTime", null, "%s");
+            case "java.util.Date":
+                return new Binding("setTimestamp", "TIMESTAMP", "new java.sql.Timestamp(%s.getTime())");
+            case "org.joda.time.LocalDate":
+                return new Binding("setDate", "DATE", "new java.sql.Date(%s.toDate().getTime())");
+            case "org.joda.time.LocalDateTime":
+                return new Binding("setTimestamp", "TIMESTAMP", "new java.sql.Timestamp(%s.toDate().getTime())");
+            case "org.joda.time.LocalTime":
+                return new Binding("setTime", "TIME", "new java.sql.Time(new org.joda.time.LocalDate(1970, 1, 1).toLocalDateTime(%s).toDate().getTime())");
+            case "java.time.LocalDate":
+                return new Binding("setDate", "DATE", "java.sql.Date.valueOf(%s)");
+            case "java.time.LocalDateTime":
+                return new Binding("setTimestamp", "TIMESTAMP", "java.sql.Timestamp.valueOf(%s)");
+            case "java.time.LocalTime":
+                return new Binding("setTime", "TIME", "java.sql.Time.valueOf(%s)");
+            case "java.time.Instant":
+                return new Binding("setTimestamp", "TIMESTAMP", "java.sql.Timestamp.from(%s)");
+            default:
+                return new Binding("setObject", null, "%s");
+        }
+    }
+
+    /**
+     * The conversion of a generated key (a Number for most drivers) to the DBId's type.
+     */
+    private static String keyConversion(TypeMirror type) {
+        switch (type.toString()) {
+            case "long":
+            case "java.lang.Long":
+                return "((Number) key).longValue()";
+            case "int":
+            case "java.lang.Integer":
+                return "((Number) key).intValue()";
+            case "short":
+            case "java.lang.Short":
+                return "((Number) key).shortValue()";
+            case "java.lang.String":
+                return "key.toString()";
+            case "java.math.BigDecimal":
+                return "key instanceof java.math.BigDecimal ? (java.math.BigDecimal) key : new java.math.BigDecimal(key.toString())";
+            default:
+                return "(" + type + ") key";
+        }
+    }
+
+    private static String literal(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private void generate(Entity entity) throws IOException, EntityException {
+        List<Column> inserted = new ArrayList<>();
+        List<Column> updated = new ArrayList<>();
+        List<String> all = new ArrayList<>();
+        for (Column column : entity.columns) {
+            all.add(column.name);
+            if (!column.generated) {
+                inserted.add(column);
+            }
+            if (column != entity.id) {
+                updated.add(column);
+            }
+        }
+        StringBuilder insertColumns = new StringBuilder();
+        StringBuilder insertValues = new StringBuilder();
+        for (Column column : inserted) {
+            insertColumns.append(insertColumns.length() == 0 ? "" : ", ").append(column.name);
+            insertValues.append(insertValues.length() == 0 ? "?" : ", ?");
+        }
+        String insertSql = "INSERT INTO " + entity.tableName + " (" + insertColumns + ") VALUES (" + insertValues + ")";
+        String updateSql = null;
+        String deleteSql = null;
+        if (entity.id != null) {
+            StringBuilder set = new StringBuilder();
+            for (Column column : updated) {
+                set.append(set.length() == 0 ? "" : ", ").append(column.name).append(" = ?");
+            }
+            updateSql = updated.isEmpty() ? null : "UPDATE " + entity.tableName + " SET " + set + " WHERE " + entity.id.name + " = ?";
+            deleteSql = "DELETE FROM " + entity.tableName + " WHERE " + entity.id.name + " = ?";
+        }
+        String selectSql = "SELECT " + String.join(", ", all) + " FROM " + entity.tableName;
+
+        String entityType = entity.type.getQualifiedName().toString();
+        String qualifiedName = entity.packageName.isEmpty() ? entity.mappingName : entity.packageName + "." + entity.mappingName;
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, entity.type).openWriter())) {
+            if (!entity.packageName.isEmpty()) {
+                out.println("package " + entity.packageName + ";");
+                out.println();
+            }
+            out.println("import com.dbcontrol.DBConnection;");
+            out.println("import com.dbcontrol.entity.EntityMapping;");
+            out.println();
+            out.println("import java.sql.PreparedStatement;");
+            out.println("import java.sql.SQLException;");
+            out.println("import java.sql.Types;");
+            out.println("import java.util.List;");
+            out.println();
+            out.println("/**");
+            out.println(" * Generated by dbcontrol-processor from {@link " + entityType + "}, don't edit.");
+            out.println(" */");
+            out.println("public final class " + entity.mappingName + " implements EntityMapping<" + entityType + "> {");
+            out.println("    public static final " + entity.mappingName + " INSTANCE = new " + entity.mappingName + "();");
+            out.println("    public static final String TABLE_NAME = " + literal(entity.tableName) + ";");
+            out.println("    public static final String INSERT_SQL = " + literal(insertSql) + ";");
+            out.println("    public static final String UPDATE_SQL = " + (updateSql == null ? "null" : literal(updateSql)) + ";");
+            out.println("    public static final String DELETE_SQL = " + (deleteSql == null ? "null" : literal(deleteSql)) + ";");
+            out.println("    public static final String SELECT_SQL = " + literal(selectSql) + ";");
+            out.println();
+            out.println("    private " + entity.mappingName + "() {");
+            out.println("    }");
+            out.println();
+            getter(out, "String", "getTableName", "TABLE_NAME");
+            getter(out, "String", "getInsertSql", "INSERT_SQL");
+            getter(out, "String", "getUpdateSql", "UPDATE_SQL");
+            getter(out, "String", "getDeleteSql", "DELETE_SQL");
+            getter(out, "boolean", "hasGeneratedKey", String.valueOf(entity.id != null && entity.id.generated));
+
+            bind(out, "bindInsert", entityType, inserted);
+            List<Column> updateBound = new ArrayList<>(updated);
+            List<Column> deleteBound = new ArrayList<>();
+            if (entity.id != null) {
+                updateBound.add(entity.id);
+                deleteBound.add(entity.id);
+            }
+            bind(out, "bindUpdate", entityType, updateSql == null ? Collections.emptyList() : updateBound);
+            bind(out, "bindDelete", entityType, deleteBound);
+
+            out.println("    @Override");
+            out.println("    public void setGeneratedKey(" + entityType + " entity, Object key) {");
+            if (entity.id != null && entity.id.generated) {
+                out.println("        " + write(entity.type, entity.id, keyConversion(entity.id.type)));
+            }
+            out.println("    }");
+
+            helpers(out, entityType, "insert", "insert", "batchInsert");
+            if (updateSql != null) {
+                helpers(out, entityType, "update", "update", "batchUpdate");
+            }
+            if (deleteSql != null) {
+                helpers(out, entityType, "delete", "delete", "batchDelete");
+            }
+            out.println("}");
+        }
+    }
+
+    private static void getter(PrintWriter out, String type, String name, String value) {
+        out.println("    @Override");
+        out.println("    public " + type + " " + name + "() {");
+        out.println("        return " + value + ";");
+        out.println("    }");
+        out.println();
+    }
+
+    private void bind(PrintWriter out, String name, String entityType, List<Column> columns) {
+        out.println("    @Override");
+        out.println("    public void " + name + "(PreparedStatement ps, " + entityType + " entity) throws SQLException {");
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            Binding binding = binding(column.type);
+            int parameter = i + 1;
+            if (binding.sqlType == null) {
+                out.println("        ps." + binding.setter + "(" + parameter + ", " + String.format(binding.conversion, column.read) + ");");
+            } else {
+                String local = "v" + parameter;
+                out.println("        " + column.type + " " + local + " = " + column.read + ";");
+                out.println("        if (" + local + " == null) {");
+                out.println("            ps.setNull(" + parameter + ", Types." + binding.sqlType + ");");
+                out.println("        } else {");
+                out.println("            ps." + binding.setter + "(" + parameter + ", " + String.format(binding.conversion, local) + ");");
+                out.println("        }");
+            }
+        }
+        out.println("    }");
+        out.println();
+    }
+
+    private static void helpers(PrintWriter out, String entityType, String name, String single, String batch) {
+        out.println();
+        out.println("    public static int " + name + "(DBConnection connect, " + entityType + " entity) throws SQLException {");
+        out.println("        return connect." + single + "(INSTANCE, entity);");
+        out.println("    }");
+        out.println();
+        out.println("    public static int[] " + name + "All(DBConnection connect, List<" + entityType + "> entities) throws SQLException {");
+        out.println("        return connect." + batch + "(INSTANCE, entities);");
+        out.println("    }");
+    }
+}
@@ -0,0 +1,248 @@
+package com.dbcontrol;
+
+import com.dbcontrol.config.DBControlConfig;
+import com.dbcontrol.config.cancel.SQLCancellationDetector;
+import com.dbcontrol.handlers.WithConnection;
+import com.dbcontrol.results.DBRow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs work against a DBControl on a bounded executor and returns CompletableFutures, so a thread can overlap several independent queries.<br>
+ * Each task checks out its own connection from the DBControl for as long as it runs.<br>
+ * Timeouts are applied to every statement with Statement.setQueryTimeout, and the running statement is canceled when the deadline passes or
+ * the future is canceled. Futures that time out complete exceptionally with a TimeoutException, SQLExceptions that the SQLCancellationDetector
+ * classifies as canceled are reported the same way.
+ */
+public class AsyncDBControl implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncDBControl.class);
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final DBControl db;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final ScheduledThreadPoolExecutor timer;
+    private final SQLCancellationDetector cancelDetector;
+    private final long defaultTimeoutMillis;
+
+    /**
+     * Create an AsyncDBControl with its own executor sized by the async settings of the configuration the DBControl was initialized with.
+     */
+    public AsyncDBControl(DBControl db, DBControlConfig config) {
+        this(db, newExecutor(config.getAsyncThreads(), config.getAsyncQueueSize()), true,
+                config.getSQLCancellationDetector(), config.getAsyncTimeoutMillis());
+    }
+
+    /**
+     * @param executor             runs the tasks, it should be bounded to leave pooled connections for other threads. It isn't shut down by close()
+     * @param cancelDetector       classifies SQLExceptions from canceled statements, can be null
+     * @param defaultTimeoutMillis the timeout for tasks submitted without one, 0 for no timeout
+     */
+    public AsyncDBControl(DBControl db, ExecutorService executor, SQLCancellationDetector cancelDetector, long defaultTimeoutMillis) {
+        this(db, executor, false, cancelDetector, defaultTimeoutMillis);
+    }
+
+    private AsyncDBControl(DBControl db, ExecutorService executor, boolean ownsExecutor, SQLCancellationDetector cancelDetector, long defaultTimeoutMillis) {
+        this.db = db;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.cancelDetector = cancelDetector;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        this.timer = new ScheduledThreadPoolExecutor(1, daemonThreads("dbcontrol-async-timer-"));
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private static ExecutorService newExecutor(int threads, int queueSize) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueSize)), daemonThreads("dbcontrol-async-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Run a query on a pooled connection.
+     */
+    public CompletableFuture<List<DBRow>> queryAsync(String sql, Object... params) {
+        return withConnectionAsync(connect -> connect.query(sql, params));
+    }
+
+    /**
+     * Run a statement that updates the database on a pooled connection.
+     *
+     * @return a future for the number of rows affected
+     */
+    public CompletableFuture<Integer> executeAsync(String sql, Object... params) {
+        return withConnectionAsync(connect -> connect.directExecute(sql, params));
+    }
+
+    /**
+     * Run some code with its own pooled connection.
+     */
+    public <T> CompletableFuture<T> withConnectionAsync(WithConnection<T, ?> with) {
+        return submit(false, with, defaultTimeoutMillis);
+    }
+
+    /**
+     * Run some code with its own pooled connection, statements still running after the timeout are canceled.
+     */
+    public <T> CompletableFuture<T> withConnectionAsync(WithConnection<T, ?> with, long timeout, TimeUnit unit) {
+        return submit(false, with, unit.toMillis(timeout));
+    }
+
+    /**
+     * Run some code with its own pooled connection in a transaction that is committed if it completes normally.
+     */
+    public <T> CompletableFuture<T> inTransactionAsync(WithConnection<T, ?> trans) {
+        return submit(true, trans, defaultTimeoutMillis);
+    }
+
+    /**
+     * Run some code with its own pooled connection in a transaction that is committed if it completes normally.<br>
+     * Statements still running after the timeout are canceled and the transaction rolls back.
+     */
+    public <T> CompletableFuture<T> inTransactionAsync(WithConnection<T, ?> trans, long timeout, TimeUnit unit) {
+        return submit(true, trans, unit.toMillis(timeout));
+    }
+
+    private <T> CompletableFuture<T> submit(boolean transaction, WithConnection<T, ?> with, long timeoutMillis) {
+        Task<T> task = new Task<>(transaction, with, timeoutMillis);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            task.completeExceptionally(ex);
+        }
+        return task;
+    }
+
+    /**
+     * Shut down the timeout thread, and the executor if it was created by this AsyncDBControl. The DBControl is not closed.
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    private boolean isCanceled(SQLException ex) {
+        return ex instanceof SQLTimeoutException || (cancelDetector != null && cancelDetector.isSQLCanceled(ex));
+    }
+
+    /**
+     * A future that runs its work when executed, and cancels the statement it is running when canceled or timed out.
+     */
+    private final class Task<T> extends CompletableFuture<T> implements Runnable {
+        private final boolean transaction;
+        private final WithConnection<T, ?> with;
+        private final long timeoutMillis;
+        private volatile DBConnection connect;
+
+        private Task(boolean transaction, WithConnection<T, ?> with, long timeoutMillis) {
+            this.transaction = transaction;
+            this.with = with;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                return; //canceled while queued
+            }
+            long start = System.currentTimeMillis();
+            ScheduledFuture<?> deadline = timeoutMillis > 0 ? timer.schedule(this::timeout, timeoutMillis, TimeUnit.MILLISECONDS) : null;
+            try {
+                WithConnection<T, Exception> work = connect -> {
+                    if (timeoutMillis > 0) {
+                        //waiting for a pooled connection uses up part of the timeout
+                        connect.setQueryTimeout(JDBCDBConnection.timeoutSeconds(Math.max(1, timeoutMillis - (System.currentTimeMillis() - start))));
+                    }
+                    this.connect = connect;
+                    try {
+                        if (isDone()) {
+                            return null;
+                        }
+                        T result = with.with(connect);
+                        if (isDone()) {
+                            //timed out or canceled without a statement to cancel, roll the transaction back
+                            throw new SQLException("Asynchronous SQL was canceled or timed out");
+                        }
+                        return result;
+                    } finally {
+                        this.connect = null;
+                    }
+                };
+                complete(transaction ? db.inTransaction(work) : db.withConnection(work));
+            } catch (SQLException ex) {
+                if (!isDone() && isCanceled(ex)) {
+                    completeExceptionally(timeoutException(ex));
+                } else {
+                    completeExceptionally(ex);
+                }
+            } catch (Throwable ex) {
+                completeExceptionally(ex);
+            } finally {
+                if (deadline != null) {
+                    deadline.cancel(false);
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean canceled = super.cancel(mayInterruptIfRunning);
+            if (canceled) {
+                cancelStatement();
+            }
+            return canceled;
+        }
+
+        private void timeout() {
+            if (completeExceptionally(timeoutException(null))) {
+                cancelStatement();
+            }
+        }
+
+        private TimeoutException timeoutException(SQLException cause) {
+            TimeoutException ex = new TimeoutException("Asynchronous SQL timed out after " + timeoutMillis + "ms");
+            if (cause != null) {
+                ex.initCause(cause);
+            }
+            return ex;
+        }
+
+        private void cancelStatement() {
+            DBConnection running = connect;
+            if (running != null) {
+                try {
+                    running.cancel();
+                } catch (SQLException ex) {
+                    logger.debug("Failed to cancel asynchronous SQL", ex);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.dbcontrol;
+
+/**
+ * How a BulkLoader writes rows to the database.
+ */
+public enum BulkLoadMethod {
+    /**
+     * PostgreSQL COPY ... FROM STDIN (text format) through the driver's CopyManager.
+     */
+    COPY,
+    /**
+     * Embedded Derby SYSCS_UTIL.SYSCS_IMPORT_DATA from a temp CSV file for each commit. The import commits the connection itself, so it isn't
+     * used inside a transaction (BATCHED_INSERT is used instead).
+     */
+    DERBY_IMPORT,
+    /**
+     * JDBC batches of multi-row INSERT ... VALUES (...), (...) statements, for any database.
+     */
+    BATCHED_INSERT,
+}
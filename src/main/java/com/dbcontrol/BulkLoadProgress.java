@@ -0,0 +1,67 @@
+package com.dbcontrol;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The progress of a BulkLoader after a commit, or its result when it is done.
+ */
+public class BulkLoadProgress {
+    private final String tableName;
+    private final BulkLoadMethod method;
+    private final long rows;
+    private final int commits;
+    private final long elapsedNanos;
+    private final boolean done;
+
+    BulkLoadProgress(String tableName, BulkLoadMethod method, long rows, int commits, long elapsedNanos, boolean done) {
+        this.tableName = tableName;
+        this.method = method;
+        this.rows = rows;
+        this.commits = commits;
+        this.elapsedNanos = elapsedNanos;
+        this.done = done;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public BulkLoadMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * The number of rows committed.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public int getCommits() {
+        return commits;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * The average rows per second since the load started.
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos <= 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * If every row has been loaded.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public String toString() {
+        return tableName + " " + method + ": " + rows + " rows, " + commits + " commits, " + getElapsedMillis() + "ms, "
+                + Math.round(getRowsPerSecond()) + " rows/s" + (done ? ", done" : "");
+    }
+}
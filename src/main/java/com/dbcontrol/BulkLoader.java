@@ -0,0 +1,668 @@
+package com.dbcontrol;
+
+import com.dbcontrol.results.DBMetaData;
+import com.dbcontrol.results.DBMetaData.DBFieldData;
+import com.dbcontrol.results.DBMetaData.DBFieldType;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Loads a large number of rows into a table with the fastest method the database supports, created with DBConnection.bulkLoader.<br>
+ * PostgreSQL uses COPY ... FROM STDIN, embedded Derby uses SYSCS_UTIL.SYSCS_IMPORT_DATA, and other databases use JDBC batches of multi-row
+ * INSERT statements ({@link #method(BulkLoadMethod)} can choose one).<br>
+ * Rows are committed every {@link #commitEvery(long)} rows, so only the rows since the last commit are rolled back if the load fails
+ * (unless the DBConnection is already in a transaction, which commits them all together). Progress is reported after each commit.<br>
+ * Derby's import commits the connection itself, so a load inside a transaction uses BATCHED_INSERT instead.
+ * <pre>
+ * BulkLoadProgress result = connect.bulkLoader("orders", "id", "customer", "total")
+ *         .commitEvery(500000)
+ *         .progress(progress -&gt; logger.info("{}", progress))
+ *         .load(rows.iterator());
+ * </pre>
+ * Values are the same types as other parameters (Eg. Joda dates, byte[]), CSV values are converted by the database or by the column types of the table.
+ */
+public class BulkLoader {
+    //most drivers and databases limit the number of parameters in a statement (Eg. 2100 for SQL Server)
+    private static final int MAX_INSERT_PARAMS = 1000;
+    private static final int MAX_INSERT_ROWS = 100;
+    private static final int BATCH_ROWS = 1000;
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    private final JDBCDBConnection connect;
+    private final Connection connection;
+    private final String tableName;
+    private final List<String> columns;
+    private long commitEvery = 100000;
+    private Consumer<BulkLoadProgress> progress;
+    private BulkLoadMethod method;
+
+    BulkLoader(JDBCDBConnection connect, Connection connection, String tableName, List<String> columns) {
+        this.connect = connect;
+        this.connection = connection;
+        this.tableName = tableName;
+        this.columns = columns;
+    }
+
+    /**
+     * Commit after this many rows, 100000 by default.
+     */
+    public BulkLoader commitEvery(long rows) {
+        this.commitEvery = Math.max(1, rows);
+        return this;
+    }
+
+    /**
+     * Called with the progress after each commit, and with the result when the load is done.
+     */
+    public BulkLoader progress(Consumer<BulkLoadProgress> listener) {
+        this.progress = listener;
+        return this;
+    }
+
+    /**
+     * Use a method instead of choosing one from the database (Eg. BATCHED_INSERT to fire triggers the other methods wouldn't).
+     */
+    public BulkLoader method(BulkLoadMethod method) {
+        this.method = method;
+        return this;
+    }
+
+    /**
+     * Load rows with a value for each column, in the order of the columns.
+     */
+    public BulkLoadProgress load(Iterator<Object[]> rows) throws SQLException {
+        return run(rows, columns.isEmpty() ? tableColumns() : columns, false);
+    }
+
+    public BulkLoadProgress load(Stream<Object[]> rows) throws SQLException {
+        return load(rows.iterator());
+    }
+
+    /**
+     * Load RFC 4180 CSV records with a value for each column. Empty fields are null, quoted empty fields are empty strings.
+     *
+     * @param header if the first record is a header, its names are used as the columns if the loader was created without columns
+     */
+    public BulkLoadProgress loadCsv(Reader csv, boolean header) throws SQLException, IOException {
+        CsvIterator records = new CsvIterator(csv);
+        try {
+            List<String> columns = this.columns;
+            if (header && records.hasNext()) {
+                Object[] names = records.next();
+                if (columns.isEmpty()) {
+                    columns = new ArrayList<>();
+                    for (Object name : names) {
+                        columns.add((String) name);
+                    }
+                }
+            }
+            return run(records, columns.isEmpty() ? tableColumns() : columns, true);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private List<String> tableColumns() throws SQLException {
+        DBMetaData dbm = connect.getTableMetaData(tableName);
+        List<String> columns = new ArrayList<>();
+        for (int i = 1; i <= dbm.getColumnCount(); i++) {
+            columns.add(dbm.getField(i).getCasedName());
+        }
+        return columns;
+    }
+
+    private BulkLoadProgress run(Iterator<Object[]> rows, List<String> columns, boolean text) throws SQLException {
+        BulkLoadMethod method = method();
+        //COPY parses text values itself, Derby's import doesn't accept some formats (Eg. ISO timestamps)
+        DBFieldType[] types = text && method != BulkLoadMethod.COPY ? columnTypes(columns) : null;
+        long start = System.nanoTime();
+        long loaded = 0;
+        int commits = 0;
+        while (rows.hasNext()) {
+            final long before = loaded;
+            loaded += connect.inTransaction(c -> {
+                long count;
+                if (method == BulkLoadMethod.COPY) {
+                    count = copy(rows, columns, before);
+                } else if (method == BulkLoadMethod.DERBY_IMPORT) {
+                    count = derbyImport(rows, columns, types, before);
+                } else {
+                    count = batchedInsert(rows, columns, types, before);
+                }
+                connect.written(tableName);
+                return count;
+            });
+            commits++;
+            if (progress != null && rows.hasNext()) {
+                progress.accept(new BulkLoadProgress(tableName, method, loaded, commits, System.nanoTime() - start, false));
+            }
+        }
+        BulkLoadProgress result = new BulkLoadProgress(tableName, method, loaded, commits, System.nanoTime() - start, true);
+        if (progress != null) {
+            progress.accept(result);
+        }
+        return result;
+    }
+
+    private BulkLoadMethod method() throws SQLException {
+        BulkLoadMethod method = this.method == null ? chooseMethod() : this.method;
+        if (method == BulkLoadMethod.DERBY_IMPORT && connect.isInTransaction()) {
+            //SYSCS_IMPORT_DATA commits, which would also commit the caller's earlier writes
+            return BulkLoadMethod.BATCHED_INSERT;
+        }
+        return method;
+    }
+
+    private BulkLoadMethod chooseMethod() throws SQLException {
+        DatabaseMetaData md = connection.getMetaData();
+        String product = md.getDatabaseProductName();
+        if (product != null && product.contains("PostgreSQL") && PgCopy.isSupported(connection)) {
+            return BulkLoadMethod.COPY;
+        } else if ("Apache Derby".equals(product) && md.getDriverName() != null && md.getDriverName().contains("Embedded")) {
+            return BulkLoadMethod.DERBY_IMPORT;
+        }
+        return BulkLoadMethod.BATCHED_INSERT;
+    }
+
+    private DBFieldType[] columnTypes(List<String> columns) throws SQLException {
+        DBMetaData dbm = connect.getTableMetaData(tableName);
+        DBFieldType[] types = new DBFieldType[columns.size()];
+        for (int i = 0; i < types.length; i++) {
+            DBFieldData field = dbm.getField(unquote(columns.get(i)));
+            if (field == null) {
+                throw new SQLException("Column " + columns.get(i) + " not in " + tableName);
+            }
+            types[i] = field.getType();
+        }
+        return types;
+    }
+
+    private static Object[] checkWidth(Object[] row, List<String> columns, long number) throws SQLException {
+        if (row == null || row.length != columns.size()) {
+            throw new SQLException("Row " + number + " has " + (row == null ? 0 : row.length) + " values for " + columns.size() + " columns");
+        }
+        return row;
+    }
+
+    /**
+     * COPY up to commitEvery rows in the text format, written to the driver in buffers of COPY_BUFFER_BYTES.
+     */
+    private long copy(Iterator<Object[]> rows, List<String> columns, long before) throws SQLException {
+        PgCopy copy = PgCopy.start(connection, "COPY " + tableName + " (" + String.join(", ", columns) + ") FROM STDIN");
+        boolean ended = false;
+        try {
+            byte[] buffer = new byte[COPY_BUFFER_BYTES];
+            int length = 0;
+            StringBuilder line = new StringBuilder();
+            long count = 0;
+            while (count < commitEvery && rows.hasNext()) {
+                Object[] row = checkWidth(rows.next(), columns, before + count + 1);
+                line.setLength(0);
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0) {
+                        line.append('\t');
+                    }
+                    appendCopyValue(line, DataUtil.getDBObject(row[i]));
+                }
+                line.append('\n');
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                if (length + bytes.length > buffer.length) {
+                    copy.write(buffer, length);
+                    length = 0;
+                }
+                if (bytes.length > buffer.length) {
+                    copy.write(bytes, bytes.length);
+                } else {
+                    System.arraycopy(bytes, 0, buffer, length, bytes.length);
+                    length += bytes.length;
+                }
+                count++;
+            }
+            if (length > 0) {
+                copy.write(buffer, length);
+            }
+            copy.end();
+            ended = true;
+            return count;
+        } finally {
+            if (!ended) {
+                copy.cancel();
+            }
+        }
+    }
+
+    private static void appendCopyValue(StringBuilder line, Object value) {
+        if (value == null) {
+            line.append("\\N");
+        } else if (value instanceof byte[]) {
+            //bytea hex format, with the backslash escaped for COPY
+            line.append("\\\\x");
+            appendHex(line, (byte[]) value);
+        } else if (value instanceof BigDecimal) {
+            line.append(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            line.append(value);
+        } else {
+            String text = value.toString();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '\\':
+                        line.append("\\\\");
+                        break;
+                    case '\t':
+                        line.append("\\t");
+                        break;
+                    case '\n':
+                        line.append("\\n");
+                        break;
+                    case '\r':
+                        line.append("\\r");
+                        break;
+                    default:
+                        line.append(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write up to commitEvery rows to a temp CSV file and import it. The file is deleted afterwards.
+     *
+     * @param types the column types to convert CSV values to, null if the values don't need converting
+     */
+    private long derbyImport(Iterator<Object[]> rows, List<String> columns, DBFieldType[] types, long before) throws SQLException {
+        File file = null;
+        try {
+            file = File.createTempFile("dbcontrol-bulk", ".csv");
+            long count = 0;
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8), 1 << 16)) {
+                StringBuilder line = new StringBuilder();
+                while (count < commitEvery && rows.hasNext()) {
+                    Object[] row = checkWidth(rows.next(), columns, before + count + 1);
+                    line.setLength(0);
+                    for (int i = 0; i < row.length; i++) {
+                        if (i > 0) {
+                            line.append(',');
+                        }
+                        appendCsvValue(line, DataUtil.getDBObject(types == null ? row[i] : convert(row[i], types[i], columns.get(i))));
+                    }
+                    line.append('\n');
+                    writer.append(line);
+                    count++;
+                }
+            }
+            if (count > 0) {
+                int dot = tableName.lastIndexOf('.');
+                String schema = dot < 0 ? null : derbyName(tableName.substring(0, dot));
+                String table = derbyName(dot < 0 ? tableName : tableName.substring(dot + 1));
+                StringBuilder columnList = new StringBuilder();
+                for (String column : columns) {
+                    if (columnList.length() > 0) {
+                        columnList.append(',');
+                    }
+                    columnList.append(derbyName(column));
+                }
+                connect.directExecute("CALL SYSCS_UTIL.SYSCS_IMPORT_DATA(?, ?, ?, NULL, ?, ',', '\"', 'UTF-8', 0)",
+                        schema, table, columnList.toString(), file.getAbsolutePath());
+            }
+            return count;
+        } catch (IOException ex) {
+            throw new SQLException("Failed to write rows to import", ex);
+        } finally {
+            if (file != null && !file.delete() && file.exists()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Derby stores unquoted identifiers in upper case.
+     */
+    private static String derbyName(String identifier) {
+        if (identifier.startsWith("\"") && identifier.endsWith("\"") && identifier.length() > 1) {
+            return identifier.substring(1, identifier.length() - 1);
+        }
+        return identifier.toUpperCase(Locale.ROOT);
+    }
+
+    private static String unquote(String identifier) {
+        return identifier.startsWith("\"") && identifier.endsWith("\"") && identifier.length() > 1 ? identifier.substring(1, identifier.length() - 1) : identifier;
+    }
+
+    /**
+     * Strings are always quoted so that empty strings aren't imported as null, binary values are hex.
+     */
+    private static void appendCsvValue(StringBuilder line, Object value) {
+        if (value == null) {
+            return;
+        } else if (value instanceof byte[]) {
+            appendHex(line, (byte[]) value);
+        } else if (value instanceof BigDecimal) {
+            line.append(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof java.util.Date) {
+            line.append(value);
+        } else {
+            String text = value.toString();
+            line.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        }
+    }
+
+    private static void appendHex(StringBuilder line, byte[] bytes) {
+        for (byte b : bytes) {
+            line.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+        }
+    }
+
+    /**
+     * Insert up to commitEvery rows with statements of up to MAX_INSERT_ROWS rows each, sent in JDBC batches of about BATCH_ROWS rows.
+     *
+     * @param types the column types to convert CSV values to, null if the values don't need converting
+     */
+    private long batchedInsert(Iterator<Object[]> rows, List<String> columns, DBFieldType[] types, long before) throws SQLException {
+        int width = columns.size();
+        int rowsPerStatement = Math.max(1, Math.min(MAX_INSERT_ROWS, MAX_INSERT_PARAMS / Math.max(1, width)));
+        int statementsPerBatch = Math.max(1, BATCH_ROWS / rowsPerStatement);
+        Map<Integer, String> sqlByRows = new HashMap<>();
+        List<Object[]> batch = new ArrayList<>(statementsPerBatch);
+        Object[] params = new Object[rowsPerStatement * width];
+        int inStatement = 0;
+        long count = 0;
+        while (count < commitEvery && rows.hasNext()) {
+            Object[] row = checkWidth(rows.next(), columns, before + count + 1);
+            for (int i = 0; i < width; i++) {
+                params[inStatement * width + i] = types == null ? row[i] : convert(row[i], types[i], columns.get(i));
+            }
+            inStatement++;
+            count++;
+            if (inStatement == rowsPerStatement) {
+                batch.add(params);
+                params = new Object[rowsPerStatement * width];
+                inStatement = 0;
+                if (batch.size() == statementsPerBatch) {
+                    connect.executeBatch(insertSql(sqlByRows, columns, rowsPerStatement), batch);
+                    batch = new ArrayList<>(statementsPerBatch);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            connect.executeBatch(insertSql(sqlByRows, columns, rowsPerStatement), batch);
+        }
+        if (inStatement > 0) {
+            connect.executeBatch(insertSql(sqlByRows, columns, inStatement), Collections.singletonList(Arrays.copyOf(params, inStatement * width)));
+        }
+        return count;
+    }
+
+    private String insertSql(Map<Integer, String> sqlByRows, List<String> columns, int rows) {
+        return sqlByRows.computeIfAbsent(rows, n -> {
+            StringBuilder values = new StringBuilder("(");
+            for (int i = 0; i < columns.size(); i++) {
+                values.append(i == 0 ? "?" : ", ?");
+            }
+            values.append(')');
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName).append(" (").append(String.join(", ", columns)).append(") VALUES ");
+            for (int i = 0; i < n; i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(values);
+            }
+            return sql.toString();
+        });
+    }
+
+    /**
+     * Convert a CSV value to the type of its column, so it can be bound as a parameter.
+     */
+    private static Object convert(Object value, DBFieldType type, String column) throws SQLException {
+        if (!(value instanceof String)) {
+            return value;
+        }
+        String text = ((String) value).trim();
+        try {
+            switch (type) {
+                case LONG:
+                    return Long.valueOf(text);
+                case INT:
+                case SHORT:
+                    return Integer.valueOf(text);
+                case FLOAT:
+                    return Float.valueOf(text);
+                case DOUBLE:
+                    return Double.valueOf(text);
+                case DECIMAL:
+                    return new BigDecimal(text);
+                case DATE:
+                    return java.sql.Date.valueOf(text);
+                case DATETIME:
+                    return Timestamp.valueOf(text.replace('T', ' '));
+                case TIME:
+                    return Time.valueOf(text);
+                case DATETIME_OFFSET:
+                    return Timestamp.from(OffsetDateTime.parse(text).toInstant());
+                case BOOL:
+                    return text.equalsIgnoreCase("true") || text.equalsIgnoreCase("t") || text.equals("1");
+                default:
+                    return value;
+            }
+        } catch (IllegalArgumentException | DateTimeException ex) {
+            throw new SQLException("Invalid " + type + " value for " + column + ": " + value, ex);
+        }
+    }
+
+    /**
+     * The PostgreSQL driver's CopyIn, used through reflection so the driver isn't a dependency.
+     */
+    private static final class PgCopy {
+        private final Object copyIn;
+        private final Method write;
+        private final Method end;
+        private final Method cancel;
+
+        private PgCopy(Object copyIn, Method write, Method end, Method cancel) {
+            this.copyIn = copyIn;
+            this.write = write;
+            this.end = end;
+            this.cancel = cancel;
+        }
+
+        private static Class<?> pgConnectionClass(Connection connection) throws ClassNotFoundException {
+            return Class.forName("org.postgresql.PGConnection", false, connection.getClass().getClassLoader());
+        }
+
+        static boolean isSupported(Connection connection) {
+            try {
+                return connection.isWrapperFor(pgConnectionClass(connection));
+            } catch (ClassNotFoundException | SQLException | LinkageError ex) {
+                return false;
+            }
+        }
+
+        static PgCopy start(Connection connection, String sql) throws SQLException {
+            try {
+                Class<?> pgConnection = pgConnectionClass(connection);
+                ClassLoader loader = pgConnection.getClassLoader();
+                Class<?> copyManager = Class.forName("org.postgresql.copy.CopyManager", false, loader);
+                Class<?> copyInClass = Class.forName("org.postgresql.copy.CopyIn", false, loader);
+                Object api = pgConnection.getMethod("getCopyAPI").invoke(connection.unwrap(pgConnection));
+                Object copyIn = copyManager.getMethod("copyIn", String.class).invoke(api, sql);
+                return new PgCopy(copyIn, copyInClass.getMethod("writeToCopy", byte[].class, int.class, int.class),
+                        copyInClass.getMethod("endCopy"), copyInClass.getMethod("cancelCopy"));
+            } catch (InvocationTargetException ex) {
+                throw sqlException(ex);
+            } catch (ReflectiveOperationException ex) {
+                throw new SQLException("PostgreSQL CopyManager isn't available", ex);
+            }
+        }
+
+        void write(byte[] bytes, int length) throws SQLException {
+            invoke(write, bytes, 0, length);
+        }
+
+        void end() throws SQLException {
+            invoke(end);
+        }
+
+        void cancel() {
+            try {
+                invoke(cancel);
+            } catch (SQLException ex) {
+                //the copy failed already
+            }
+        }
+
+        private void invoke(Method method, Object... args) throws SQLException {
+            try {
+                method.invoke(copyIn, args);
+            } catch (InvocationTargetException ex) {
+                throw sqlException(ex);
+            } catch (IllegalAccessException ex) {
+                throw new SQLException(ex);
+            }
+        }
+
+        private static SQLException sqlException(InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof SQLException) {
+                return (SQLException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            return new SQLException(cause);
+        }
+    }
+
+    /**
+     * Reads RFC 4180 CSV records as Object[]s of Strings, unquoted empty fields are null.
+     */
+    private static final class CsvIterator implements Iterator<Object[]> {
+        private final Reader reader;
+        private final List<String> fields = new ArrayList<>();
+        private final StringBuilder field = new StringBuilder();
+        private Object[] next;
+        private boolean ended = false;
+
+        private CsvIterator(Reader reader) {
+            this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader, 1 << 16);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !ended) {
+                try {
+                    next = readRecord();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object[] record = next;
+            next = null;
+            return record;
+        }
+
+        private Object[] readRecord() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            boolean quoted = false;
+            boolean inQuotes = false;
+            boolean any = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                any = true;
+                if (inQuotes) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            inQuotes = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    inQuotes = true;
+                    quoted = true;
+                } else if (c == ',') {
+                    endField(quoted);
+                    quoted = false;
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    if (fields.isEmpty() && field.length() == 0 && !quoted) {
+                        //blank line
+                        any = false;
+                        continue;
+                    }
+                    endField(quoted);
+                    return fields.toArray();
+                } else {
+                    field.append((char) c);
+                }
+            }
+            ended = true;
+            if (!any) {
+                return null;
+            }
+            endField(quoted);
+            return fields.toArray();
+        }
+
+        private void endField(boolean quoted) {
+            fields.add(field.length() == 0 && !quoted ? null : field.toString());
+            field.setLength(0);
+        }
+    }
+}
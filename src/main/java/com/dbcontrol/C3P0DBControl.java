@@ -1,12 +1,15 @@
 package com.dbcontrol;
 
 import com.dbcontrol.config.DBControlConfig;
-import com.dbcontrol.config.cancel.SQLCancellationDetector;
 import com.dbcontrol.exceptions.DBException;
 import com.dbcontrol.handlers.WithConnection;
+import com.dbcontrol.metrics.DBMetricsListener;
+import com.mchange.v2.c3p0.C3P0ProxyConnection;
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 
 import java.beans.PropertyVetoException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.SQLException;
 
@@ -16,8 +19,21 @@ import java.sql.SQLException;
  * @author Derek Mulvihill - Aug 1, 2013
  */
 public class C3P0DBControl implements DBControl {
+    private static final Method ATTACH_STATEMENT_CACHE;
+
+    static {
+        try {
+            ATTACH_STATEMENT_CACHE = C3P0StatementCacheCustomizer.class.getMethod("attach", Connection.class, int.class, StatementCacheStats.class);
+        } catch (NoSuchMethodException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
     private ComboPooledDataSource pool = null;
-    private SQLCancellationDetector cancelDetector;
+    private DBControlConfig config;
+    private int statementCacheSize;
+    private final StatementCacheStats statementCacheStats = new StatementCacheStats();
+    private final SchemaCache schemaCache = new SchemaCache();
 
     private Connection getConnection() throws SQLException {
         Connection connect = pool.getConnection();
@@ -27,6 +43,36 @@ public class C3P0DBControl implements DBControl {
         return connect;
     }
 
+    /**
+     * Get the StatementCache that belongs to the physical connection behind the pooled connection, or null if caching is disabled.
+     */
+    private StatementCache getStatementCache(Connection connect) throws SQLException {
+        if (statementCacheSize <= 0 || !(connect instanceof C3P0ProxyConnection)) {
+            return null;
+        }
+        try {
+            return (StatementCache) ((C3P0ProxyConnection) connect).rawConnectionOperation(ATTACH_STATEMENT_CACHE, null,
+                    new Object[]{C3P0ProxyConnection.RAW_CONNECTION, statementCacheSize, statementCacheStats});
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+            throw new SQLException("Could not attach statement cache", ex);
+        }
+    }
+
+    private DBConnection createDBConnection() throws SQLException {
+        DBMetricsListener metrics = config.getMetricsListener();
+        long start = metrics == null ? 0 : System.nanoTime();
+        Connection connect = getConnection();
+        try {
+            if (metrics != null) {
+                metrics.connectionAcquired(System.nanoTime() - start, pool.getNumBusyConnectionsDefaultUser(), pool.getNumConnectionsDefaultUser());
+            }
+            return new JDBCDBConnection(connect, config, getStatementCache(connect), schemaCache);
+        } catch (SQLException | RuntimeException ex) {
+            connect.close();
+            throw ex;
+        }
+    }
+
     @Override
     public void init(DBControlConfig config) throws SQLException, DBException {
         if (pool != null) {
@@ -42,9 +88,9 @@ public class C3P0DBControl implements DBControl {
         pool.setJdbcUrl(config.getUrl());
         pool.setUser(config.getUsername());
         pool.setPassword(config.getPassword());
-        pool.setMinPoolSize(5);
-        pool.setAcquireIncrement(5);
-        pool.setMaxPoolSize(20);
+        pool.setMinPoolSize(config.getMinPoolSize());
+        pool.setAcquireIncrement(config.getAcquireIncrement());
+        pool.setMaxPoolSize(config.getMaxPoolSize());
         // pool.setTestConnectionOnCheckin(true);
         pool.setTestConnectionOnCheckout(true);
         if (config.getIdleConnectionTestSeconds() != null
@@ -54,7 +100,13 @@ public class C3P0DBControl implements DBControl {
         }
         pool.setPreferredTestQuery(config.getTestQuery());
         pool.setAcquireRetryAttempts(3);
-        cancelDetector = config.getSQLCancellationDetector();
+        this.config = config;
+        schemaCache.setEnabled(config.getSchemaCacheSeconds() >= 0);
+        schemaCache.setTimeToLiveMillis(config.getSchemaCacheSeconds() * 1000L);
+        statementCacheSize = config.getStatementCacheSize();
+        if (statementCacheSize > 0) {
+            pool.setConnectionCustomizerClassName(C3P0StatementCacheCustomizer.class.getName());
+        }
 
         Connection connect = null;
         try {
@@ -68,18 +120,44 @@ public class C3P0DBControl implements DBControl {
 
     @Override
     public <T, E extends Exception> T inTransaction(WithConnection<T, E> trans) throws SQLException, E {
-        try (DBConnection connect = new JDBCDBConnection(getConnection(), cancelDetector)) {
+        try (DBConnection connect = createDBConnection()) {
             return connect.inTransaction(trans);
         }
     }
 
     @Override
     public <T, E extends Exception> T withConnection(WithConnection<T, E> with) throws SQLException, E {
-        try (DBConnection connect = new JDBCDBConnection(getConnection(), cancelDetector)) {
+        try (DBConnection connect = createDBConnection()) {
             return with.with(connect);
         }
     }
 
+    /**
+     * Hit/miss/eviction counters for the statement caches of all pooled connections.
+     */
+    public StatementCacheStats getStatementCacheStats() {
+        return statementCacheStats;
+    }
+
+    /**
+     * The cache of table metadata, foreign keys and primary keys shared by all connections.
+     */
+    public SchemaCache getSchemaCache() {
+        return schemaCache;
+    }
+
+    /**
+     * Load the metadata of every table in a schema into the SchemaCache in one pass.
+     *
+     * @param schemaPattern the schema to load, or null for all schemas
+     * @return the number of tables loaded
+     */
+    public int prefetchSchema(String schemaPattern) throws SQLException {
+        try (Connection connect = getConnection()) {
+            return schemaCache.prefetch(connect, schemaPattern);
+        }
+    }
+
     @Override
     public void close() {
         pool.close();
@@ -0,0 +1,32 @@
+package com.dbcontrol;
+
+import com.mchange.v2.c3p0.AbstractConnectionCustomizer;
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * C3P0 ConnectionCustomizer that ties StatementCaches to the physical connections in the pool.<br>
+ * Caches are created the first time a physical connection is used and closed when C3P0 destroys the connection.
+ */
+public class C3P0StatementCacheCustomizer extends AbstractConnectionCustomizer {
+    private static final Map<Connection, StatementCache> caches = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    /**
+     * Get the StatementCache for a physical connection, creating it if needed.<br>
+     * Called through C3P0ProxyConnection.rawConnectionOperation so the raw connection never leaves the pool.
+     */
+    public static StatementCache attach(Connection physical, int maxSize, StatementCacheStats stats) {
+        return caches.computeIfAbsent(physical, c -> new StatementCache(c, maxSize, stats));
+    }
+
+    @Override
+    public void onDestroy(Connection physical, String parentDataSourceIdentityToken) {
+        StatementCache cache = caches.remove(physical);
+        if (cache != null) {
+            cache.close();
+        }
+    }
+}
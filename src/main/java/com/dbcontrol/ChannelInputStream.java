@@ -0,0 +1,123 @@
+package com.dbcontrol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * InputStream over part of a FileChannel that reads through memory-mapped windows of the file, so binding a large file as a
+ * parameter doesn't copy it through the heap.<br>
+ * Channels that can't be mapped are read into a small direct buffer instead. The channel's position isn't changed.
+ */
+class ChannelInputStream extends InputStream {
+    private static final long WINDOW_BYTES = 64L << 20;
+    private static final int BUFFER_BYTES = 256 << 10;
+
+    private final FileChannel channel;
+    private final long end;
+    private final boolean closeChannel;
+    //position in the channel of the end of the window
+    private long position;
+    private ByteBuffer window;
+    private ByteBuffer buffer;
+    private boolean mapFailed = false;
+
+    /**
+     * @param closeChannel if close should close the channel (true when the channel was opened for the parameter)
+     */
+    ChannelInputStream(FileChannel channel, long position, long end, boolean closeChannel) {
+        this.channel = channel;
+        this.position = position;
+        this.end = end;
+        this.closeChannel = closeChannel;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return window.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, window.remaining());
+        window.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long inWindow = window == null ? 0 : window.remaining();
+        if (n <= inWindow) {
+            window.position(window.position() + (int) n);
+            return n;
+        }
+        long skipped = inWindow + Math.min(n - inWindow, end - position);
+        position += skipped - inWindow;
+        window = null;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        long remaining = (window == null ? 0 : window.remaining()) + end - position;
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    /**
+     * Move the window along if it has been read, false at the end of the stream.
+     */
+    private boolean fill() throws IOException {
+        if (window != null && window.hasRemaining()) {
+            return true;
+        }
+        if (position >= end) {
+            return false;
+        }
+        long size = Math.min(WINDOW_BYTES, end - position);
+        if (!mapFailed) {
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                position += size;
+                return true;
+            } catch (IOException | UnsupportedOperationException ex) {
+                mapFailed = true;
+            }
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        }
+        buffer.clear();
+        buffer.limit((int) Math.min(BUFFER_BYTES, size));
+        int read = channel.read(buffer, position);
+        if (read <= 0) {
+            //the file is shorter than when the parameter was bound
+            throw new IOException("Channel ended " + (end - position) + " bytes early");
+        }
+        buffer.flip();
+        window = buffer;
+        position += read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        position = end;
+        if (closeChannel) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.dbcontrol;
+
+import com.dbcontrol.config.DBControlConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pool of physical JDBC connections behind a PooledDBControl.<br>
+ * Idle connections are claimed without locks: a thread first tries the connections it returned most recently, then scans every
+ * connection starting at an offset based on its thread id, claiming one with a compare and set of its state.
+ * Threads that find nothing wait on a hand off queue that returned connections are offered to.<br>
+ * Connections are only checked with Connection.isValid after they have been idle for a while, are replaced once they pass their
+ * maximum lifetime, and a warning with the stack trace of the checkout is logged for connections held longer than the leak threshold.
+ */
+final class ConnectionPool {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+    private static final AtomicInteger poolCount = new AtomicInteger();
+    //connections a thread returned most recently, tried before scanning all connections
+    private static final int AFFINITY_SIZE = 4;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    //waiting threads rescan this often in case a connection was returned or removed without a hand off
+    private static final long WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long HOUSEKEEPING_MILLIS = 30000;
+
+    private static final int IDLE = 0;
+    private static final int IN_USE = 1;
+    private static final int REMOVED = -1;
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long connectionTimeoutMillis;
+    private final long validateAfterIdleMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long leakDetectionMillis;
+    private final int statementCacheSize;
+    private final StatementCacheStats statementCacheStats;
+
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+    //open connections plus connections being opened, never more than maxSize
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final SynchronousQueue<Entry> handoff = new SynchronousQueue<>(true);
+    private final ThreadLocal<ArrayDeque<Entry>> recent = ThreadLocal.withInitial(ArrayDeque::new);
+    private final ScheduledThreadPoolExecutor housekeeper;
+    private volatile boolean closed = false;
+
+    ConnectionPool(DBControlConfig config, StatementCacheStats statementCacheStats) {
+        this.url = config.getUrl();
+        this.username = config.getUsername();
+        this.password = config.getPassword();
+        this.maxSize = Math.max(1, config.getMaxPoolSize());
+        this.minSize = Math.min(Math.max(0, config.getMinPoolSize()), maxSize);
+        this.connectionTimeoutMillis = config.getConnectionTimeoutMillis();
+        this.validateAfterIdleMillis = config.getValidateAfterIdleMillis();
+        this.idleTimeoutMillis = config.getIdleTimeoutMillis();
+        this.maxLifetimeMillis = config.getMaxLifetimeMillis();
+        this.leakDetectionMillis = config.getLeakDetectionMillis();
+        this.statementCacheSize = config.getStatementCacheSize();
+        this.statementCacheStats = statementCacheStats;
+
+        String name = "dbcontrol-pool-" + poolCount.incrementAndGet() + "-housekeeper";
+        this.housekeeper = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Open the first connection (so bad configuration fails straight away), then fill up to the minimum size in the background.
+     */
+    void start() throws SQLException {
+        release(borrow());
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, HOUSEKEEPING_MILLIS, HOUSEKEEPING_MILLIS, TimeUnit.MILLISECONDS);
+        housekeeper.execute(this::fill);
+    }
+
+    /**
+     * Check out a connection, waiting up to the connection timeout for one to be returned if the pool is at its maximum size.
+     *
+     * @throws SQLTimeoutException if no connection became available in time
+     */
+    Entry borrow() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectionTimeoutMillis);
+        while (true) {
+            Entry entry = claimIdle();
+            if (entry == null) {
+                entry = tryCreate(IN_USE);
+            }
+            if (entry == null) {
+                entry = await(deadline);
+            }
+            if (entry == null) {
+                throw new SQLTimeoutException("Timed out after " + connectionTimeoutMillis + "ms waiting for a pooled connection, "
+                        + getActiveConnections() + " of " + maxSize + " in use");
+            }
+            if (checkOut(entry)) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Return a connection, rolling back any transaction left open on it and restoring the settings it was opened with.
+     */
+    void release(Entry entry) {
+        if (entry.leakWarning != null) {
+            entry.leakWarning.cancel(false);
+            entry.leakWarning = null;
+        }
+        long now = System.currentTimeMillis();
+        entry.lastUsed = now;
+        boolean broken = false;
+        try {
+            if (!entry.connection.getAutoCommit()) {
+                entry.connection.rollback();
+                entry.connection.setAutoCommit(true);
+            }
+            entry.resetSettings();
+        } catch (SQLException ex) {
+            logger.debug("Discarding pooled connection that failed to reset", ex);
+            broken = true;
+        }
+        if (broken || closed || now >= entry.expiresAt) {
+            remove(entry);
+            return;
+        }
+
+        entry.state.set(IDLE);
+        if (closed) {
+            //close may have scanned the entries before this one was idle
+            if (entry.claim()) {
+                remove(entry);
+            }
+            return;
+        }
+        ArrayDeque<Entry> mine = recent.get();
+        mine.remove(entry);
+        mine.addLast(entry);
+        if (mine.size() > AFFINITY_SIZE) {
+            mine.removeFirst();
+        }
+        if (waiters.get() > 0) {
+            //only succeeds if a thread is waiting in poll, otherwise the connection is found by the next scan
+            handoff.offer(entry);
+        }
+    }
+
+    private Entry claimIdle() {
+        Iterator<Entry> mine = recent.get().descendingIterator();
+        while (mine.hasNext()) {
+            Entry entry = mine.next();
+            if (entry.state.get() == REMOVED) {
+                mine.remove();
+            } else if (entry.claim()) {
+                return entry;
+            }
+        }
+        Object[] all = entries.toArray();
+        if (all.length == 0) {
+            return null;
+        }
+        int offset = (int) (Thread.currentThread().getId() % all.length);
+        for (int i = 0; i < all.length; i++) {
+            Entry entry = (Entry) all[(offset + i) % all.length];
+            if (entry.claim()) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Open a new connection in the given state if the pool isn't at its maximum size.
+     *
+     * @return the new connection, or null if the pool is full
+     */
+    private Entry tryCreate(int state) throws SQLException {
+        while (true) {
+            int count = reserved.get();
+            if (count >= maxSize) {
+                return null;
+            }
+            if (reserved.compareAndSet(count, count + 1)) {
+                break;
+            }
+        }
+        try {
+            Connection connection = username == null ? DriverManager.getConnection(url) : DriverManager.getConnection(url, username, password);
+            Entry entry;
+            try {
+                entry = new Entry(connection, statementCacheSize > 0 ? new StatementCache(connection, statementCacheSize, statementCacheStats) : null, state);
+            } catch (SQLException | RuntimeException ex) {
+                connection.close();
+                throw ex;
+            }
+            entries.add(entry);
+            return entry;
+        } catch (SQLException | RuntimeException ex) {
+            reserved.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    private Entry await(long deadline) throws SQLException {
+        waiters.incrementAndGet();
+        try {
+            while (true) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || closed) {
+                    return null;
+                }
+                Entry entry = handoff.poll(Math.min(remaining, WAIT_SLICE_NANOS), TimeUnit.NANOSECONDS);
+                if (entry != null && entry.claim()) {
+                    return entry;
+                }
+                entry = claimIdle();
+                if (entry == null) {
+                    entry = tryCreate(IN_USE);
+                }
+                if (entry != null) {
+                    return entry;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a pooled connection", ex);
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Prepare a claimed connection for use, connections past their lifetime or that fail validation are removed.
+     *
+     * @return false if the connection was removed
+     */
+    private boolean checkOut(Entry entry) throws SQLException {
+        if (closed) {
+            remove(entry);
+            throw new SQLException("Connection pool is closed");
+        }
+        long now = System.currentTimeMillis();
+        if (now >= entry.expiresAt) {
+            remove(entry);
+            return false;
+        }
+        if (validateAfterIdleMillis >= 0 && now - entry.lastUsed >= validateAfterIdleMillis && !isValid(entry)) {
+            remove(entry);
+            return false;
+        }
+        if (leakDetectionMillis > 0) {
+            Exception stack = new Exception("Pooled connection checked out here");
+            entry.leakWarning = housekeeper.schedule(() -> logger.warn("Possible connection leak, a pooled connection has been checked out for over "
+                    + leakDetectionMillis + "ms", stack), leakDetectionMillis, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    private static boolean isValid(Entry entry) {
+        try {
+            return entry.connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException ex) {
+            logger.debug("Pooled connection failed validation", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Close a connection that is claimed (or can no longer be used) and take it out of the pool.
+     */
+    private void remove(Entry entry) {
+        if (entry.state.getAndSet(REMOVED) == REMOVED) {
+            return;
+        }
+        entries.remove(entry);
+        reserved.decrementAndGet();
+        if (entry.statementCache != null) {
+            entry.statementCache.close();
+        }
+        try {
+            entry.connection.close();
+        } catch (SQLException ex) {
+            logger.debug("Failed to close pooled connection", ex);
+        }
+        if (!closed && reserved.get() < minSize) {
+            housekeeper.execute(this::fill);
+        }
+    }
+
+    /**
+     * Open idle connections until the pool has its minimum size.
+     */
+    private void fill() {
+        try {
+            while (!closed && reserved.get() < minSize && tryCreate(IDLE) != null) {
+                if (waiters.get() > 0) {
+                    //let a waiting thread find the new connection on its next scan
+                    Thread.yield();
+                }
+            }
+        } catch (SQLException ex) {
+            logger.warn("Failed to open pooled connection", ex);
+        }
+    }
+
+    /**
+     * Remove idle connections that are past their lifetime or have been idle too long above the minimum size, then fill back up.
+     */
+    private void houseKeep() {
+        long now = System.currentTimeMillis();
+        for (Entry entry : entries) {
+            boolean expired = now >= entry.expiresAt;
+            boolean idleTooLong = idleTimeoutMillis > 0 && now - entry.lastUsed > idleTimeoutMillis && reserved.get() > minSize;
+            if ((expired || idleTooLong) && entry.claim()) {
+                remove(entry);
+            }
+        }
+        fill();
+    }
+
+    /**
+     * Close idle connections and stop the pool, connections that are checked out are closed when they are returned.
+     */
+    void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        for (Entry entry : entries) {
+            if (entry.claim()) {
+                remove(entry);
+            }
+        }
+    }
+
+    int getTotalConnections() {
+        return entries.size();
+    }
+
+    int getIdleConnections() {
+        int idle = 0;
+        for (Entry entry : entries) {
+            if (entry.state.get() == IDLE) {
+                idle++;
+            }
+        }
+        return idle;
+    }
+
+    int getActiveConnections() {
+        int active = 0;
+        for (Entry entry : entries) {
+            if (entry.state.get() == IN_USE) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    int getWaitingThreads() {
+        return waiters.get();
+    }
+
+    /**
+     * A physical connection in the pool along with its StatementCache and the settings it was opened with.
+     */
+    final class Entry {
+        final Connection connection;
+        final StatementCache statementCache;
+        private final AtomicInteger state;
+        private final long expiresAt;
+        private final boolean readOnly;
+        private final int isolation;
+        private final String catalog;
+        //-1 if the driver doesn't support holdability
+        private final int holdability;
+        private volatile long lastUsed;
+        private volatile ScheduledFuture<?> leakWarning;
+
+        private Entry(Connection connection, StatementCache statementCache, int state) throws SQLException {
+            this.connection = connection;
+            this.statementCache = statementCache;
+            this.state = new AtomicInteger(state);
+            this.readOnly = connection.isReadOnly();
+            this.isolation = connection.getTransactionIsolation();
+            this.catalog = connection.getCatalog();
+            int holdability;
+            try {
+                holdability = connection.getHoldability();
+            } catch (SQLFeatureNotSupportedException ex) {
+                holdability = -1;
+            }
+            this.holdability = holdability;
+            long now = System.currentTimeMillis();
+            this.lastUsed = now;
+            if (maxLifetimeMillis > 0) {
+                //up to 2.5% earlier so connections opened together aren't all replaced at once
+                this.expiresAt = now + maxLifetimeMillis - ThreadLocalRandom.current().nextLong(maxLifetimeMillis / 40 + 1);
+            } else {
+                this.expiresAt = Long.MAX_VALUE;
+            }
+        }
+
+        private boolean claim() {
+            return state.compareAndSet(IDLE, IN_USE);
+        }
+
+        /**
+         * Undo settings changed by the last borrower (Eg. withReadOnlyConnection), so they don't leak to the next one.
+         */
+        private void resetSettings() throws SQLException {
+            if (connection.isReadOnly() != readOnly) {
+                connection.setReadOnly(readOnly);
+            }
+            if (connection.getTransactionIsolation() != isolation) {
+                connection.setTransactionIsolation(isolation);
+            }
+            if (catalog != null && !catalog.equals(connection.getCatalog())) {
+                connection.setCatalog(catalog);
+            }
+            if (holdability != -1 && connection.getHoldability() != holdability) {
+                connection.setHoldability(holdability);
+            }
+        }
+    }
+}
@@ -1,16 +1,24 @@
 package com.dbcontrol;
 
+import com.dbcontrol.entity.EntityMapping;
+import com.dbcontrol.export.ResultSetExporter;
 import com.dbcontrol.handlers.QueryHandler;
 import com.dbcontrol.handlers.WithConnection;
 import com.dbcontrol.results.DBFKData;
 import com.dbcontrol.results.DBMetaData;
+import com.dbcontrol.results.DBResultTable;
 import com.dbcontrol.results.DBRow;
+import com.dbcontrol.results.RowMapper;
 import com.dbcontrol.results.StoredProcedureResults;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 /**
  * Interface for a connection to a database that can execute SQL.
@@ -20,11 +28,61 @@ import java.util.concurrent.Future;
 public interface DBConnection extends AutoCloseable {
     List<DBRow> query(String sql, Object... params) throws SQLException;
 
+    /**
+     * Run the provided SQL, or return the cached results of an earlier call with the same SQL and parameters if the DBControlConfig has a QueryCache.<br>
+     * The rows are read-only and shared with other callers. Without a QueryCache this is the same as query.
+     *
+     * @param ttlMillis how long the results can be cached for
+     */
+    List<DBRow> queryCached(long ttlMillis, String sql, Object... params) throws SQLException;
+
+    /**
+     * Run the provided SQL and map each result to an object of a class with the RowMapper compiled for the class and the query's fields,
+     * reading columns with typed getters instead of creating DBRows.
+     *
+     * @see RowMapper#of(Class, DBMetaData)
+     */
+    <T> List<T> query(Class<T> type, String sql, Object... params) throws SQLException;
+
     /**
      * Run the provided SQL and pass each result as a DBRow through a QueryHandler.
      */
     int queryHandle(String sql, Object[] params, QueryHandler handler) throws SQLException;
 
+    /**
+     * Run the provided SQL and lazily read each result as a DBRow while the Stream is consumed.<br>
+     * The driver fetches rows in chunks of the configured stream fetch size instead of reading all of them at once.<br>
+     * NOTE: The Stream must be closed (Eg. try-with-resources) to release the statement, and is only valid inside the WithConnection it was created in.
+     */
+    Stream<DBRow> stream(String sql, Object... params) throws SQLException;
+
+    /**
+     * Run the provided SQL and read the results into a column oriented DBResultTable instead of a DBRow per result.
+     */
+    DBResultTable queryColumnar(String sql, Object... params) throws SQLException;
+
+    /**
+     * Run the provided SQL and write the results to an OutputStream with a ResultSetExporter, straight from the ResultSet without a DBRow per result.<br>
+     * The driver fetches rows in chunks of the configured stream fetch size, like stream. The OutputStream isn't flushed or closed.
+     *
+     * @return the number of rows written
+     */
+    long export(String sql, Object[] params, ResultSetExporter exporter, OutputStream out) throws SQLException, IOException;
+
+    /**
+     * Run the provided SQL and write the results to a channel (Eg. a SocketChannel or FileChannel) with a ResultSetExporter.
+     *
+     * @return the number of rows written
+     */
+    long export(String sql, Object[] params, ResultSetExporter exporter, WritableByteChannel out) throws SQLException, IOException;
+
+    /**
+     * Create a BulkLoader for loading a large number of rows into a table with the fastest method the database supports.
+     *
+     * @param columns the columns each row has values for, all the columns of the table in order if none
+     */
+    BulkLoader bulkLoader(String tableName, String... columns);
+
     /**
      * Create a Future for running the provided Sql query in an asynchronous fashion.
      */
@@ -56,12 +114,59 @@ public interface DBConnection extends AutoCloseable {
      */
     Object directInsert(String tableName, Map<String, Object> fieldValues) throws SQLException;
 
+    /**
+     * Insert many records into the named table with JDBC batches.<br>
+     * Rows with the same set of non-null fields share one PreparedStatement and are sent in chunks of the configured batch size.<br>
+     * Fails if any row does not insert exactly 1 record.
+     *
+     * @return the generated key for each row in the same order as the rows, or nulls where the driver doesn't return batch generated keys
+     */
+    List<Object> batchInsert(String tableName, List<Map<String, Object>> rows) throws SQLException;
+
+    /**
+     * Execute the same sql statement once for each parameter array with JDBC batches sent in chunks of the configured batch size.
+     *
+     * @return the number of rows affected for each parameter array (or Statement.SUCCESS_NO_INFO if the driver doesn't know)
+     */
+    int[] executeBatch(String sql, List<Object[]> paramRows) throws SQLException;
+
     /**
      * Delete a record from the named table that has all the same field/column values as the provided DBRow.<br>
      * Fails if more or less than 1 record was affected.
      */
     int delete(String tableName, DBRow row) throws SQLException;
 
+    /**
+     * Insert an entity with the SQL and binding generated for its DBTable class, setting its DBId if the database generates it.
+     */
+    <T> int insert(EntityMapping<T> mapping, T entity) throws SQLException;
+
+    /**
+     * Update every column of an entity by its DBId. Fails if more or less than 1 record was affected.
+     */
+    <T> int update(EntityMapping<T> mapping, T entity) throws SQLException;
+
+    /**
+     * Delete an entity by its DBId. Fails if more or less than 1 record was affected.
+     */
+    <T> int delete(EntityMapping<T> mapping, T entity) throws SQLException;
+
+    /**
+     * Insert many entities with JDBC batches sent in chunks of the configured batch size.<br>
+     * Generated DBIds are set on the entities when the driver returns a key for each row of a batch.
+     */
+    <T> int[] batchInsert(EntityMapping<T> mapping, List<T> entities) throws SQLException;
+
+    /**
+     * Update many entities by their DBIds with JDBC batches. Fails if any entity does not update exactly 1 record.
+     */
+    <T> int[] batchUpdate(EntityMapping<T> mapping, List<T> entities) throws SQLException;
+
+    /**
+     * Delete many entities by their DBIds with JDBC batches. Fails if any entity does not delete exactly 1 record.
+     */
+    <T> int[] batchDelete(EntityMapping<T> mapping, List<T> entities) throws SQLException;
+
     /**
      * Execute an arbitrary sql statement that update the database.
      *
@@ -95,6 +200,24 @@ public interface DBConnection extends AutoCloseable {
      */
     <T, E extends Exception> T inTransaction(WithConnection<T, E> trans) throws SQLException, E;
 
+    /**
+     * Set the timeout applied with Statement.setQueryTimeout to each statement executed after this call.
+     *
+     * @param seconds the timeout, 0 for no limit
+     */
+    void setQueryTimeout(int seconds);
+
+    /**
+     * Cancel the statement that is currently executing, if there is one. Can be called from another thread.
+     */
+    void cancel() throws SQLException;
+
+    /**
+     * Mark the connection read-only (Connection.setReadOnly), so the driver and database can route and optimize for reads.
+     * Can't be changed during a transaction.
+     */
+    void setReadOnly(boolean readOnly) throws SQLException;
+
     /**
      * Close and release any connections.
      */
@@ -30,6 +30,27 @@ public interface DBControl extends AutoCloseable {
      */
     <T, E extends Exception> T inTransaction(WithConnection<T, E> trans) throws SQLException, E;
 
+    /**
+     * Run some code that only reads with a read-only ConnectionWrapper. DBControls with read replicas run it on a replica.
+     */
+    default <T, E extends Exception> T withReadOnlyConnection(WithConnection<T, E> with) throws SQLException, E {
+        return withConnection(connect -> {
+            connect.setReadOnly(true);
+            try {
+                return with.with(connect);
+            } finally {
+                connect.setReadOnly(false);
+            }
+        });
+    }
+
+    /**
+     * Create a builder for running independent tasks at the same time, each with its own connection from this DBControl.
+     */
+    default ParallelQueries parallel() {
+        return new ParallelQueries(this);
+    }
+
     /**
      * Close and release any connections.
      */
@@ -0,0 +1,215 @@
+package com.dbcontrol;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of the SQL generated by the update/insert/delete convenience methods of JDBCDBConnection.<br>
+ * The SQL only depends on the table, the columns and which WHERE columns are compared with IS NULL, so the same shape
+ * always produces the same SQL string (which lets a StatementCache reuse the statement) and is only built once.<br>
+ * Callers should put SET/INSERT columns in {@link #COLUMN_ORDER} so field-value maps with any iteration order share a shape.
+ */
+final class DMLShapes {
+    /**
+     * The canonical order of SET/INSERT columns.
+     */
+    static final Comparator<String> COLUMN_ORDER = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private static final int CACHE_SIZE = 1024;
+    private static final ConcurrentMap<Shape, String> cache = new ConcurrentHashMap<>();
+    //reused to look up shapes without allocating a key, copied into the cache only when the SQL is built
+    private static final ThreadLocal<Shape> probe = ThreadLocal.withInitial(Shape::new);
+
+    private enum Kind {
+        INSERT,
+        UPDATE,
+        DELETE,
+    }
+
+    private DMLShapes() {
+    }
+
+    /**
+     * INSERT INTO table (columns...) values (?...)
+     */
+    static String insert(String tableName, List<String> columns) {
+        return get(Kind.INSERT, tableName, columns, Collections.<String>emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * UPDATE table SET column = ?... WHERE column = ? AND column IS NULL...<br>
+     * WHERE columns with a null value are compared with IS NULL and have no parameter.
+     */
+    static String update(String tableName, List<String> setColumns, List<String> whereColumns, List<Object> whereValues) {
+        return get(Kind.UPDATE, tableName, setColumns, whereColumns, whereValues);
+    }
+
+    /**
+     * DELETE FROM table WHERE column = ? AND column IS NULL...<br>
+     * WHERE columns with a null value are compared with IS NULL and have no parameter.
+     */
+    static String delete(String tableName, List<String> whereColumns, List<Object> whereValues) {
+        return get(Kind.DELETE, tableName, Collections.<String>emptyList(), whereColumns, whereValues);
+    }
+
+    private static String get(Kind kind, String tableName, List<String> columns, List<String> whereColumns, List<?> whereValues) {
+        Shape key = probe.get().set(kind, tableName, columns, whereColumns, whereValues);
+        try {
+            String sql = cache.get(key);
+            if (sql == null) {
+                Shape shape = key.copy();
+                sql = shape.buildSql();
+                if (cache.size() >= CACHE_SIZE) {
+                    //approximate eviction, only on a miss so lookups never write
+                    Iterator<Shape> it = cache.keySet().iterator();
+                    if (it.hasNext()) {
+                        it.next();
+                        it.remove();
+                    }
+                }
+                cache.putIfAbsent(shape, sql);
+            }
+            return sql;
+        } finally {
+            key.clear();
+        }
+    }
+
+    private static final class Shape {
+        private Kind kind;
+        private String tableName;
+        private List<String> columns;
+        private List<String> whereColumns;
+        //bit i is set when WHERE column i is compared with IS NULL
+        private long[] whereNulls = new long[1];
+        private int hash;
+
+        private Shape set(Kind kind, String tableName, List<String> columns, List<String> whereColumns, List<?> whereValues) {
+            this.kind = kind;
+            this.tableName = tableName;
+            this.columns = columns;
+            this.whereColumns = whereColumns;
+            int words = words(whereColumns.size());
+            if (whereNulls.length < words) {
+                whereNulls = new long[words];
+            } else {
+                Arrays.fill(whereNulls, 0, words, 0L);
+            }
+            for (int i = 0; i < whereValues.size(); i++) {
+                if (whereValues.get(i) == null) {
+                    whereNulls[i >>> 6] |= 1L << i;
+                }
+            }
+            int hash = kind.hashCode();
+            hash = 31 * hash + tableName.hashCode();
+            hash = 31 * hash + columns.hashCode();
+            hash = 31 * hash + whereColumns.hashCode();
+            for (int w = 0; w < words; w++) {
+                hash = 31 * hash + Long.hashCode(whereNulls[w]);
+            }
+            this.hash = hash;
+            return this;
+        }
+
+        private Shape copy() {
+            Shape copy = new Shape();
+            copy.kind = kind;
+            copy.tableName = tableName;
+            copy.columns = new ArrayList<>(columns);
+            copy.whereColumns = new ArrayList<>(whereColumns);
+            copy.whereNulls = Arrays.copyOf(whereNulls, Math.max(1, words(whereColumns.size())));
+            copy.hash = hash;
+            return copy;
+        }
+
+        /**
+         * Drop the references to the caller's lists once a lookup is done.
+         */
+        private void clear() {
+            tableName = null;
+            columns = null;
+            whereColumns = null;
+        }
+
+        private static int words(int bits) {
+            return (bits + Long.SIZE - 1) >>> 6;
+        }
+
+        private boolean isNull(int whereIndex) {
+            return (whereNulls[whereIndex >>> 6] & (1L << whereIndex)) != 0;
+        }
+
+        private String buildSql() {
+            StringBuilder sql = new StringBuilder();
+            switch (kind) {
+                case INSERT:
+                    sql.append("INSERT INTO ").append(tableName).append(" (");
+                    for (int i = 0; i < columns.size(); i++) {
+                        if (i > 0) {
+                            sql.append(", ");
+                        }
+                        sql.append(columns.get(i));
+                    }
+                    sql.append(") values (");
+                    for (int i = 0; i < columns.size(); i++) {
+                        sql.append(i > 0 ? ", ?" : "?");
+                    }
+                    sql.append(")");
+                    return sql.toString();
+                case UPDATE:
+                    sql.append("UPDATE ").append(tableName).append(" SET ");
+                    for (int i = 0; i < columns.size(); i++) {
+                        if (i > 0) {
+                            sql.append(", ");
+                        }
+                        sql.append(columns.get(i)).append(" = ?");
+                    }
+                    break;
+                default:
+                    sql.append("DELETE FROM ").append(tableName);
+                    break;
+            }
+            sql.append(" WHERE ");
+            for (int i = 0; i < whereColumns.size(); i++) {
+                if (i > 0) {
+                    sql.append(" AND ");
+                }
+                sql.append(whereColumns.get(i));
+                sql.append(isNull(i) ? " IS NULL" : " = ?");
+            }
+            return sql.toString();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Shape)) {
+                return false;
+            }
+            Shape other = (Shape) obj;
+            if (hash != other.hash || kind != other.kind || !tableName.equals(other.tableName) || !columns.equals(other.columns)
+                    || !whereColumns.equals(other.whereColumns)) {
+                return false;
+            }
+            for (int w = words(whereColumns.size()) - 1; w >= 0; w--) {
+                if (whereNulls[w] != other.whereNulls[w]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
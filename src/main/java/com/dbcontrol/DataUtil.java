@@ -2,6 +2,8 @@ package com.dbcontrol;
 
 import com.dbcontrol.results.DBMetaData;
 import com.dbcontrol.results.DBRow;
+import com.dbcontrol.results.LobPolicy;
+import com.dbcontrol.results.TemporalTypes;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalDateTime;
 import org.joda.time.LocalTime;
@@ -17,14 +19,42 @@ import java.util.List;
  */
 class DataUtil {
     static List<DBRow> getRowsFromResultSet(ResultSet rs) throws SQLException {
-        DBMetaData dbm = new DBMetaData(rs.getMetaData());
+        return getRowsFromResultSet(rs, new DBMetaData(rs.getMetaData()), LobPolicy.eager(), TemporalTypes.JODA);
+    }
+
+    /**
+     * Read all the rows from the ResultSet using DBMetaData that has already been read for it (Eg. cached with the statement), with CLOB and
+     * BLOB values read as the LobPolicy says and DATE, DATETIME and TIME values as the TemporalTypes.
+     */
+    static List<DBRow> getRowsFromResultSet(ResultSet rs, DBMetaData dbm, LobPolicy lobs, TemporalTypes temporals) throws SQLException {
         List<DBRow> retval = new ArrayList<>();
         while (rs.next()) {
-            retval.add(new DBRow(dbm, rs));
+            retval.add(new DBRow(dbm, rs, lobs, temporals));
         }
         return retval;
     }
 
+    /**
+     * With TemporalTypes.JAVA_TIME, Joda dates and times are converted to java.time field by field to be bound directly, instead of through
+     * java.util.Date and the default time zone.
+     */
+    static Object getDBObject(Object obj, TemporalTypes temporals) {
+        if (temporals != TemporalTypes.JAVA_TIME) {
+            return getDBObject(obj);
+        } else if (obj instanceof LocalDateTime) {
+            LocalDateTime dt = (LocalDateTime) obj;
+            return java.time.LocalDateTime.of(dt.getYear(), dt.getMonthOfYear(), dt.getDayOfMonth(),
+                    dt.getHourOfDay(), dt.getMinuteOfHour(), dt.getSecondOfMinute(), dt.getMillisOfSecond() * 1000000);
+        } else if (obj instanceof LocalDate) {
+            LocalDate ld = (LocalDate) obj;
+            return java.time.LocalDate.of(ld.getYear(), ld.getMonthOfYear(), ld.getDayOfMonth());
+        } else if (obj instanceof LocalTime) {
+            LocalTime lt = (LocalTime) obj;
+            return java.time.LocalTime.of(lt.getHourOfDay(), lt.getMinuteOfHour(), lt.getSecondOfMinute(), lt.getMillisOfSecond() * 1000000);
+        }
+        return obj;
+    }
+
     /**
      * Certain sql types aren't the best to work with (Eg. date/times), so this translates from alternative object types (Eg. Joda date/time classes) to the sql types.
      */
@@ -1,17 +1,38 @@
 package com.dbcontrol;
 
+import com.dbcontrol.StatementCache.CachedStatement;
+import com.dbcontrol.StatementCache.StatementKind;
+import com.dbcontrol.config.DBControlConfig;
+import com.dbcontrol.config.DBControlConfig.RowMatching;
 import com.dbcontrol.config.cancel.SQLCancellationDetector;
+import com.dbcontrol.entity.EntityMapping;
 import com.dbcontrol.exceptions.RowsAffectedSQLException;
+import com.dbcontrol.export.ResultSetExporter;
+import com.dbcontrol.exceptions.UncheckedSQLException;
 import com.dbcontrol.handlers.QueryHandler;
 import com.dbcontrol.handlers.WithConnection;
 import com.dbcontrol.handlers.WithConnectionClean;
+import com.dbcontrol.intercept.StatementContext;
+import com.dbcontrol.intercept.StatementInterceptor;
+import com.dbcontrol.metrics.DBMetricsListener;
 import com.dbcontrol.results.*;
 import com.dbcontrol.results.DBMetaData.DBFieldData;
 import com.dbcontrol.results.DBMetaData.DBFieldType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.sql.*;
 import java.util.*;
 import java.util.Map.Entry;
@@ -19,6 +40,9 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * DBConnection implementation wrapper around a JDBC Connection.
@@ -27,44 +51,306 @@ import java.util.concurrent.TimeoutException;
  */
 public class JDBCDBConnection implements DBConnection {
     private static final Logger logger = LoggerFactory.getLogger(JDBCDBConnection.class);
+    //PreparedStatement classes whose setObject failed for java.time values
+    private static final ClassValue<boolean[]> NO_JAVA_TIME = new ClassValue<boolean[]>() {
+        @Override
+        protected boolean[] computeValue(Class<?> type) {
+            return new boolean[1];
+        }
+    };
 
     private final Connection connection;
     private int transactionDepth = 0;
     private final SQLCancellationDetector cancelDetector;
+    private final StatementCache statementCache;
+    private final SchemaCache schemaCache;
+    private final int batchSize;
+    private final RowMatching rowMatching;
+    private final String versionColumn;
+    private final int streamFetchSize;
+    private final boolean streamInTransaction;
+    private final LobPolicy lobs;
+    private final TemporalTypes temporals;
+    private final DBMetricsListener metrics;
+    //the enabled interceptors, null if there are none so statements skip creating a StatementContext
+    private final StatementInterceptor[] interceptors;
+    private final QueryCache queryCache;
+    //tables written in the current transaction, invalidated again in the QueryCache when it commits
+    private Set<String> writtenTables;
+    private int queryTimeout = 0;
+    //files opened for Path parameters, closed when the statement is released
+    private List<Closeable> openedParams;
+    //the statement most recently executed, for cancel() from another thread
+    private volatile Statement running;
 
     public JDBCDBConnection(Connection connection, SQLCancellationDetector cancelDetector) {
+        this(connection, configWith(cancelDetector), null, new SchemaCache());
+    }
+
+    /**
+     * @param config         the configuration the DBControl was initialized with
+     * @param statementCache the StatementCache for the physical connection, or null to prepare a new statement for every call
+     * @param schemaCache    the SchemaCache shared by the connections of the DBControl
+     */
+    public JDBCDBConnection(Connection connection, DBControlConfig config, StatementCache statementCache, SchemaCache schemaCache) {
         this.connection = connection;
-        this.cancelDetector = cancelDetector;
+        this.cancelDetector = config.getSQLCancellationDetector();
+        this.statementCache = statementCache;
+        this.schemaCache = schemaCache;
+        this.batchSize = Math.max(1, config.getBatchSize());
+        this.rowMatching = config.getRowMatching();
+        this.versionColumn = config.getVersionColumn() == null ? null : config.getVersionColumn().toLowerCase();
+        this.streamFetchSize = config.getStreamFetchSize();
+        this.streamInTransaction = config.isStreamInTransaction();
+        this.lobs = config.getLobPolicy();
+        this.temporals = config.getTemporalTypes();
+        this.metrics = config.getMetricsListener();
+        this.interceptors = enabled(config.getStatementInterceptors());
+        this.queryCache = config.getQueryCache();
+    }
+
+    private static StatementInterceptor[] enabled(List<StatementInterceptor> interceptors) {
+        List<StatementInterceptor> enabled = new ArrayList<>();
+        if (interceptors != null) {
+            for (StatementInterceptor interceptor : interceptors) {
+                if (interceptor.isEnabled()) {
+                    enabled.add(interceptor);
+                }
+            }
+        }
+        return enabled.isEmpty() ? null : enabled.toArray(new StatementInterceptor[0]);
+    }
+
+    private static DBControlConfig configWith(SQLCancellationDetector cancelDetector) {
+        DBControlConfig config = new DBControlConfig();
+        config.setSQLCancellationDetector(cancelDetector);
+        return config;
     }
 
     @Override
     public List<DBRow> query(String sql, Object... params) throws SQLException {
-        try (Statement statement = queryPre(sql, params)) {
-            return DataUtil.getRowsFromResultSet(queryExecute(statement, sql));
+        return runQuery(sql, params, null, this::readRows);
+    }
+
+    @Override
+    public List<DBRow> queryCached(long ttlMillis, String sql, Object... params) throws SQLException {
+        //uncommitted writes on this connection aren't visible to other connections, so neither read nor fill the cache
+        if (queryCache == null || ttlMillis <= 0 || (writtenTables != null && !writtenTables.isEmpty())) {
+            return query(sql, params);
+        }
+        QueryCache.Key key = QueryCache.key(sql, params);
+        if (key == null) {
+            return query(sql, params);
         }
+        List<DBRow> rows = queryCache.get(key);
+        if (rows == null) {
+            long stamp = queryCache.stamp();
+            rows = queryCache.put(key, query(sql, params), ttlMillis, stamp);
+        }
+        return rows;
     }
 
     @Override
-    public int queryHandle(String sql, Object[] params, QueryHandler handler) throws SQLException {
-        Statement statement = null;
-        try {
-            statement = queryPre(sql, params);
-            ResultSet rs = queryExecute(statement, sql);
+    public <T> List<T> query(Class<T> type, String sql, Object... params) throws SQLException {
+        return runQuery(sql, params, null, (rs, dbm) -> {
+            RowMapper<T> mapper = RowMapper.of(type, dbm);
+            List<T> results = new ArrayList<>();
+            while (rs.next()) {
+                results.add(mapper.map(rs));
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Read all the rows of a ResultSet for the methods that return rows after it is closed, spilling large LOBs as configured.
+     */
+    private List<DBRow> readRows(ResultSet rs, DBMetaData dbm) throws SQLException {
+        return DataUtil.getRowsFromResultSet(rs, dbm, lobs, temporals);
+    }
 
-            DBMetaData dbm = new DBMetaData(rs.getMetaData());
+    @Override
+    public int queryHandle(String sql, Object[] params, QueryHandler handler) throws SQLException {
+        return runQuery(sql, params, null, (rs, dbm) -> {
             int count = 0;
             while (rs.next()) {
-                handler.handleRow(new DBRow(dbm, rs));
+                handler.handleRow(new DBRow(dbm, rs, LobPolicy.streaming(), temporals));
                 count++;
             }
             return count;
-        } finally {
-            if (statement != null) {
-                statement.close();
+        });
+    }
+
+    @Override
+    public Stream<DBRow> stream(String sql, Object... params) throws SQLException {
+        StatementContext context = intercept(StatementKind.QUERY, sql, params, 0);
+        sql = sqlOf(context, sql);
+        if (streamInTransaction) {
+            startTransaction();
+        }
+        CachedStatement cached = null;
+        try {
+            cached = prepare(StatementKind.QUERY, sql);
+            cached.statement.setFetchSize(streamFetchSize);
+            setPSObjects(cached.statement, params);
+            long start = startTimer();
+            ResultSet rs;
+            try {
+                rs = cached.statement.executeQuery();
+            } catch (SQLException ex) {
+                throw failed(context, start, ex);
+            }
+            executed(context, sql, start);
+            RowSpliterator rows = new RowSpliterator(context, sql, cached, rs, cached.getMetaData(rs));
+            return StreamSupport.stream(rows, false).onClose(rows::close);
+        } catch (SQLException | RuntimeException ex) {
+            try {
+                if (cached != null) {
+                    cached.statement.setFetchSize(0);
+                    release(cached);
+                }
+            } finally {
+                if (streamInTransaction) {
+                    rollbackTransaction();
+                }
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Spliterator that reads a DBRow from the ResultSet each time it advances, and releases the statement when closed or exhausted.
+     */
+    private class RowSpliterator extends Spliterators.AbstractSpliterator<DBRow> {
+        private final StatementContext context;
+        private final String sql;
+        private final CachedStatement cached;
+        private final ResultSet rs;
+        private final DBMetaData dbm;
+        private final long opened = startTimer();
+        private int count = 0;
+        private boolean closed = false;
+        private boolean failed = false;
+
+        private RowSpliterator(StatementContext context, String sql, CachedStatement cached, ResultSet rs, DBMetaData dbm) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.context = context;
+            this.sql = sql;
+            this.cached = cached;
+            this.rs = rs;
+            this.dbm = dbm;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super DBRow> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!rs.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(new DBRow(dbm, rs, LobPolicy.streaming(), temporals));
+                count++;
+                return true;
+            } catch (SQLException ex) {
+                failed = true;
+                JDBCDBConnection.this.failed(context, opened, ex);
+                close();
+                throw new UncheckedSQLException(ex);
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (metrics != null || context != null) {
+                fetched(context, sql, System.nanoTime() - opened, count);
+            }
+            try {
+                try {
+                    rs.close();
+                } finally {
+                    try {
+                        cached.statement.setFetchSize(0);
+                        release(cached);
+                    } finally {
+                        if (streamInTransaction) {
+                            if (failed) {
+                                rollbackTransaction();
+                            } else {
+                                commitTransaction();
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException ex) {
+                throw new UncheckedSQLException(ex);
             }
         }
     }
 
+    @Override
+    public DBResultTable queryColumnar(String sql, Object... params) throws SQLException {
+        return runQuery(sql, params, null, (rs, dbm) -> new DBResultTable(dbm, rs, lobs, temporals));
+    }
+
+    @Override
+    public long export(String sql, Object[] params, ResultSetExporter exporter, OutputStream out) throws SQLException, IOException {
+        return export(sql, params, (rs, dbm) -> exporter.export(rs, dbm, out));
+    }
+
+    @Override
+    public long export(String sql, Object[] params, ResultSetExporter exporter, WritableByteChannel out) throws SQLException, IOException {
+        return export(sql, params, (rs, dbm) -> exporter.export(rs, dbm, out));
+    }
+
+    /**
+     * Writes a ResultSet somewhere with a ResultSetExporter.
+     */
+    private interface ExportWriter {
+        long write(ResultSet rs, DBMetaData dbm) throws SQLException, IOException;
+    }
+
+    /**
+     * Run an export query with the stream fetch size (and in a transaction if streams are), passing IOExceptions through the ResultSetReader.
+     */
+    private long export(String sql, Object[] params, ExportWriter writer) throws SQLException, IOException {
+        WithConnection<Long, IOException> export = connect -> {
+            try {
+                return runQuery(sql, params, statement -> {
+                    try {
+                        statement.setFetchSize(streamFetchSize);
+                    } catch (SQLException ex) {
+                        throw new UncheckedSQLException(ex);
+                    }
+                }, (rs, dbm) -> {
+                    try {
+                        return writer.write(rs, dbm);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    } finally {
+                        //cached statements are reused by queries that read every row
+                        rs.getStatement().setFetchSize(0);
+                    }
+                });
+            } catch (UncheckedSQLException ex) {
+                throw ex.getCause();
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        };
+        return streamInTransaction ? inTransaction(export) : export.with(this);
+    }
+
+    @Override
+    public BulkLoader bulkLoader(String tableName, String... columns) {
+        return new BulkLoader(this, connection, tableName, Arrays.asList(columns));
+    }
+
     @Override
     public Future<List<DBRow>> queryAsync(final String sql, final Object... params) {
         return new Future<List<DBRow>>() {
@@ -74,37 +360,64 @@ public class JDBCDBConnection implements DBConnection {
 
             @Override
             public boolean cancel(boolean mayInterruptIfRunning) {
-                try {
-                    statement.cancel();
-                    canceled = true;
-                    return true;
-                } catch (SQLException ex) {
-                    return false;
+                canceled = true;
+                Statement st = statement;
+                if (st != null) {
+                    try {
+                        st.cancel();
+                    } catch (SQLException ex) {
+                        return false;
+                    }
                 }
+                return true;
             }
 
             @Override
             public List<DBRow> get() throws InterruptedException, ExecutionException {
                 try {
-                    try (Statement st = queryPre(sql, params)) {
-                        statement = st;
-                        return DataUtil.getRowsFromResultSet(queryExecute(statement, sql));
-                    }
+                    return run();
                 } catch (SQLException ex) {
-                    if (cancelDetector != null && cancelDetector.isSQLCanceled(ex)) {
+                    if (isCanceled(ex)) {
                         logger.debug("Asynchronous SQL canceled", ex);
                         return null;
                     } else {
                         throw new ExecutionException(ex);
                     }
-                } finally {
-                    done = true;
                 }
             }
 
             @Override
             public List<DBRow> get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-                throw new RuntimeException("Get with timeout not supported");
+                int previous = queryTimeout;
+                setQueryTimeout(timeoutSeconds(unit.toMillis(timeout)));
+                try {
+                    return run();
+                } catch (SQLException ex) {
+                    if (canceled) {
+                        return null;
+                    } else if (isCanceled(ex)) {
+                        TimeoutException timeoutException = new TimeoutException("Asynchronous SQL timed out");
+                        timeoutException.initCause(ex);
+                        throw timeoutException;
+                    }
+                    throw new ExecutionException(ex);
+                } finally {
+                    queryTimeout = previous;
+                }
+            }
+
+            /**
+             * Runs the query on the calling thread, unless it was canceled before it started.
+             */
+            private List<DBRow> run() throws SQLException {
+                try {
+                    if (canceled) {
+                        return null;
+                    }
+                    return runQuery(sql, params, st -> statement = st, JDBCDBConnection.this::readRows);
+                } finally {
+                    done = true;
+                }
             }
 
             @Override
@@ -119,61 +432,274 @@ public class JDBCDBConnection implements DBConnection {
         };
     }
 
-    private Statement queryPre(String sql, Object... params) throws SQLException {
-        logger.trace("SQL: " + sql);
-        logger.trace("Parameters: " + Arrays.toString(params));
-        Statement statement;
-        if (params == null || params.length == 0) {
-            statement = connection.createStatement();
-        } else {
-            PreparedStatement ps;
-            statement = ps = connection.prepareStatement(sql);
-            for (int i = 1; i <= params.length; i++) {
-                Object param = params[i - 1];
-                setPSObject(ps, i, DataUtil.getDBObject(param));
+    private boolean isCanceled(SQLException ex) {
+        return ex instanceof SQLTimeoutException || (cancelDetector != null && cancelDetector.isSQLCanceled(ex));
+    }
+
+    /**
+     * Milliseconds rounded up to the whole seconds Statement.setQueryTimeout takes, 0 for no timeout.
+     */
+    static int timeoutSeconds(long millis) {
+        if (millis <= 0) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, (millis + 999) / 1000);
+    }
+
+    /**
+     * Reads a ResultSet from a query along with the DBMetaData describing it.
+     */
+    private interface ResultSetReader<T> {
+        T read(ResultSet rs, DBMetaData dbm) throws SQLException;
+    }
+
+    /**
+     * Run a query and pass the results to the reader.<br>
+     * Without a StatementCache, queries with no parameters fall back to a normal Statement.
+     *
+     * @param started if not null, is given the statement before it is executed (Eg. to be able to cancel it)
+     */
+    private <T> T runQuery(String sql, Object[] params, Consumer<Statement> started, ResultSetReader<T> reader) throws SQLException {
+        StatementContext context = intercept(StatementKind.QUERY, sql, params, 0);
+        sql = sqlOf(context, sql);
+        if (statementCache == null && (params == null || params.length == 0)) {
+            try (Statement statement = createStatement()) {
+                if (started != null) {
+                    started.accept(statement);
+                }
+                long start = startTimer();
+                try (ResultSet rs = statement.executeQuery(sql)) {
+                    return read(context, sql, start, rs, new DBMetaData(rs.getMetaData()), reader);
+                } catch (SQLException ex) {
+                    throw failed(context, start, ex);
+                }
+            }
+        }
+        CachedStatement cached = prepare(StatementKind.QUERY, sql);
+        try {
+            setPSObjects(cached.statement, params);
+            if (started != null) {
+                started.accept(cached.statement);
+            }
+            long start = startTimer();
+            try (ResultSet rs = cached.statement.executeQuery()) {
+                return read(context, sql, start, rs, cached.getMetaData(rs), reader);
+            } catch (SQLException ex) {
+                throw failed(context, start, ex);
+            }
+        } finally {
+            release(cached);
+        }
+    }
+
+    /**
+     * Read the results of an executed query, reporting the execute and fetch times to the metrics listener and interceptors.
+     */
+    private <T> T read(StatementContext context, String sql, long start, ResultSet rs, DBMetaData dbm, ResultSetReader<T> reader) throws SQLException {
+        if (metrics == null && interceptors == null) {
+            return reader.read(rs, dbm);
+        }
+        executed(context, sql, start);
+        long fetchStart = System.nanoTime();
+        T results = reader.read(rs, dbm);
+        fetched(context, sql, System.nanoTime() - fetchStart, rowCount(results));
+        return results;
+    }
+
+    private static int rowCount(Object results) {
+        if (results instanceof List) {
+            return ((List<?>) results).size();
+        } else if (results instanceof DBResultTable) {
+            return ((DBResultTable) results).getRowCount();
+        } else if (results instanceof Integer) {
+            return (Integer) results; //queryHandle
+        } else if (results instanceof Long) {
+            return (int) Math.min(Integer.MAX_VALUE, (Long) results); //export
+        }
+        return 0;
+    }
+
+    /**
+     * Create the StatementContext for a statement and run the interceptors before it is prepared and executed.
+     *
+     * @param batchSize the number of rows in a batch, 0 if the statement isn't a batch
+     * @return the context with the SQL to run, or null if there are no interceptors
+     */
+    private StatementContext intercept(StatementKind kind, String sql, Object[] params, int batchSize) {
+        if (interceptors == null) {
+            return null;
+        }
+        StatementContext context = new StatementContext(kind, sql, params, batchSize);
+        for (StatementInterceptor interceptor : interceptors) {
+            context.setSql(interceptor.prepare(context));
+        }
+        for (StatementInterceptor interceptor : interceptors) {
+            interceptor.beforeExecute(context);
+        }
+        return context;
+    }
+
+    private static String sqlOf(StatementContext context, String sql) {
+        return context == null ? sql : context.getSql();
+    }
+
+    /**
+     * The start time of a statement, only read from the clock if there is a metrics listener or interceptors.
+     */
+    private long startTimer() {
+        return metrics == null && interceptors == null ? 0 : System.nanoTime();
+    }
+
+    private void executed(StatementContext context, String sql, long start) {
+        if (metrics == null && context == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        if (metrics != null) {
+            metrics.statementExecuted(sql, nanos);
+        }
+        if (context != null) {
+            context.setExecuteNanos(nanos);
+            for (StatementInterceptor interceptor : interceptors) {
+                interceptor.afterExecute(context, nanos);
+            }
+        }
+    }
+
+    private void fetched(StatementContext context, String sql, long nanos, int rows) {
+        if (metrics != null) {
+            metrics.rowsFetched(sql, nanos, rows);
+        }
+        if (context != null) {
+            for (StatementInterceptor interceptor : interceptors) {
+                interceptor.afterFetch(context, nanos, rows);
             }
         }
+    }
+
+    /**
+     * Run the interceptors for a statement that failed to execute or to read its results.
+     *
+     * @return the exception, to be thrown again
+     */
+    private SQLException failed(StatementContext context, long start, SQLException ex) {
+        if (context != null) {
+            long nanos = System.nanoTime() - start;
+            for (StatementInterceptor interceptor : interceptors) {
+                try {
+                    interceptor.onError(context, nanos, ex);
+                } catch (RuntimeException suppressed) {
+                    ex.addSuppressed(suppressed);
+                }
+            }
+        }
+        return ex;
+    }
+
+    private void batched(StatementContext context, String sql, long start, int size) {
+        if (metrics == null && context == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        if (metrics != null) {
+            metrics.batchExecuted(sql, nanos, size);
+        }
+        if (context != null) {
+            context.setExecuteNanos(nanos);
+            for (StatementInterceptor interceptor : interceptors) {
+                interceptor.afterExecute(context, nanos);
+            }
+        }
+    }
+
+    /**
+     * Get a PreparedStatement from the StatementCache, or prepare a new one if there isn't a cache.<br>
+     * The statement must be given back with {@link #release(CachedStatement)}.
+     */
+    private CachedStatement prepare(StatementKind kind, String sql) throws SQLException {
+        CachedStatement cached = statementCache == null ? CachedStatement.uncached(connection, kind, sql) : statementCache.checkout(kind, sql, schemaCache.getGeneration());
+        track(cached.statement);
+        return cached;
+    }
+
+    private Statement createStatement() throws SQLException {
+        Statement statement = connection.createStatement();
+        track(statement);
         return statement;
     }
 
-    private ResultSet queryExecute(Statement statement, String sql) throws SQLException {
-        ResultSet rs;
-        if (statement instanceof PreparedStatement) {
-            rs = ((PreparedStatement) statement).executeQuery();
-        } else {
-            rs = statement.executeQuery(sql);
+    /**
+     * Apply the query timeout to a statement about to be executed and remember it for {@link #cancel()}.
+     */
+    private void track(Statement statement) throws SQLException {
+        //always set, cached statements keep the timeout of their last use
+        statement.setQueryTimeout(queryTimeout);
+        running = statement;
+    }
+
+    private void release(CachedStatement cached) throws SQLException {
+        if (running == cached.statement) {
+            running = null;
+        }
+        try {
+            if (statementCache == null) {
+                cached.statement.close();
+            } else {
+                statementCache.release(cached);
+            }
+        } finally {
+            closeOpenedParams();
         }
-        return rs;
     }
 
-    private int singleUpdate(final QueryBuilder sql) throws SQLException {
-        logger.trace("SQL: " + sql.getSql());
-        logger.trace("Parameters: " + Arrays.toString(sql.getParams()));
+    private void closeOpenedParams() {
+        if (openedParams != null) {
+            for (Closeable opened : openedParams) {
+                try {
+                    opened.close();
+                } catch (IOException ex) {
+                    logger.debug("Failed to close parameter", ex);
+                }
+            }
+            openedParams = null;
+        }
+    }
+
+    private int singleUpdate(String tableName, String sql, final Object[] params) throws SQLException {
+        final StatementContext context = intercept(StatementKind.UPDATE, sql, params, 0);
+        final String runSql = sqlOf(context, sql);
 
         return inTransaction(connect -> {
-            try (PreparedStatement ps = connection.prepareStatement(sql.getSql())) {
-                List<Object> params = sql.getParamList();
-                for (int i = 1; i <= params.size(); i++) {
-                    setPSObject(ps, i, params.get(i - 1));
+            CachedStatement cached = prepare(StatementKind.UPDATE, runSql);
+            try {
+                PreparedStatement ps = cached.statement;
+                for (int i = 1; i <= params.length; i++) {
+                    setPSObject(ps, i, params[i - 1]);
                 }
-                int n = ps.executeUpdate();
+                long start = startTimer();
+                int n;
+                try {
+                    n = ps.executeUpdate();
+                } catch (SQLException ex) {
+                    throw failed(context, start, ex);
+                }
+                executed(context, runSql, start);
+                written(tableName);
                 if (n == 0) {
                     throw new RowsAffectedSQLException("No rows affected during update, rolling back");
                 } else if (n > 1) {
                     throw new RowsAffectedSQLException("Multiple rows affected during update, rolling back");
                 }
                 return n;
+            } finally {
+                release(cached);
             }
         });
     }
 
     @Override
     public int update(String tableName, DBRow row, Map<String, Object> fieldValues) throws SQLException {
-        QueryBuilder sql = new QueryBuilder();
-        sql.append("UPDATE ");
-        sql.append(tableName);
-        sql.append(" SET ");
-        boolean first = true;
+        List<String> columns = new ArrayList<>(fieldValues.size() + 1);
         for (Entry<String, Object> entry : fieldValues.entrySet()) {
             Object obj = row.getObject(entry.getKey());
             if (obj == null) {
@@ -185,76 +711,47 @@ public class JDBCDBConnection implements DBConnection {
                     continue;
                 }
             }
-            if (first) {
-                first = false;
-            } else {
-                sql.append(", ");
-            }
-            sql.append(entry.getKey());
-            sql.append(" = ? ", DataUtil.getDBObject(entry.getValue()));
+            columns.add(entry.getKey());
         }
-        if (first) { // no changes
+        if (columns.isEmpty()) { // no changes
             return 0;
         }
-        sql.append(" WHERE ");
-        first = true;
-        for (DBFieldData field : row.getMetadata().getFieldData().values()) {
-            if (field.getType() == DBFieldType.CLOB) {
-                continue; //don't compare clobs...
-            }
-            if (first) {
-                first = false;
-            } else {
-                sql.append(" AND ");
-            }
-            Object obj = DataUtil.getDBObject(row.getObject(field.getName()));
-            if (obj != null) {
-                sql.append(field.getName());
-                sql.append(" = ? ", obj);
-            } else {
-                sql.append(field.getName());
-                sql.append(" IS NULL ");
-            }
+        columns.sort(DMLShapes.COLUMN_ORDER);
+        List<Object> params = new ArrayList<>(columns.size() + 4);
+        for (String column : columns) {
+            params.add(DataUtil.getDBObject(fieldValues.get(column), temporals));
+        }
+        if (hasVersion(row) && !containsIgnoreCase(fieldValues, versionColumn)) {
+            columns.add(versionColumn);
+            params.add(nextVersion(row.getObject(versionColumn)));
         }
+        List<String> whereColumns = new ArrayList<>();
+        List<Object> whereValues = new ArrayList<>();
+        rowWhere(tableName, row, true, whereColumns, whereValues);
 
-        return singleUpdate(sql);
+        String sql = DMLShapes.update(tableName, columns, whereColumns, whereValues);
+        addNonNull(params, whereValues);
+        return singleUpdate(tableName, sql, params.toArray());
     }
 
     @Override
     public int update(String tableName, Map<String, Object> setValues, Map<String, Object> whereValues) throws SQLException {
-        QueryBuilder sql = new QueryBuilder();
-        sql.append("UPDATE ");
-        sql.append(tableName);
-        sql.append(" SET ");
-        boolean first = true;
-        for (Entry<String, Object> entry : setValues.entrySet()) {
-            if (first) {
-                first = false;
-            } else {
-                sql.append(", ");
-            }
-            sql.append(entry.getKey());
-            sql.append(" = ? ", DataUtil.getDBObject(entry.getValue()));
+        List<String> columns = new ArrayList<>(setValues.keySet());
+        columns.sort(DMLShapes.COLUMN_ORDER);
+        List<Object> params = new ArrayList<>(columns.size() + whereValues.size());
+        for (String column : columns) {
+            params.add(DataUtil.getDBObject(setValues.get(column), temporals));
         }
-        sql.append(" WHERE ");
-        first = true;
-        for (Entry<String, Object> entry : whereValues.entrySet()) {
-            if (first) {
-                first = false;
-            } else {
-                sql.append(" AND ");
-            }
-            Object obj = DataUtil.getDBObject(entry.getValue());
-            if (obj != null) {
-                sql.append(entry.getKey());
-                sql.append(" = ? ", obj);
-            } else {
-                sql.append(entry.getKey());
-                sql.append(" IS NULL ");
-            }
+        List<String> whereColumns = new ArrayList<>(whereValues.keySet());
+        whereColumns.sort(DMLShapes.COLUMN_ORDER);
+        List<Object> whereParams = new ArrayList<>(whereColumns.size());
+        for (String column : whereColumns) {
+            whereParams.add(DataUtil.getDBObject(whereValues.get(column), temporals));
         }
 
-        return singleUpdate(sql);
+        String sql = DMLShapes.update(tableName, columns, whereColumns, whereParams);
+        addNonNull(params, whereParams);
+        return singleUpdate(tableName, sql, params.toArray());
     }
 
     @Override
@@ -283,41 +780,20 @@ public class JDBCDBConnection implements DBConnection {
 
     @Override
     public Object directInsert(String tableName, Map<String, Object> fieldValues) throws SQLException {
-        final List<Object> parameters = new ArrayList<>();
-        final StringBuilder sql = new StringBuilder("INSERT INTO ");
-        sql.append(tableName);
-        sql.append(" (");
-        boolean first = true;
-        List<String> fields = new ArrayList<>(fieldValues.keySet());
-        for (String field : fields) {
-            if (fieldValues.get(field) == null) {
-                continue;
-            }
-            if (first) {
-                first = false;
-            } else {
-                sql.append(", ");
+        List<String> fields = new ArrayList<>(fieldValues.size());
+        for (Entry<String, Object> entry : fieldValues.entrySet()) {
+            if (entry.getValue() != null) {
+                fields.add(entry.getKey());
             }
-            sql.append(field);
         }
-        sql.append(") values (");
-        first = true;
-        for (String field : fields) {
-            if (fieldValues.get(field) == null) {
-                continue;
-            }
-            if (first) {
-                first = false;
-            } else {
-                sql.append(", ");
-            }
-            sql.append("?");
-            parameters.add(DataUtil.getDBObject(fieldValues.get(field)));
+        fields.sort(DMLShapes.COLUMN_ORDER);
+        final Object[] parameters = new Object[fields.size()];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = DataUtil.getDBObject(fieldValues.get(fields.get(i)), temporals);
         }
-        sql.append(")");
-
-        logger.trace("SQL: " + sql);
-        logger.trace("Parameters: " + Arrays.toString(parameters.toArray()));
+        String insertSql = DMLShapes.insert(tableName, fields);
+        final StatementContext context = intercept(StatementKind.GENERATED_KEYS, insertSql, parameters, 0);
+        final String sql = sqlOf(context, insertSql);
 
         class KeyStore {
             Object key;
@@ -327,17 +803,28 @@ public class JDBCDBConnection implements DBConnection {
         inTransaction(new WithConnectionClean() {
             @Override
             public void withConn(DBConnection connect) throws SQLException {
-                try (PreparedStatement ps = connection.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS)) {
-                    for (int i = 1; i <= parameters.size(); i++) {
-                        setPSObject(ps, i, parameters.get(i - 1));
+                CachedStatement cached = prepare(StatementKind.GENERATED_KEYS, sql);
+                try {
+                    PreparedStatement ps = cached.statement;
+                    for (int i = 1; i <= parameters.length; i++) {
+                        setPSObject(ps, i, parameters[i - 1]);
+                    }
+                    long start = startTimer();
+                    try {
+                        ps.executeUpdate();
+                    } catch (SQLException ex) {
+                        throw failed(context, start, ex);
                     }
-                    ps.executeUpdate();
+                    executed(context, sql, start);
+                    written(tableName);
 
                     try (ResultSet gkeys = ps.getGeneratedKeys()) {
                         if (gkeys.next()) {
                             key.key = gkeys.getObject(1);
                         }
                     }
+                } finally {
+                    release(cached);
                 }
             }
         });
@@ -346,91 +833,396 @@ public class JDBCDBConnection implements DBConnection {
     }
 
     @Override
-    public int delete(String tableName, DBRow row) throws SQLException {
-        final List<Object> parameters = new ArrayList<>();
-        final StringBuilder sql = new StringBuilder("DELETE FROM ");
-        sql.append(tableName);
-        sql.append(" WHERE ");
-        boolean first = true;
-        List<String> fields = new ArrayList<>(row.getMetadata().getFieldData().keySet());
-        for (String field : fields) {
-            if (first) {
-                first = false;
-            } else {
-                sql.append("AND ");
+    public List<Object> batchInsert(final String tableName, final List<Map<String, Object>> rows) throws SQLException {
+        final Object[] keys = new Object[rows.size()];
+        //rows with the same non-null fields can share a statement
+        final Map<List<String>, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            List<String> fields = new ArrayList<>();
+            for (Entry<String, Object> entry : rows.get(i).entrySet()) {
+                if (entry.getValue() != null) {
+                    fields.add(entry.getKey());
+                }
             }
-            Object obj = DataUtil.getDBObject(row.getObject(field));
-            if (obj != null) {
-                sql.append(field);
-                sql.append(" = ? ");
-                parameters.add(obj);
-            } else {
-                sql.append(field);
-                sql.append(" IS NULL ");
+            fields.sort(DMLShapes.COLUMN_ORDER);
+            groups.computeIfAbsent(fields, f -> new ArrayList<>()).add(i);
+        }
+
+        inTransaction(new WithConnectionClean() {
+            @Override
+            public void withConn(DBConnection connect) throws SQLException {
+                for (Entry<List<String>, List<Integer>> group : groups.entrySet()) {
+                    List<String> fields = group.getKey();
+                    List<Integer> indexes = group.getValue();
+                    String insertSql = DMLShapes.insert(tableName, fields);
+                    StatementContext context = intercept(StatementKind.GENERATED_KEYS, insertSql, null, indexes.size());
+                    String sql = sqlOf(context, insertSql);
+
+                    CachedStatement cached = prepare(StatementKind.GENERATED_KEYS, sql);
+                    try {
+                        PreparedStatement ps = cached.statement;
+                        for (int start = 0; start < indexes.size(); start += batchSize) {
+                            int end = Math.min(start + batchSize, indexes.size());
+                            for (int i = start; i < end; i++) {
+                                Map<String, Object> row = rows.get(indexes.get(i));
+                                for (int f = 0; f < fields.size(); f++) {
+                                    setPSObject(ps, f + 1, DataUtil.getDBObject(row.get(fields.get(f)), temporals));
+                                }
+                                ps.addBatch();
+                            }
+                            long batchStart = startTimer();
+                            int[] counts;
+                            try {
+                                counts = ps.executeBatch();
+                            } catch (SQLException ex) {
+                                throw failed(context, batchStart, ex);
+                            }
+                            batched(context, sql, batchStart, end - start);
+                            written(tableName);
+                            checkBatchCounts(counts, end - start, true);
+                            readBatchKeys(ps, indexes.subList(start, end), keys);
+                        }
+                    } finally {
+                        release(cached);
+                    }
+                }
+            }
+        });
+
+        return Arrays.asList(keys);
+    }
+
+    @Override
+    public int[] executeBatch(String sql, final List<Object[]> paramRows) throws SQLException {
+        final StatementContext context = intercept(StatementKind.UPDATE, sql, null, paramRows.size());
+        final String runSql = sqlOf(context, sql);
+
+        final int[] counts = new int[paramRows.size()];
+        return inTransaction(connect -> {
+            CachedStatement cached = prepare(StatementKind.UPDATE, runSql);
+            try {
+                PreparedStatement ps = cached.statement;
+                for (int start = 0; start < paramRows.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, paramRows.size());
+                    for (int i = start; i < end; i++) {
+                        setPSObjects(ps, paramRows.get(i));
+                        ps.addBatch();
+                    }
+                    long batchStart = startTimer();
+                    int[] chunk;
+                    try {
+                        chunk = ps.executeBatch();
+                    } catch (SQLException ex) {
+                        throw failed(context, batchStart, ex);
+                    }
+                    batched(context, runSql, batchStart, end - start);
+                    checkBatchCounts(chunk, end - start, false);
+                    System.arraycopy(chunk, 0, counts, start, chunk.length);
+                }
+                return counts;
+            } finally {
+                release(cached);
+            }
+        });
+    }
+
+    @Override
+    public <T> int insert(EntityMapping<T> mapping, T entity) throws SQLException {
+        return writeEntities(mapping, mapping.getInsertSql(), Collections.singletonList(entity), mapping::bindInsert, mapping.hasGeneratedKey())[0];
+    }
+
+    @Override
+    public <T> int update(EntityMapping<T> mapping, T entity) throws SQLException {
+        return writeEntities(mapping, mapping.getUpdateSql(), Collections.singletonList(entity), mapping::bindUpdate, false)[0];
+    }
+
+    @Override
+    public <T> int delete(EntityMapping<T> mapping, T entity) throws SQLException {
+        return writeEntities(mapping, mapping.getDeleteSql(), Collections.singletonList(entity), mapping::bindDelete, false)[0];
+    }
+
+    @Override
+    public <T> int[] batchInsert(EntityMapping<T> mapping, List<T> entities) throws SQLException {
+        return writeEntities(mapping, mapping.getInsertSql(), entities, mapping::bindInsert, mapping.hasGeneratedKey());
+    }
+
+    @Override
+    public <T> int[] batchUpdate(EntityMapping<T> mapping, List<T> entities) throws SQLException {
+        return writeEntities(mapping, mapping.getUpdateSql(), entities, mapping::bindUpdate, false);
+    }
+
+    @Override
+    public <T> int[] batchDelete(EntityMapping<T> mapping, List<T> entities) throws SQLException {
+        return writeEntities(mapping, mapping.getDeleteSql(), entities, mapping::bindDelete, false);
+    }
+
+    /**
+     * Binds an entity to a statement with its generated EntityMapping.
+     */
+    private interface EntityBinder<T> {
+        void bind(PreparedStatement ps, T entity) throws SQLException;
+    }
+
+    /**
+     * Write entities that must each affect exactly 1 row. A single entity is executed directly, more are sent in batches.
+     *
+     * @param keys if the generated keys should be set on the entities
+     */
+    private <T> int[] writeEntities(EntityMapping<T> mapping, String sql, List<T> entities, EntityBinder<T> binder, boolean keys) throws SQLException {
+        if (sql == null) {
+            throw new SQLException("Entity table " + mapping.getTableName() + " has no DBId to update or delete by");
+        }
+        final int[] counts = new int[entities.size()];
+        if (entities.isEmpty()) {
+            return counts;
+        }
+        final StatementKind kind = keys ? StatementKind.GENERATED_KEYS : StatementKind.UPDATE;
+        final StatementContext context = intercept(kind, sql, null, entities.size() == 1 ? 0 : entities.size());
+        final String runSql = sqlOf(context, sql);
+
+        return inTransaction(connect -> {
+            CachedStatement cached = prepare(kind, runSql);
+            try {
+                PreparedStatement ps = cached.statement;
+                if (entities.size() == 1) {
+                    binder.bind(ps, entities.get(0));
+                    long start = startTimer();
+                    try {
+                        counts[0] = ps.executeUpdate();
+                    } catch (SQLException ex) {
+                        throw failed(context, start, ex);
+                    }
+                    executed(context, runSql, start);
+                    written(mapping.getTableName());
+                    if (counts[0] == 0) {
+                        throw new RowsAffectedSQLException("No rows affected writing " + mapping.getTableName() + ", rolling back");
+                    } else if (counts[0] > 1) {
+                        throw new RowsAffectedSQLException("Multiple rows affected writing " + mapping.getTableName() + ", rolling back");
+                    }
+                    if (keys) {
+                        readEntityKeys(ps, mapping, entities);
+                    }
+                    return counts;
+                }
+                for (int start = 0; start < entities.size(); start += batchSize) {
+                    int end = Math.min(start + batchSize, entities.size());
+                    for (int i = start; i < end; i++) {
+                        binder.bind(ps, entities.get(i));
+                        ps.addBatch();
+                    }
+                    long batchStart = startTimer();
+                    int[] chunk;
+                    try {
+                        chunk = ps.executeBatch();
+                    } catch (SQLException ex) {
+                        throw failed(context, batchStart, ex);
+                    }
+                    batched(context, runSql, batchStart, end - start);
+                    written(mapping.getTableName());
+                    checkBatchCounts(chunk, end - start, true);
+                    System.arraycopy(chunk, 0, counts, start, chunk.length);
+                    if (keys) {
+                        readEntityKeys(ps, mapping, entities.subList(start, end));
+                    }
+                }
+                return counts;
+            } finally {
+                release(cached);
             }
+        });
+    }
+
+    /**
+     * Set the generated keys of the last execute on the entities, unless the driver returned fewer keys than entities (like readBatchKeys).
+     */
+    private static <T> void readEntityKeys(PreparedStatement ps, EntityMapping<T> mapping, List<T> entities) throws SQLException {
+        List<Object> keys = new ArrayList<>(entities.size());
+        try (ResultSet gkeys = ps.getGeneratedKeys()) {
+            while (gkeys != null && gkeys.next()) {
+                keys.add(gkeys.getObject(1));
+            }
+        } catch (SQLFeatureNotSupportedException ex) {
+            return;
         }
+        if (keys.size() == entities.size()) {
+            for (int i = 0; i < keys.size(); i++) {
+                mapping.setGeneratedKey(entities.get(i), keys.get(i));
+            }
+        }
+    }
+
+    /**
+     * Check the affected row counts from a batch, if singleRow each entry must have affected exactly 1 row.
+     */
+    private static void checkBatchCounts(int[] counts, int expected, boolean singleRow) throws SQLException {
+        if (counts.length != expected) {
+            throw new RowsAffectedSQLException("Batch returned " + counts.length + " results for " + expected + " rows, rolling back");
+        }
+        for (int n : counts) {
+            if (n == Statement.EXECUTE_FAILED) {
+                throw new RowsAffectedSQLException("Batch entry failed, rolling back");
+            } else if (!singleRow || n == Statement.SUCCESS_NO_INFO) {
+                continue;
+            }
+            if (n == 0) {
+                throw new RowsAffectedSQLException("No rows affected during batch, rolling back");
+            } else if (n > 1) {
+                throw new RowsAffectedSQLException("Multiple rows affected during batch, rolling back");
+            }
+        }
+    }
+
+    /**
+     * Copy the generated keys of the last batch into keys at the given indexes.<br>
+     * Drivers that return fewer keys than rows (Eg. only the last key) can't be matched up to rows, so those keys are left null.
+     */
+    private static void readBatchKeys(PreparedStatement ps, List<Integer> indexes, Object[] keys) throws SQLException {
+        List<Object> batchKeys = new ArrayList<>(indexes.size());
+        try (ResultSet gkeys = ps.getGeneratedKeys()) {
+            while (gkeys != null && gkeys.next()) {
+                batchKeys.add(gkeys.getObject(1));
+            }
+        } catch (SQLFeatureNotSupportedException ex) {
+            return;
+        }
+        if (batchKeys.size() == indexes.size()) {
+            for (int i = 0; i < indexes.size(); i++) {
+                keys[indexes.get(i)] = batchKeys.get(i);
+            }
+        }
+    }
 
-        logger.trace("SQL: " + sql);
-        logger.trace("Parameters: " + Arrays.toString(parameters.toArray()));
+    @Override
+    public int delete(String tableName, DBRow row) throws SQLException {
+        List<String> whereColumns = new ArrayList<>();
+        List<Object> whereValues = new ArrayList<>();
+        rowWhere(tableName, row, false, whereColumns, whereValues);
+        final List<Object> parameters = new ArrayList<>(whereValues.size());
+        addNonNull(parameters, whereValues);
+        String deleteSql = DMLShapes.delete(tableName, whereColumns, whereValues);
+        final StatementContext context = intercept(StatementKind.UPDATE, deleteSql, parameters.toArray(), 0);
+        final String sql = sqlOf(context, deleteSql);
 
         return inTransaction(connect -> {
-            try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+            CachedStatement cached = prepare(StatementKind.UPDATE, sql);
+            try {
+                PreparedStatement ps = cached.statement;
                 for (int i = 1; i <= parameters.size(); i++) {
                     setPSObject(ps, i, parameters.get(i - 1));
                 }
-                int n = ps.executeUpdate();
+                long start = startTimer();
+                int n;
+                try {
+                    n = ps.executeUpdate();
+                } catch (SQLException ex) {
+                    throw failed(context, start, ex);
+                }
+                executed(context, sql, start);
+                written(tableName);
                 if (n == 0) {
                     throw new RowsAffectedSQLException("No rows affected during delete.");
                 } else if (n > 1) {
                     throw new RowsAffectedSQLException("Multiple rows affected during delete");
                 }
                 return n;
+            } finally {
+                release(cached);
             }
         });
     }
 
     @Override
     public int directExecute(String sql, Object... params) throws SQLException {
-        logger.trace("Direct SQL: " + sql);
-        logger.trace("Parameters: " + Arrays.toString(params));
-        if (params == null || params.length == 0) {
-            try (Statement statement = connection.createStatement()) {
-                return statement.executeUpdate(sql);
+        StatementContext context = intercept(StatementKind.UPDATE, sql, params, 0);
+        sql = sqlOf(context, sql);
+        if (statementCache == null && (params == null || params.length == 0)) {
+            try (Statement statement = createStatement()) {
+                long start = startTimer();
+                int n;
+                try {
+                    n = statement.executeUpdate(sql);
+                } catch (SQLException ex) {
+                    throw failed(context, start, ex);
+                }
+                executed(context, sql, start);
+                return n;
             }
         } else {
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                for (int i = 1; i <= params.length; i++) {
-                    setPSObject(ps, i, DataUtil.getDBObject(params[i - 1]));
+            CachedStatement cached = prepare(StatementKind.UPDATE, sql);
+            try {
+                setPSObjects(cached.statement, params);
+                long start = startTimer();
+                int n;
+                try {
+                    n = cached.statement.executeUpdate();
+                } catch (SQLException ex) {
+                    throw failed(context, start, ex);
                 }
-                return ps.executeUpdate();
+                executed(context, sql, start);
+                return n;
+            } finally {
+                release(cached);
             }
         }
     }
 
     @Override
     public List<DBRow> alterExecute(String sql, Object... params) throws SQLException {
-        logger.trace("Alter SQL: " + sql);
-        logger.trace("Parameters: " + Arrays.toString(params));
-        if (params == null || params.length == 0) {
-            try (Statement statement = connection.createStatement()) {
-                statement.execute(sql);
-                final ResultSet rs = statement.getResultSet();
-                if (rs != null) {
-                    return DataUtil.getRowsFromResultSet(rs);
-                }
-                return null;
+        boolean ddl = isDDL(sql);
+        if (ddl) {
+            schemaCache.invalidateAll();
+            if (queryCache != null) {
+                queryCache.invalidateAll();
             }
-        } else {
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                for (int i = 1; i <= params.length; i++) {
-                    setPSObject(ps, i, DataUtil.getDBObject(params[i - 1]));
+        }
+        StatementContext context = intercept(StatementKind.UPDATE, sql, params, 0);
+        sql = sqlOf(context, sql);
+        try {
+            if (statementCache == null && (params == null || params.length == 0)) {
+                try (Statement statement = createStatement()) {
+                    long start = startTimer();
+                    try {
+                        statement.execute(sql);
+                    } catch (SQLException ex) {
+                        throw failed(context, start, ex);
+                    }
+                    executed(context, sql, start);
+                    final ResultSet rs = statement.getResultSet();
+                    if (rs != null) {
+                        return readRows(rs, new DBMetaData(rs.getMetaData()));
+                    }
+                    return null;
                 }
-                ps.execute();
-                final ResultSet rs = ps.getResultSet();
-                if (rs != null) {
-                    return DataUtil.getRowsFromResultSet(rs);
+            } else {
+                CachedStatement cached = prepare(StatementKind.UPDATE, sql);
+                try {
+                    PreparedStatement ps = cached.statement;
+                    setPSObjects(ps, params);
+                    long start = startTimer();
+                    try {
+                        ps.execute();
+                    } catch (SQLException ex) {
+                        throw failed(context, start, ex);
+                    }
+                    executed(context, sql, start);
+                    try (ResultSet rs = ps.getResultSet()) {
+                        if (rs != null) {
+                            return readRows(rs, cached.getMetaData(rs));
+                        }
+                        return null;
+                    }
+                } finally {
+                    if (statementCache != null) {
+                        //the statement could have changed tables that cached queries read from
+                        statementCache.clearMetaData();
+                    }
+                    release(cached);
                 }
-                return null;
+            }
+        } finally {
+            if (ddl) {
+                //again once the schema has changed, other connections could have cached it in between
+                schemaCache.invalidateAll();
             }
         }
     }
@@ -452,19 +1244,26 @@ public class JDBCDBConnection implements DBConnection {
             }
         }
         sql.append(") }");
+        StatementContext context = intercept(StatementKind.CALL, sql.toString(), params, 0);
+        String callSql = sqlOf(context, sql.toString());
 
-        logger.trace("SQL: " + sql);
-        logger.trace("Parameters: " + Arrays.toString(params));
-
-        try (CallableStatement cs = connection.prepareCall(sql.toString())) {
+        CachedStatement cached = prepare(StatementKind.CALL, callSql);
+        try {
+            CallableStatement cs = (CallableStatement) cached.statement;
             int oi = 1;
             cs.registerOutParameter(oi++, Types.INTEGER);
             if (params != null) {
                 for (Object param : params) {
-                    setPSObject(cs, oi++, DataUtil.getDBObject(param));
+                    setPSObject(cs, oi++, DataUtil.getDBObject(param, temporals));
                 }
             }
-            cs.execute();
+            long start = startTimer();
+            try {
+                cs.execute();
+            } catch (SQLException ex) {
+                throw failed(context, start, ex);
+            }
+            executed(context, callSql, start);
 
             StoredProcedureResults results = new StoredProcedureResults();
             while (cs.getMoreResults() || cs.getUpdateCount() != -1) {
@@ -473,11 +1272,156 @@ public class JDBCDBConnection implements DBConnection {
                     if (results.resultSets == null) {
                         results.resultSets = new ArrayList<>();
                     }
-                    results.resultSets.add(DataUtil.getRowsFromResultSet(rs));
+                    results.resultSets.add(readRows(rs, new DBMetaData(rs.getMetaData())));
                 }
             }
             results.returnValue = cs.getInt(1);
             return results;
+        } finally {
+            release(cached);
+        }
+    }
+
+    /**
+     * The columns and values that match the database record of a DBRow, null values are compared with IS NULL.<br>
+     * With RowMatching.PRIMARY_KEY and a table that has a primary key, only the key (and version column) is compared,
+     * otherwise every column of the row is compared in column order.
+     *
+     * @param skipClobs don't compare CLOB columns in the all column mode
+     */
+    private void rowWhere(String tableName, DBRow row, boolean skipClobs, List<String> columns, List<Object> values) throws SQLException {
+        List<String> keyColumns = rowMatching == RowMatching.PRIMARY_KEY ? getPrimaryKey(tableName) : Collections.<String>emptyList();
+        boolean useKey = !keyColumns.isEmpty();
+        for (String column : keyColumns) {
+            if (!row.getMetadata().getFieldData().containsKey(column) || row.getObject(column) == null) {
+                useKey = false; //the row doesn't have the key (Eg. queried some of the columns), compare everything
+                break;
+            }
+        }
+
+        if (useKey) {
+            for (String column : keyColumns) {
+                columns.add(column);
+                values.add(DataUtil.getDBObject(row.getObject(column), temporals));
+            }
+            if (hasVersion(row) && !keyColumns.contains(versionColumn)) {
+                columns.add(versionColumn);
+                values.add(DataUtil.getDBObject(row.getObject(versionColumn), temporals));
+            }
+            return;
+        }
+
+        DBMetaData dbm = row.getMetadata();
+        for (int c = 1; c <= dbm.getColumnCount(); c++) {
+            DBFieldData field = dbm.getField(c);
+            if (skipClobs && field.getType() == DBFieldType.CLOB) {
+                continue; //don't compare clobs...
+            }
+            columns.add(field.getName());
+            values.add(DataUtil.getDBObject(row.getObject(c), temporals));
+        }
+    }
+
+    /**
+     * Add the values that have a ? in the SQL, null WHERE values are compared with IS NULL instead.
+     */
+    private static void addNonNull(List<Object> params, List<Object> values) {
+        for (Object value : values) {
+            if (value != null) {
+                params.add(value);
+            }
+        }
+    }
+
+    private boolean hasVersion(DBRow row) {
+        return versionColumn != null && row.getMetadata().getFieldData().containsKey(versionColumn);
+    }
+
+    private static boolean containsIgnoreCase(Map<String, Object> fieldValues, String field) {
+        for (String key : fieldValues.keySet()) {
+            if (key.equalsIgnoreCase(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The value of a version column after an update, versions that haven't been set yet start at 1.
+     */
+    private static Object nextVersion(Object version) throws SQLException {
+        if (version instanceof Long) {
+            return (Long) version + 1;
+        } else if (version instanceof Integer) {
+            return (Integer) version + 1;
+        } else if (version instanceof BigDecimal) {
+            return ((BigDecimal) version).add(BigDecimal.ONE);
+        } else if (version == null) {
+            return 1;
+        }
+        throw new SQLException("Unsupported version column type: " + version.getClass().getName());
+    }
+
+    /**
+     * The lower case primary key columns of the named table (empty if it doesn't have one), loaded once from the DatabaseMetaData.
+     */
+    private List<String> getPrimaryKey(String tableName) throws SQLException {
+        List<String> columns = schemaCache.getPrimaryKey(tableName);
+        if (columns == null) {
+            columns = loadPrimaryKey(tableName);
+            schemaCache.putPrimaryKey(tableName, columns);
+        }
+        return columns;
+    }
+
+    private List<String> loadPrimaryKey(String tableName) throws SQLException {
+        String schema = null;
+        String table = tableName;
+        int dot = tableName.lastIndexOf('.');
+        if (dot >= 0) {
+            schema = tableName.substring(0, dot);
+            table = tableName.substring(dot + 1);
+        }
+        DatabaseMetaData dbmd = connection.getMetaData();
+        //databases store unquoted names in different cases, try as given, then upper, then lower case
+        for (int attempt = 0; attempt < 3; attempt++) {
+            SortedMap<Short, String> columns = new TreeMap<>();
+            try (ResultSet rs = dbmd.getPrimaryKeys(null, nameCase(schema, attempt), nameCase(table, attempt))) {
+                while (rs.next()) {
+                    columns.put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME").toLowerCase());
+                }
+            }
+            if (!columns.isEmpty()) {
+                return Collections.unmodifiableList(new ArrayList<>(columns.values()));
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static String nameCase(String name, int attempt) {
+        if (name == null || attempt == 0) {
+            return name;
+        }
+        return attempt == 1 ? name.toUpperCase() : name.toLowerCase();
+    }
+
+    boolean isInTransaction() {
+        return transactionDepth > 0;
+    }
+
+    /**
+     * Invalidate the cached queries that read from a table that was just written, and again when the transaction commits.
+     */
+    void written(String tableName) {
+        if (queryCache == null) {
+            return;
+        }
+        queryCache.invalidate(tableName);
+        if (transactionDepth > 0) {
+            if (writtenTables == null) {
+                writtenTables = new HashSet<>();
+            }
+            writtenTables.add(tableName);
         }
     }
 
@@ -495,6 +1439,16 @@ public class JDBCDBConnection implements DBConnection {
             connection.commit();
             connection.setAutoCommit(true);
             transactionDepth--;
+            if (metrics != null) {
+                metrics.transactionCommitted();
+            }
+            if (writtenTables != null && !writtenTables.isEmpty()) {
+                //queries that ran between the writes and the commit could have cached the old rows
+                for (String tableName : writtenTables) {
+                    queryCache.invalidate(tableName);
+                }
+                writtenTables.clear();
+            }
         } else if (transactionDepth == 0) {
             throw new SQLException("Transaction depth passed on commit");
         } else {
@@ -506,7 +1460,13 @@ public class JDBCDBConnection implements DBConnection {
         if (transactionDepth == 1) {
             try {
                 connection.rollback();
+                if (metrics != null) {
+                    metrics.transactionRolledBack();
+                }
             } finally {
+                if (writtenTables != null) {
+                    writtenTables.clear();
+                }
                 connection.setAutoCommit(true);
                 // if setting the autocommit fails after failing to rollback, 
                 // we really should just exit the application because it's totally screwed most likely...
@@ -533,6 +1493,24 @@ public class JDBCDBConnection implements DBConnection {
         }
     }
 
+    @Override
+    public void setQueryTimeout(int seconds) {
+        this.queryTimeout = Math.max(0, seconds);
+    }
+
+    @Override
+    public void setReadOnly(boolean readOnly) throws SQLException {
+        connection.setReadOnly(readOnly);
+    }
+
+    @Override
+    public void cancel() throws SQLException {
+        Statement statement = running;
+        if (statement != null && !statement.isClosed()) {
+            statement.cancel();
+        }
+    }
+
     @Override
     public void close() throws SQLException {
         connection.close();
@@ -540,11 +1518,17 @@ public class JDBCDBConnection implements DBConnection {
 
     @Override
     public DBMetaData getTableMetaData(String tableName) throws SQLException {
+        DBMetaData dbm = schemaCache.getMetaData(tableName);
+        if (dbm != null) {
+            return dbm;
+        }
         Statement st = null;
         try {
             st = connection.createStatement();
             ResultSet rs = st.executeQuery("SELECT * FROM " + tableName + " WHERE 1 = 2");
-            return new DBMetaData(rs.getMetaData());
+            dbm = new DBMetaData(rs.getMetaData());
+            schemaCache.putMetaData(tableName, dbm);
+            return dbm;
         } finally {
             if (st != null) {
                 st.close();
@@ -554,17 +1538,125 @@ public class JDBCDBConnection implements DBConnection {
 
     @Override
     public DBFKData getForeignKeyData(String tableName) throws SQLException {
+        DBFKData fks = schemaCache.getFKData(tableName);
+        if (fks != null) {
+            return fks;
+        }
         try (ResultSet rs = connection.getMetaData().getImportedKeys(null, null, tableName)) {
-            return new DBFKData(rs);
+            fks = new DBFKData(rs);
+            schemaCache.putFKData(tableName, fks);
+            return fks;
+        }
+    }
+
+    /**
+     * If the SQL is DDL that could change the schema of a table.
+     */
+    private static boolean isDDL(String sql) {
+        String trimmed = sql.trim();
+        for (String keyword : new String[]{"CREATE", "ALTER", "DROP", "RENAME"}) {
+            if (trimmed.regionMatches(true, 0, keyword, 0, keyword.length())) {
+                return true;
+            }
         }
+        return false;
     }
 
+    private void setPSObjects(PreparedStatement ps, Object[] params) throws SQLException {
+        if (params != null) {
+            for (int i = 1; i <= params.length; i++) {
+                setPSObject(ps, i, DataUtil.getDBObject(params[i - 1], temporals));
+            }
+        }
+    }
+
+    /**
+     * Bind a parameter, streaming DBInputStreamWrapper, Path, FileChannel and ByteBuffer parameters as binary.<br>
+     * java.time LocalDate, LocalDateTime, LocalTime and OffsetDateTime are bound with setObject (JDBC 4.2), or as java.sql types where the driver
+     * doesn't support them.<br>
+     * A Path is opened here and closed when the statement is released. A FileChannel is read from its position to its end, and a ByteBuffer
+     * from its position to its limit, neither are changed. Files are read through memory-mapped windows rather than copied through the heap.
+     */
     private void setPSObject(PreparedStatement ps, int i, Object object) throws SQLException {
-        if (object != null && object instanceof DBInputStreamWrapper) {
+        if (object instanceof DBInputStreamWrapper) {
             DBInputStreamWrapper wrap = (DBInputStreamWrapper) object;
-            ps.setBinaryStream(i, wrap.inputStream, wrap.length);
+            setBinaryStream(ps, i, wrap.inputStream, wrap.length);
+        } else if (object instanceof Path) {
+            Path path = (Path) object;
+            try {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                if (openedParams == null) {
+                    openedParams = new ArrayList<>();
+                }
+                openedParams.add(channel);
+                long size = channel.size();
+                setBinaryStream(ps, i, new ChannelInputStream(channel, 0, size, true), size);
+            } catch (IOException ex) {
+                throw new SQLException("Failed to open parameter " + i + ": " + path, ex);
+            }
+        } else if (object instanceof FileChannel) {
+            FileChannel channel = (FileChannel) object;
+            try {
+                long position = channel.position();
+                long size = channel.size();
+                setBinaryStream(ps, i, new ChannelInputStream(channel, position, size, false), size - position);
+            } catch (IOException ex) {
+                throw new SQLException("Failed to read parameter " + i, ex);
+            }
+        } else if (object instanceof ByteBuffer) {
+            ByteBuffer buffer = (ByteBuffer) object;
+            if (buffer.hasArray()) {
+                ps.setBinaryStream(i, new ByteArrayInputStream(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()), buffer.remaining());
+            } else {
+                ps.setBinaryStream(i, new ByteBufferInputStream(buffer), buffer.remaining());
+            }
+        } else if (object instanceof java.time.LocalDate || object instanceof java.time.LocalDateTime || object instanceof java.time.LocalTime
+                || object instanceof java.time.OffsetDateTime) {
+            setTemporal(ps, i, object);
         } else {
             ps.setObject(i, object);
         }
     }
+
+    private static void setTemporal(PreparedStatement ps, int i, Object object) throws SQLException {
+        boolean[] unsupported = NO_JAVA_TIME.get(ps.getClass());
+        if (!unsupported[0]) {
+            try {
+                ps.setObject(i, object);
+                return;
+            } catch (SQLFeatureNotSupportedException ex) {
+                unsupported[0] = true;
+            } catch (SQLDataException ex) {
+                if (!TemporalTypes.isUnsupportedConversion(ex)) {
+                    throw ex; //a bad value, binding it as java.sql types could silently change it (Eg. an offset)
+                }
+                unsupported[0] = true;
+            }
+        }
+        if (object instanceof java.time.LocalDate) {
+            ps.setDate(i, java.sql.Date.valueOf((java.time.LocalDate) object));
+        } else if (object instanceof java.time.LocalDateTime) {
+            ps.setTimestamp(i, Timestamp.valueOf((java.time.LocalDateTime) object));
+        } else if (object instanceof java.time.LocalTime) {
+            ps.setTime(i, Time.valueOf((java.time.LocalTime) object));
+        } else {
+            ps.setTimestamp(i, Timestamp.from(((java.time.OffsetDateTime) object).toInstant()));
+        }
+    }
+
+    /**
+     * Lengths that fit in an int use setBinaryStream(int, InputStream, int), which every driver supports.
+     * Longer streams need setBinaryStream(int, InputStream, long), or setBlob where a driver only supports that.
+     */
+    private static void setBinaryStream(PreparedStatement ps, int i, InputStream in, long length) throws SQLException {
+        if (length <= Integer.MAX_VALUE) {
+            ps.setBinaryStream(i, in, (int) length);
+        } else {
+            try {
+                ps.setBinaryStream(i, in, length);
+            } catch (SQLFeatureNotSupportedException ex) {
+                ps.setBlob(i, in, length);
+            }
+        }
+    }
 }
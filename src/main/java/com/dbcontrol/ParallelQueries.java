@@ -0,0 +1,194 @@
+package com.dbcontrol;
+
+import com.dbcontrol.exceptions.DBException;
+import com.dbcontrol.handlers.WithConnection;
+import com.dbcontrol.named.NamedQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builder for running independent named tasks at the same time, each with its own connection from a DBControl.<br>
+ * At most {@link #parallelism(int)} connections are used at once (the calling thread runs tasks too), so one caller can't drain the pool.<br>
+ * If a task fails, statements still running in the other tasks are canceled, tasks that haven't started are skipped,
+ * and the first failure is thrown from {@link #run()}.
+ * <pre>
+ * Map&lt;String, Object&gt; results = db.parallel()
+ *         .add("orders", connect -&gt; connect.query("SELECT * FROM orders WHERE customerId = ?", id))
+ *         .add("invoices", NamedQuery.create("SELECT * FROM invoice WHERE customerId = #id").param("id", id))
+ *         .run();
+ * </pre>
+ */
+public class ParallelQueries {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelQueries.class);
+    /**
+     * The number of connections used at once when {@link #parallelism(int)} isn't set.
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    //threads are only bounded by the parallelism of each run, idle threads are dropped after a minute
+    private static final ExecutorService workers = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "dbcontrol-parallel-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final DBControl db;
+    private final Map<String, WithConnection<?, ?>> tasks = new LinkedHashMap<>();
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    public ParallelQueries(DBControl db) {
+        this.db = db;
+    }
+
+    /**
+     * Add a task, its result is put in the map returned by {@link #run()} under the name.
+     *
+     * @throws IllegalArgumentException if there is already a task with the name
+     */
+    public ParallelQueries add(String name, WithConnection<?, ?> task) {
+        if (tasks.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate parallel task name: " + name);
+        }
+        tasks.put(name, task);
+        return this;
+    }
+
+    /**
+     * Add a query, its List&lt;DBRow&gt; results are put in the map returned by {@link #run()} under the name.
+     */
+    public ParallelQueries add(String name, NamedQuery query) {
+        return add(name, query::query);
+    }
+
+    /**
+     * The maximum number of tasks (and connections) run at the same time.
+     */
+    public ParallelQueries parallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * Run all of the tasks and wait for them to finish.
+     *
+     * @return the result of each task by name, in the order they were added
+     * @throws SQLException if a task failed with a SQLException
+     * @throws DBException  if a task failed with another checked Exception or the calling thread was interrupted
+     */
+    public Map<String, Object> run() throws SQLException, DBException {
+        List<String> names = new ArrayList<>(tasks.keySet());
+        List<WithConnection<?, ?>> work = new ArrayList<>(tasks.values());
+        Run run = new Run(names, work);
+
+        int threads = Math.min(parallelism, work.size());
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int t = 1; t < threads; t++) {
+            futures.add(workers.submit(run));
+        }
+        run.run();
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                run.fail("interrupted", ex);
+                throw new DBException("Interrupted waiting for parallel tasks", ex);
+            } catch (ExecutionException ex) {
+                run.fail("worker", ex.getCause());
+            }
+        }
+
+        if (run.failure != null) {
+            Throwable failure = run.failure;
+            if (failure instanceof SQLException) {
+                throw (SQLException) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw new DBException("Parallel task failed: " + run.failedName, (Exception) failure);
+        }
+
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            results.put(names.get(i), run.results[i]);
+        }
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * The shared state of one call to run(), each thread takes the next task that hasn't started until they are all done or one fails.
+     */
+    private final class Run implements Runnable {
+        private final List<String> names;
+        private final List<WithConnection<?, ?>> work;
+        private final Object[] results;
+        private final AtomicInteger next = new AtomicInteger();
+        private final Set<DBConnection> running = ConcurrentHashMap.newKeySet();
+        private volatile Throwable failure;
+        private volatile String failedName;
+
+        private Run(List<String> names, List<WithConnection<?, ?>> work) {
+            this.names = names;
+            this.work = work;
+            this.results = new Object[work.size()];
+        }
+
+        @Override
+        public void run() {
+            int i;
+            while (failure == null && (i = next.getAndIncrement()) < work.size()) {
+                WithConnection<?, ?> task = work.get(i);
+                try {
+                    results[i] = db.withConnection(connect -> {
+                        running.add(connect);
+                        try {
+                            return failure == null ? task.with(connect) : null;
+                        } finally {
+                            running.remove(connect);
+                        }
+                    });
+                } catch (Throwable ex) {
+                    fail(names.get(i), ex);
+                }
+            }
+        }
+
+        /**
+         * Record the first failure and cancel the statements running in the other tasks.
+         */
+        private synchronized void fail(String name, Throwable ex) {
+            if (failure != null) {
+                logger.debug("Parallel task {} failed after {}", name, failedName, ex);
+                return;
+            }
+            failedName = name;
+            failure = ex;
+            for (DBConnection connect : running) {
+                try {
+                    connect.cancel();
+                } catch (SQLException cancelEx) {
+                    logger.debug("Failed to cancel parallel task", cancelEx);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.dbcontrol;
+
+import com.dbcontrol.config.DBControlConfig;
+import com.dbcontrol.exceptions.DBException;
+import com.dbcontrol.handlers.WithConnection;
+import com.dbcontrol.metrics.DBMetricsListener;
+
+import java.sql.SQLException;
+
+/**
+ * DBControl implementation with its own low overhead connection pool, a drop in replacement for C3P0DBControl.<br>
+ * Pool sizing, connection timeout, validation after idle time, maximum connection lifetime and leak detection are set on the DBControlConfig.
+ */
+public class PooledDBControl implements DBControl {
+    private ConnectionPool pool = null;
+    private DBControlConfig config;
+    private final StatementCacheStats statementCacheStats = new StatementCacheStats();
+    private final SchemaCache schemaCache = new SchemaCache();
+
+    private DBConnection createDBConnection() throws SQLException {
+        DBMetricsListener metrics = config.getMetricsListener();
+        long start = metrics == null ? 0 : System.nanoTime();
+        ConnectionPool.Entry entry = pool.borrow();
+        if (metrics != null) {
+            metrics.connectionAcquired(System.nanoTime() - start, pool.getActiveConnections(), pool.getTotalConnections());
+        }
+        try {
+            return new PooledDBConnection(pool, entry, config, schemaCache);
+        } catch (RuntimeException ex) {
+            pool.release(entry);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void init(DBControlConfig config) throws SQLException, DBException {
+        if (pool != null) {
+            throw new DBException("Connection already initialized");
+        }
+        if (config.getDriverClass() != null) {
+            try {
+                Class.forName(config.getDriverClass());
+            } catch (ClassNotFoundException ex) {
+                throw new DBException("driver not found", ex);
+            }
+        }
+        this.config = config;
+        schemaCache.setEnabled(config.getSchemaCacheSeconds() >= 0);
+        schemaCache.setTimeToLiveMillis(config.getSchemaCacheSeconds() * 1000L);
+
+        ConnectionPool pool = new ConnectionPool(config, statementCacheStats);
+        try {
+            pool.start();
+        } catch (SQLException | RuntimeException ex) {
+            pool.close();
+            throw ex;
+        }
+        this.pool = pool;
+    }
+
+    @Override
+    public <T, E extends Exception> T inTransaction(WithConnection<T, E> trans) throws SQLException, E {
+        try (DBConnection connect = createDBConnection()) {
+            return connect.inTransaction(trans);
+        }
+    }
+
+    @Override
+    public <T, E extends Exception> T withConnection(WithConnection<T, E> with) throws SQLException, E {
+        try (DBConnection connect = createDBConnection()) {
+            return with.with(connect);
+        }
+    }
+
+    /**
+     * Hit/miss/eviction counters for the statement caches of all pooled connections.
+     */
+    public StatementCacheStats getStatementCacheStats() {
+        return statementCacheStats;
+    }
+
+    /**
+     * The cache of table metadata, foreign keys and primary keys shared by all connections.
+     */
+    public SchemaCache getSchemaCache() {
+        return schemaCache;
+    }
+
+    /**
+     * Load the metadata of every table in a schema into the SchemaCache in one pass.
+     *
+     * @param schemaPattern the schema to load, or null for all schemas
+     * @return the number of tables loaded
+     */
+    public int prefetchSchema(String schemaPattern) throws SQLException {
+        ConnectionPool.Entry entry = pool.borrow();
+        try {
+            return schemaCache.prefetch(entry.connection, schemaPattern);
+        } finally {
+            pool.release(entry);
+        }
+    }
+
+    /**
+     * The number of open connections in the pool.
+     */
+    public int getTotalConnections() {
+        return pool.getTotalConnections();
+    }
+
+    /**
+     * The number of open connections that aren't checked out.
+     */
+    public int getIdleConnections() {
+        return pool.getIdleConnections();
+    }
+
+    /**
+     * The number of connections that are checked out.
+     */
+    public int getActiveConnections() {
+        return pool.getActiveConnections();
+    }
+
+    /**
+     * The number of threads waiting for a connection.
+     */
+    public int getWaitingThreads() {
+        return pool.getWaitingThreads();
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+        pool = null;
+    }
+
+    /**
+     * JDBCDBConnection that returns its connection to the pool when closed.
+     */
+    private static final class PooledDBConnection extends JDBCDBConnection {
+        private final ConnectionPool pool;
+        private final ConnectionPool.Entry entry;
+        private boolean released = false;
+
+        private PooledDBConnection(ConnectionPool pool, ConnectionPool.Entry entry, DBControlConfig config, SchemaCache schemaCache) {
+            super(entry.connection, config, entry.statementCache, schemaCache);
+            this.pool = pool;
+            this.entry = entry;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                pool.release(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.dbcontrol;
+
+import com.dbcontrol.results.DBRow;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in cache of query results, shared by the connections of every DBControl whose DBControlConfig has it set.<br>
+ * Only queries run with DBConnection.queryCached (or NamedQuery.cache) are cached, keyed by their SQL and parameters, each with its own time to live.
+ * Cached rows are read-only and the same List is returned to every caller.<br>
+ * The cache is bounded by a number of entries and an estimate of their memory, the least recently used entries are evicted first.
+ * Entries are invalidated by the tables in their FROM and JOIN clauses when update, insert, directInsert, batchInsert or delete write to one of those
+ * tables (after the transaction commits), and can be invalidated manually with {@link #invalidate(String)} for other writes
+ * (Eg. directExecute or other applications).
+ */
+public class QueryCache {
+    private static final Set<String> END_OF_TABLES = new HashSet<>(Arrays.asList("where", "join", "inner", "left", "right", "full", "outer",
+            "cross", "natural", "on", "using", "group", "order", "having", "union", "except", "intersect", "limit", "offset", "fetch", "for",
+            "window", "with", "start", "connect"));
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final QueryCacheStats stats = new QueryCacheStats();
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<String, Set<Key>> keysByTable = new HashMap<>();
+    //when each table was last invalidated, so results read before an invalidation aren't put in the cache after it
+    private final Map<String, Long> invalidatedAt = new HashMap<>();
+    private long clock = 0;
+    private long allInvalidatedAt = 0;
+    private long bytes = 0;
+
+    /**
+     * @param maxEntries the maximum number of cached queries
+     * @param maxBytes   the maximum estimated memory of the cached rows
+     */
+    public QueryCache(int maxEntries, long maxBytes) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(1, maxBytes);
+    }
+
+    /**
+     * The key for a query, or null if a parameter can't be compared by value (Eg. a stream) so the query can't be cached.
+     */
+    static Key key(String sql, Object[] params) {
+        Object[] normalized = params == null ? new Object[0] : new Object[params.length];
+        for (int i = 0; i < normalized.length; i++) {
+            Object param = DataUtil.getDBObject(params[i]);
+            if (param != null && !(param instanceof String || param instanceof Number || param instanceof Boolean || param instanceof Character
+                    || param instanceof java.util.Date || param instanceof byte[] || param instanceof UUID)) {
+                return null;
+            }
+            normalized[i] = param;
+        }
+        return new Key(sql, normalized);
+    }
+
+    /**
+     * The cached rows for a query, or null if they aren't cached or have expired.
+     */
+    synchronized List<DBRow> get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.nanoTime() - entry.expiresAt >= 0) {
+            remove(key, entry);
+            stats.expiration();
+            entry = null;
+        }
+        if (entry == null) {
+            stats.miss();
+            return null;
+        }
+        stats.hit();
+        return entry.rows;
+    }
+
+    /**
+     * The time to pass to {@link #put(Key, List, long, long)} for results that are read after this call.
+     */
+    synchronized long stamp() {
+        return clock;
+    }
+
+    /**
+     * Cache the results of a query, unless one of the tables it read from was invalidated after the stamp.
+     *
+     * @return the read-only rows to return to the caller
+     */
+    List<DBRow> put(Key key, List<DBRow> rows, long ttlMillis, long stamp) {
+        List<DBRow> shared = new ArrayList<>(rows.size());
+        long size = key.bytes + 64;
+        for (DBRow row : rows) {
+            shared.add(row.toReadOnly());
+            size += row.estimateBytes();
+        }
+        shared = Collections.unmodifiableList(shared);
+        Set<String> tables = tables(key.sql);
+
+        synchronized (this) {
+            if (allInvalidatedAt > stamp) {
+                return shared;
+            }
+            for (String table : tables) {
+                Long at = invalidatedAt.get(table);
+                if (at != null && at > stamp) {
+                    return shared;
+                }
+            }
+            if (size > maxBytes) {
+                return shared;
+            }
+            Entry old = entries.get(key);
+            if (old != null) {
+                remove(key, old);
+            }
+            Entry entry = new Entry(shared, tables, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis), size);
+            entries.put(key, entry);
+            for (String table : tables) {
+                keysByTable.computeIfAbsent(table, t -> new HashSet<>()).add(key);
+            }
+            bytes += size;
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+                Map.Entry<Key, Entry> evicted = eldest.next();
+                eldest.remove();
+                unindex(evicted.getKey(), evicted.getValue());
+                bytes -= evicted.getValue().bytes;
+                stats.eviction();
+            }
+            stats.size(entries.size(), bytes);
+        }
+        return shared;
+    }
+
+    /**
+     * Remove the cached results of every query that reads from a table.
+     *
+     * @param tableName the table name, optionally schema qualified or quoted (only the unquoted name is compared, case insensitively)
+     */
+    public synchronized void invalidate(String tableName) {
+        String table = tableName(tableName);
+        invalidatedAt.put(table, ++clock);
+        Set<Key> keys = keysByTable.remove(table);
+        if (keys != null) {
+            for (Key key : keys) {
+                Entry entry = entries.remove(key);
+                if (entry != null) {
+                    unindex(key, entry);
+                    bytes -= entry.bytes;
+                    stats.invalidation(1);
+                }
+            }
+            stats.size(entries.size(), bytes);
+        }
+    }
+
+    /**
+     * Remove all cached results.
+     */
+    public synchronized void invalidateAll() {
+        allInvalidatedAt = ++clock;
+        stats.invalidation(entries.size());
+        entries.clear();
+        keysByTable.clear();
+        bytes = 0;
+        stats.size(0, 0);
+    }
+
+    public QueryCacheStats getStats() {
+        return stats;
+    }
+
+    private void remove(Key key, Entry entry) {
+        entries.remove(key);
+        unindex(key, entry);
+        bytes -= entry.bytes;
+        stats.size(entries.size(), bytes);
+    }
+
+    private void unindex(Key key, Entry entry) {
+        for (String table : entry.tables) {
+            Set<Key> keys = keysByTable.get(table);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    keysByTable.remove(table);
+                }
+            }
+        }
+    }
+
+    /**
+     * The tables named in the FROM and JOIN clauses of a query (including subqueries), by {@link #tableName(String)}.
+     */
+    static Set<String> tables(String sql) {
+        List<String> tokens = tokenize(sql);
+        Set<String> tables = new HashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token.equalsIgnoreCase("join")) {
+                if (i + 1 < tokens.size() && isName(tokens.get(i + 1))) {
+                    tables.add(tableName(tokens.get(i + 1)));
+                }
+            } else if (token.equalsIgnoreCase("from")) {
+                //FROM a, b x, c AS y
+                int t = i + 1;
+                while (t < tokens.size() && isName(tokens.get(t))) {
+                    tables.add(tableName(tokens.get(t++)));
+                    if (t < tokens.size() && tokens.get(t).equalsIgnoreCase("as")) {
+                        t++;
+                    }
+                    if (t < tokens.size() && isName(tokens.get(t))) {
+                        t++; //alias
+                    }
+                    if (t < tokens.size() && tokens.get(t).equals(",")) {
+                        t++;
+                    } else {
+                        break;
+                    }
+                }
+            }
+        }
+        return tables;
+    }
+
+    private static boolean isName(String token) {
+        char first = token.charAt(0);
+        return (Character.isLetter(first) || first == '_' || first == '"' || first == '`' || first == '[')
+                && !END_OF_TABLES.contains(token.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Split SQL into names (including quoted and qualified names) and single character symbols, skipping string literals and comments.
+     */
+    private static List<String> tokenize(String sql) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '\'') {
+                i = sql.indexOf('\'', i + 1);
+                i = i < 0 ? sql.length() : i + 1;
+            } else if (c == '-' && sql.startsWith("--", i)) {
+                i = sql.indexOf('\n', i);
+                i = i < 0 ? sql.length() : i + 1;
+            } else if (c == '/' && sql.startsWith("/*", i)) {
+                i = sql.indexOf("*/", i + 2);
+                i = i < 0 ? sql.length() : i + 2;
+            } else if (Character.isLetterOrDigit(c) || c == '_' || c == '"' || c == '`' || c == '[') {
+                int start = i;
+                while (i < sql.length()) {
+                    char n = sql.charAt(i);
+                    if (n == '"' || n == '`' || n == '[') {
+                        char close = n == '[' ? ']' : n;
+                        int end = sql.indexOf(close, i + 1);
+                        i = end < 0 ? sql.length() : end + 1;
+                    } else if (Character.isLetterOrDigit(n) || n == '_' || n == '$' || n == '.') {
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                tokens.add(sql.substring(start, i));
+            } else {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * The name a table is indexed by: the last part of a qualified name, without quotes, in lower case.
+     */
+    static String tableName(String name) {
+        int dot = name.lastIndexOf('.');
+        String table = dot < 0 ? name : name.substring(dot + 1);
+        StringBuilder sb = new StringBuilder(table.length());
+        for (int i = 0; i < table.length(); i++) {
+            char c = table.charAt(i);
+            if (c != '"' && c != '`' && c != '[' && c != ']') {
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    private static long valueBytes(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        } else if (value instanceof BigDecimal) {
+            return 64;
+        }
+        return 24;
+    }
+
+    static final class Key {
+        private final String sql;
+        private final Object[] params;
+        private final int hash;
+        private final long bytes;
+
+        private Key(String sql, Object[] params) {
+            this.sql = sql;
+            this.params = params;
+            this.hash = 31 * sql.hashCode() + Arrays.deepHashCode(params);
+            long bytes = 40 + 2L * sql.length() + 16 + 8L * params.length;
+            for (Object param : params) {
+                bytes += valueBytes(param);
+            }
+            this.bytes = bytes;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && sql.equals(other.sql) && Arrays.deepEquals(params, other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final List<DBRow> rows;
+        private final Set<String> tables;
+        private final long expiresAt;
+        private final long bytes;
+
+        private Entry(List<DBRow> rows, Set<String> tables, long expiresAt, long bytes) {
+            this.rows = rows;
+            this.tables = tables;
+            this.expiresAt = expiresAt;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.dbcontrol;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit/miss/eviction counters and memory use of a QueryCache.
+ */
+public class QueryCacheStats {
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private volatile int entries;
+    private volatile long bytes;
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    void eviction() {
+        evictions.incrementAndGet();
+    }
+
+    void expiration() {
+        expirations.incrementAndGet();
+    }
+
+    void invalidation(int entries) {
+        invalidations.addAndGet(entries);
+    }
+
+    void size(int entries, long bytes) {
+        this.entries = entries;
+        this.bytes = bytes;
+    }
+
+    /**
+     * The number of queries answered from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * The number of cacheable queries that had to be run.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Hits / (hits + misses), 0 before any cacheable query.
+     */
+    public double getHitRatio() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * The number of entries removed to keep the cache under its maximum entries or bytes.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * The number of entries removed because their time to live passed.
+     */
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * The number of entries removed because a table they read from was written.
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * The number of cached queries.
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * The estimated memory used by the cached rows and keys.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + ", expirations=" + getExpirations()
+                + ", invalidations=" + getInvalidations() + ", entries=" + getEntries() + ", bytes=" + getBytes();
+    }
+}
@@ -0,0 +1,306 @@
+package com.dbcontrol;
+
+import com.dbcontrol.StatementCache.StatementKind;
+import com.dbcontrol.config.DBControlConfig;
+import com.dbcontrol.exceptions.DBException;
+import com.dbcontrol.handlers.WithConnection;
+import com.dbcontrol.intercept.StatementContext;
+import com.dbcontrol.intercept.StatementInterceptor;
+import com.dbcontrol.results.DBRow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * DBControl that sends writes to a primary database and reads to read replicas.<br>
+ * The DBControlConfig passed to {@link #init(DBControlConfig)} is the primary, replicas are added to it with DBControlConfig.addReplica.
+ * withConnection and inTransaction always use the primary. {@link #withReadOnlyConnection(WithConnection)} uses the available replica with the fewest
+ * reads in progress, on a connection marked read-only, or the primary if no replica is available.<br>
+ * With a replica lag query (the postgres defaults have one), replicas further behind than DBControlConfig.getMaxReplicaLagMillis are skipped
+ * until they catch up. With DBControlConfig.setReadYourWritesMillis, reads from a thread that just wrote to the primary stay on the primary for that long.
+ */
+public class RoutingDBControl implements DBControl {
+    private static final Logger logger = LoggerFactory.getLogger(RoutingDBControl.class);
+
+    private final Supplier<DBControl> factory;
+    private DBControl primary = null;
+    private List<Replica> replicas = Collections.emptyList();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private ScheduledExecutorService lagChecker;
+    private long readYourWritesNanos;
+    //System.nanoTime of the last write to the primary from each thread, 0 if it hasn't written
+    private final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Create a RoutingDBControl that uses PooledDBControls for the primary and each replica.
+     */
+    public RoutingDBControl() {
+        this(PooledDBControl::new);
+    }
+
+    /**
+     * @param factory creates the uninitialized DBControls for the primary and each replica (Eg. C3P0DBControl::new)
+     */
+    public RoutingDBControl(Supplier<DBControl> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public void init(DBControlConfig config) throws SQLException, DBException {
+        if (primary != null) {
+            throw new DBException("Connection already initialized");
+        }
+        readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(config.getReadYourWritesMillis());
+        DBControlConfig primaryConfig = config;
+        if (readYourWritesNanos > 0) {
+            //a copy so the caller's config doesn't keep a tracker for this RoutingDBControl
+            primaryConfig = config.copy();
+            primaryConfig.addStatementInterceptor(new WriteTracker());
+        }
+
+        List<DBControl> started = new ArrayList<>();
+        List<Replica> replicas = new ArrayList<>();
+        try {
+            DBControl primary = factory.get();
+            primary.init(primaryConfig);
+            started.add(primary);
+            for (DBControlConfig replicaConfig : config.getReplicas()) {
+                DBControl replica = factory.get();
+                replica.init(replicaConfig);
+                started.add(replica);
+                replicas.add(new Replica(replica));
+            }
+            this.primary = primary;
+        } catch (SQLException | DBException | RuntimeException ex) {
+            for (DBControl db : started) {
+                closeQuietly(db);
+            }
+            throw ex;
+        }
+        this.replicas = Collections.unmodifiableList(replicas);
+
+        if (config.getReplicaLagQuery() != null && !replicas.isEmpty()) {
+            ScheduledThreadPoolExecutor lagChecker = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "dbcontrol-replica-lag");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.max(1, config.getReplicaLagCheckMillis());
+            String lagQuery = config.getReplicaLagQuery();
+            long maxLagMillis = config.getMaxReplicaLagMillis();
+            lagChecker.scheduleWithFixedDelay(() -> checkLag(lagQuery, maxLagMillis), 0, interval, TimeUnit.MILLISECONDS);
+            this.lagChecker = lagChecker;
+        }
+    }
+
+    @Override
+    public <T, E extends Exception> T inTransaction(WithConnection<T, E> trans) throws SQLException, E {
+        long[] written = lastWrite.get();
+        long before = written[0];
+        try {
+            return primary.inTransaction(trans);
+        } finally {
+            if (written[0] != before) {
+                //pin from when the writes were committed, not when they were executed
+                written[0] = System.nanoTime();
+            }
+        }
+    }
+
+    @Override
+    public <T, E extends Exception> T withConnection(WithConnection<T, E> with) throws SQLException, E {
+        long[] written = lastWrite.get();
+        long before = written[0];
+        try {
+            return primary.withConnection(with);
+        } finally {
+            if (written[0] != before) {
+                written[0] = System.nanoTime();
+            }
+        }
+    }
+
+    @Override
+    public <T, E extends Exception> T withReadOnlyConnection(WithConnection<T, E> with) throws SQLException, E {
+        Replica replica = isPinned() ? null : chooseReplica();
+        if (replica == null) {
+            return primary.withReadOnlyConnection(with);
+        }
+        replica.outstanding.incrementAndGet();
+        try {
+            return replica.db.withReadOnlyConnection(with);
+        } finally {
+            replica.outstanding.decrementAndGet();
+        }
+    }
+
+    private boolean isPinned() {
+        if (readYourWritesNanos <= 0) {
+            return false;
+        }
+        long written = lastWrite.get()[0];
+        return written != 0 && System.nanoTime() - written < readYourWritesNanos;
+    }
+
+    /**
+     * The available replica with the fewest reads in progress, ties go to the next replica in turn. Null if no replica is available.
+     */
+    private Replica chooseReplica() {
+        int count = replicas.size();
+        if (count == 0) {
+            return null;
+        }
+        int start = Math.floorMod(nextReplica.getAndIncrement(), count);
+        Replica best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((start + i) % count);
+            if (replica.available) {
+                int outstanding = replica.outstanding.get();
+                if (outstanding < bestOutstanding) {
+                    best = replica;
+                    bestOutstanding = outstanding;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void checkLag(String lagQuery, long maxLagMillis) {
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(i);
+            boolean available;
+            try {
+                List<DBRow> rows = replica.db.withConnection(connect -> connect.query(lagQuery));
+                Object lag = rows.isEmpty() ? null : rows.get(0).getObject(1);
+                replica.lagMillis = lag instanceof Number ? ((Number) lag).longValue() : 0;
+                available = replica.lagMillis <= maxLagMillis;
+            } catch (SQLException | RuntimeException ex) {
+                logger.debug("Replica {} lag check failed", i, ex);
+                replica.lagMillis = -1;
+                available = false;
+            }
+            if (available != replica.available) {
+                if (available) {
+                    logger.info("Replica {} is available again, lag {}ms", i, replica.lagMillis);
+                } else {
+                    logger.warn("Replica {} is unavailable for reads, lag {}ms", i, replica.lagMillis);
+                }
+                replica.available = available;
+            }
+        }
+    }
+
+    /**
+     * Stop pinning this thread's reads to the primary (Eg. at the end of a request when threads are reused).
+     */
+    public void clearReadYourWrites() {
+        lastWrite.get()[0] = 0;
+    }
+
+    /**
+     * The DBControl for the primary database.
+     */
+    public DBControl getPrimary() {
+        return primary;
+    }
+
+    /**
+     * The DBControls for the replicas, in the order they were configured.
+     */
+    public List<DBControl> getReplicas() {
+        List<DBControl> dbs = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            dbs.add(replica.db);
+        }
+        return dbs;
+    }
+
+    /**
+     * Whether a replica is being sent reads, false while it is too far behind or its lag check fails.
+     */
+    public boolean isReplicaAvailable(int replica) {
+        return replicas.get(replica).available;
+    }
+
+    /**
+     * The lag of a replica from its last check, -1 if the check failed, 0 if lag isn't checked.
+     */
+    public long getReplicaLagMillis(int replica) {
+        return replicas.get(replica).lagMillis;
+    }
+
+    /**
+     * The number of reads in progress on a replica.
+     */
+    public int getOutstandingReads(int replica) {
+        return replicas.get(replica).outstanding.get();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+            lagChecker = null;
+        }
+        SQLException failure = null;
+        List<DBControl> all = getReplicas();
+        all.add(primary);
+        for (DBControl db : all) {
+            try {
+                db.close();
+            } catch (SQLException ex) {
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        primary = null;
+        replicas = Collections.emptyList();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void closeQuietly(DBControl db) {
+        try {
+            db.close();
+        } catch (SQLException | RuntimeException ex) {
+            logger.debug("Failed to close DBControl", ex);
+        }
+    }
+
+    private static final class Replica {
+        private final DBControl db;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private volatile boolean available = true;
+        private volatile long lagMillis = 0;
+
+        private Replica(DBControl db) {
+            this.db = db;
+        }
+    }
+
+    /**
+     * Records when the current thread executes a statement on the primary that isn't a query.
+     */
+    private final class WriteTracker implements StatementInterceptor {
+        @Override
+        public void afterExecute(StatementContext context, long executeNanos) {
+            if (context.getKind() != StatementKind.QUERY) {
+                lastWrite.get()[0] = System.nanoTime();
+            }
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package com.dbcontrol;
+
+import com.dbcontrol.results.DBFKData;
+import com.dbcontrol.results.DBFKData.DBFKFieldData;
+import com.dbcontrol.results.DBMetaData;
+import com.dbcontrol.results.DBMetaData.DBFieldData;
+import com.dbcontrol.results.DBMetaData.DBFieldType;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of database schema information that is shared by all the connections of a DBControl.<br>
+ * Holds the DBMetaData, DBFKData and primary key of tables. Entries expire after the time to live (if there is one)
+ * or when they are invalidated.<br>
+ * The cache can be filled for a whole schema in one pass with {@link #prefetch(Connection, String)},
+ * and written to/read from a snapshot file so a cold start doesn't need a round trip per table.<br>
+ * Table names are case insensitive.
+ */
+public class SchemaCache {
+    private static final int SNAPSHOT_MAGIC = 0x44424353; //DBCS
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final ConcurrentMap<String, Timed<List<String>>> primaryKeys = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timed<DBMetaData>> metaData = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Timed<DBFKData>> fkData = new ConcurrentHashMap<>();
+    private volatile long timeToLiveMillis = 0;
+    private volatile boolean enabled = true;
+    //changed on every invalidation, so result metadata cached by each connection's StatementCache is read again
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * How long entries are kept, 0 or less keeps them until they are invalidated.
+     */
+    public void setTimeToLiveMillis(long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    /**
+     * When disabled, table metadata and foreign keys are always read from the database. Primary keys are still cached.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * The lower case primary key column names of a table in key order, an empty list if the table doesn't have a primary key,
+     * or null if the primary key hasn't been loaded yet.
+     */
+    List<String> getPrimaryKey(String tableName) {
+        return get(primaryKeys, tableName);
+    }
+
+    void putPrimaryKey(String tableName, List<String> columns) {
+        put(primaryKeys, tableName, columns);
+    }
+
+    /**
+     * The cached DBMetaData of a table, or null if it hasn't been loaded yet.
+     */
+    DBMetaData getMetaData(String tableName) {
+        return enabled ? get(metaData, tableName) : null;
+    }
+
+    void putMetaData(String tableName, DBMetaData dbm) {
+        if (enabled) {
+            put(metaData, tableName, dbm);
+        }
+    }
+
+    /**
+     * The cached DBFKData of a table, or null if it hasn't been loaded yet.
+     */
+    DBFKData getFKData(String tableName) {
+        return enabled ? get(fkData, tableName) : null;
+    }
+
+    void putFKData(String tableName, DBFKData fks) {
+        if (enabled) {
+            put(fkData, tableName, fks);
+        }
+    }
+
+    private <T> T get(ConcurrentMap<String, Timed<T>> map, String tableName) {
+        String key = tableName.toLowerCase();
+        Timed<T> timed = map.get(key);
+        if (timed == null) {
+            return null;
+        }
+        if (timed.expires != 0 && timed.expires < System.currentTimeMillis()) {
+            map.remove(key, timed);
+            return null;
+        }
+        return timed.value;
+    }
+
+    private <T> void put(ConcurrentMap<String, Timed<T>> map, String tableName, T value) {
+        long ttl = timeToLiveMillis;
+        map.put(tableName.toLowerCase(), new Timed<>(value, ttl > 0 ? System.currentTimeMillis() + ttl : 0));
+    }
+
+    /**
+     * Forget everything cached about the named table (Eg. after it has been altered).
+     */
+    public void invalidate(String tableName) {
+        String key = tableName.toLowerCase();
+        primaryKeys.remove(key);
+        metaData.remove(key);
+        fkData.remove(key);
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Forget everything cached about all tables.
+     */
+    public void invalidateAll() {
+        primaryKeys.clear();
+        metaData.clear();
+        fkData.clear();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Changes whenever the cache is invalidated.
+     */
+    long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Load the columns, foreign keys and primary keys of every table in a schema with one DatabaseMetaData call for each.<br>
+     * Tables are cached by name and by schema qualified name. Tables with column types DBControl doesn't support are skipped.
+     * Foreign keys and primary keys are only prefetched if the driver can list them for all tables at once,
+     * otherwise they are still loaded a table at a time when first used.
+     *
+     * @param schemaPattern the schema to load, or null for all schemas
+     * @return the number of tables loaded
+     */
+    public int prefetch(Connection connection, String schemaPattern) throws SQLException {
+        DatabaseMetaData dbmd = connection.getMetaData();
+        Map<TableName, List<Object[]>> tableColumns = new LinkedHashMap<>();
+        try (ResultSet rs = dbmd.getColumns(null, schemaPattern, "%", "%")) {
+            while (rs.next()) {
+                TableName table = new TableName(rs.getString("TABLE_SCHEM"), rs.getString("TABLE_NAME"));
+                tableColumns.computeIfAbsent(table, t -> new ArrayList<>()).add(new Object[]{
+                        rs.getInt("ORDINAL_POSITION"), rs.getString("COLUMN_NAME"), rs.getInt("DATA_TYPE"), rs.getInt("COLUMN_SIZE")});
+            }
+        }
+        Set<String> ambiguous = ambiguousNames(tableColumns.keySet());
+
+        int loaded = 0;
+        for (Map.Entry<TableName, List<Object[]>> entry : tableColumns.entrySet()) {
+            List<Object[]> columns = entry.getValue();
+            columns.sort(Comparator.comparingInt(column -> (Integer) column[0]));
+            String[] names = new String[columns.size()];
+            DBFieldType[] types = new DBFieldType[columns.size()];
+            int[] precisions = new int[columns.size()];
+            try {
+                for (int i = 0; i < columns.size(); i++) {
+                    names[i] = (String) columns.get(i)[1];
+                    types[i] = DBFieldType.getTypeFromJDBCType((Integer) columns.get(i)[2]);
+                    precisions[i] = (Integer) columns.get(i)[3];
+                }
+            } catch (RuntimeException ex) {
+                continue; //unsupported column type, the table can't be read by DBControl anyway
+            }
+            DBMetaData dbm = new DBMetaData(names, types, precisions);
+            for (String name : entry.getKey().keys(ambiguous)) {
+                put(metaData, name, dbm);
+            }
+            loaded++;
+        }
+
+        Map<TableName, List<DBFKFieldData>> fks = new HashMap<>();
+        try (ResultSet rs = dbmd.getImportedKeys(null, schemaPattern, null)) {
+            while (rs.next()) {
+                TableName table = new TableName(rs.getString("FKTABLE_SCHEM"), rs.getString("FKTABLE_NAME"));
+                fks.computeIfAbsent(table, t -> new ArrayList<>()).add(new DBFKFieldData(
+                        rs.getString("PKTABLE_NAME"), rs.getString("PKCOLUMN_NAME"),
+                        rs.getString("FKTABLE_NAME"), rs.getString("FKCOLUMN_NAME")));
+            }
+        } catch (SQLException ex) {
+            fks = null; //driver needs a table name
+        }
+        if (fks != null) {
+            for (TableName table : tableColumns.keySet()) {
+                DBFKData data = new DBFKData(fks.getOrDefault(table, Collections.<DBFKFieldData>emptyList()));
+                for (String name : table.keys(ambiguous)) {
+                    put(fkData, name, data);
+                }
+            }
+        }
+
+        Map<TableName, SortedMap<Short, String>> pks = new HashMap<>();
+        try (ResultSet rs = dbmd.getPrimaryKeys(null, schemaPattern, null)) {
+            while (rs.next()) {
+                TableName table = new TableName(rs.getString("TABLE_SCHEM"), rs.getString("TABLE_NAME"));
+                pks.computeIfAbsent(table, t -> new TreeMap<>()).put(rs.getShort("KEY_SEQ"), rs.getString("COLUMN_NAME").toLowerCase());
+            }
+        } catch (SQLException ex) {
+            pks = null; //driver needs a table name
+        }
+        if (pks != null) {
+            for (TableName table : tableColumns.keySet()) {
+                SortedMap<Short, String> columns = pks.get(table);
+                List<String> key = columns == null ? Collections.<String>emptyList()
+                        : Collections.unmodifiableList(new ArrayList<>(columns.values()));
+                for (String name : table.keys(ambiguous)) {
+                    put(primaryKeys, name, key);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Table names that are in more than one schema, those can only be cached by their schema qualified name.
+     */
+    private static Set<String> ambiguousNames(Collection<TableName> tables) {
+        Set<String> seen = new HashSet<>();
+        Set<String> ambiguous = new HashSet<>();
+        for (TableName table : tables) {
+            if (!seen.add(table.table.toLowerCase())) {
+                ambiguous.add(table.table.toLowerCase());
+            }
+        }
+        return ambiguous;
+    }
+
+    /**
+     * Write everything currently cached to a file that can be read back with {@link #readSnapshot(Path)}.
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+
+            Map<String, DBMetaData> metaSnapshot = snapshot(metaData);
+            out.writeInt(metaSnapshot.size());
+            for (Map.Entry<String, DBMetaData> entry : metaSnapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                DBMetaData dbm = entry.getValue();
+                out.writeInt(dbm.getColumnCount());
+                for (int i = 1; i <= dbm.getColumnCount(); i++) {
+                    DBFieldData field = dbm.getField(i);
+                    out.writeUTF(field.getCasedName());
+                    out.writeByte(field.getType().ordinal());
+                    out.writeInt(field.getPrecision());
+                }
+            }
+
+            Map<String, DBFKData> fkSnapshot = snapshot(fkData);
+            out.writeInt(fkSnapshot.size());
+            for (Map.Entry<String, DBFKData> entry : fkSnapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                Collection<DBFKFieldData> fks = entry.getValue().getFKData().values();
+                out.writeInt(fks.size());
+                for (DBFKFieldData fk : fks) {
+                    out.writeUTF(fk.getPrimaryKeyTableName());
+                    out.writeUTF(fk.getPrimaryKeyColumnName());
+                    out.writeUTF(fk.getForeignKeyTableName());
+                    out.writeUTF(fk.getForeignKeyColumnName());
+                }
+            }
+
+            Map<String, List<String>> pkSnapshot = snapshot(primaryKeys);
+            out.writeInt(pkSnapshot.size());
+            for (Map.Entry<String, List<String>> entry : pkSnapshot.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (String column : entry.getValue()) {
+                    out.writeUTF(column);
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Add everything from a file written by {@link #writeSnapshot(Path)} to the cache.
+     *
+     * @return the number of tables read
+     * @throws IOException if the file can't be read or isn't a snapshot
+     */
+    public int readSnapshot(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a schema snapshot: " + path);
+            }
+            DBFieldType[] fieldTypes = DBFieldType.values();
+
+            int tables = in.readInt();
+            for (int t = 0; t < tables; t++) {
+                String table = in.readUTF();
+                int columns = in.readInt();
+                String[] names = new String[columns];
+                DBFieldType[] types = new DBFieldType[columns];
+                int[] precisions = new int[columns];
+                for (int i = 0; i < columns; i++) {
+                    names[i] = in.readUTF();
+                    types[i] = fieldTypes[in.readByte()];
+                    precisions[i] = in.readInt();
+                }
+                put(metaData, table, new DBMetaData(names, types, precisions));
+            }
+
+            int fkTables = in.readInt();
+            for (int t = 0; t < fkTables; t++) {
+                String table = in.readUTF();
+                int count = in.readInt();
+                List<DBFKFieldData> fks = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    fks.add(new DBFKFieldData(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF()));
+                }
+                put(fkData, table, new DBFKData(fks));
+            }
+
+            int pkTables = in.readInt();
+            for (int t = 0; t < pkTables; t++) {
+                String table = in.readUTF();
+                int count = in.readInt();
+                List<String> columns = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    columns.add(in.readUTF());
+                }
+                put(primaryKeys, table, Collections.unmodifiableList(columns));
+            }
+            return tables;
+        }
+    }
+
+    private <T> Map<String, T> snapshot(ConcurrentMap<String, Timed<T>> map) {
+        Map<String, T> snapshot = new TreeMap<>();
+        for (String key : map.keySet()) {
+            T value = get(map, key);
+            if (value != null) {
+                snapshot.put(key, value);
+            }
+        }
+        return snapshot;
+    }
+
+    private static final class Timed<T> {
+        private final T value;
+        //0 for never
+        private final long expires;
+
+        private Timed(T value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private static final class TableName {
+        private final String schema;
+        private final String table;
+
+        private TableName(String schema, String table) {
+            this.schema = schema;
+            this.table = table;
+        }
+
+        /**
+         * The names the table is cached under.
+         */
+        private List<String> keys(Set<String> ambiguous) {
+            List<String> keys = new ArrayList<>(2);
+            if (schema != null) {
+                keys.add(schema + "." + table);
+            }
+            if (!ambiguous.contains(table.toLowerCase())) {
+                keys.add(table);
+            }
+            return keys;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TableName)) {
+                return false;
+            }
+            TableName other = (TableName) obj;
+            return Objects.equals(schema, other.schema) && table.equals(other.table);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Objects.hashCode(schema) + table.hashCode();
+        }
+    }
+}
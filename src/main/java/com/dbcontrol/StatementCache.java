@@ -0,0 +1,218 @@
+package com.dbcontrol;
+
+import com.dbcontrol.results.DBMetaData;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of PreparedStatements for a single physical JDBC connection.<br>
+ * Statements are keyed by SQL text and the kind of statement prepared (query, update, generated keys, stored procedure call).<br>
+ * Each cached statement also keeps the DBMetaData of the first ResultSet it returned so every query run through it can share one instance.<br>
+ * NOTE: A StatementCache is not thread safe, it should only be used by whoever currently holds its connection.
+ */
+public class StatementCache {
+    /**
+     * The different ways a statement can be prepared, the same SQL prepared differently is cached separately.
+     */
+    public enum StatementKind {
+        QUERY,
+        UPDATE,
+        GENERATED_KEYS,
+        CALL,
+    }
+
+    private final Connection connection;
+    private final int maxSize;
+    private final StatementCacheStats stats;
+    private final Map<Key, CachedStatement> statements;
+    private long schemaGeneration;
+
+    /**
+     * @param connection the physical connection statements are prepared on
+     * @param maxSize    the maximum number of statements to keep open
+     * @param stats      the counters for hits/misses/evictions, can be shared between caches
+     */
+    public StatementCache(Connection connection, int maxSize, StatementCacheStats stats) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.stats = stats;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Get a statement for the SQL from the cache, or prepare and cache a new one.<br>
+     * The statement must be given back with {@link #release(CachedStatement)} instead of being closed.
+     *
+     * @param schemaGeneration the SchemaCache generation, when it has changed since the last checkout (Eg. DDL ran on another connection) the
+     *                         DBMetaData of all cached statements is read again
+     */
+    CachedStatement checkout(StatementKind kind, String sql, long schemaGeneration) throws SQLException {
+        if (schemaGeneration != this.schemaGeneration) {
+            this.schemaGeneration = schemaGeneration;
+            clearMetaData();
+        }
+        Key key = new Key(kind, sql);
+        CachedStatement cached = statements.get(key);
+        if (cached != null) {
+            if (cached.inUse) {
+                //the same SQL is run again while the cached statement still has an open ResultSet (Eg. from inside a QueryHandler)
+                stats.miss();
+                return CachedStatement.uncached(connection, kind, sql);
+            }
+            stats.hit();
+            cached.inUse = true;
+            return cached;
+        }
+        stats.miss();
+        cached = new CachedStatement(prepare(connection, kind, sql), true);
+        cached.inUse = true;
+        statements.put(key, cached);
+        evict();
+        return cached;
+    }
+
+    /**
+     * Give back a statement from {@link #checkout(StatementKind, String)}.
+     * Statements that aren't cached (or have been evicted while in use) are closed.
+     */
+    void release(CachedStatement cached) throws SQLException {
+        cached.inUse = false;
+        if (!cached.cached || cached.evicted) {
+            cached.statement.close();
+        } else {
+            cached.statement.clearParameters();
+            //a failed batch can leave entries behind
+            cached.statement.clearBatch();
+        }
+    }
+
+    /**
+     * Forget the DBMetaData of all cached statements, used after SQL that could have changed the database schema.
+     */
+    void clearMetaData() {
+        for (CachedStatement cached : statements.values()) {
+            cached.metaData = null;
+        }
+    }
+
+    /**
+     * The number of statements currently cached.
+     */
+    public int size() {
+        return statements.size();
+    }
+
+    /**
+     * Close all cached statements, called when the physical connection is closed/destroyed.
+     */
+    public void close() {
+        for (CachedStatement cached : statements.values()) {
+            cached.evicted = true;
+            if (!cached.inUse) {
+                closeQuietly(cached.statement);
+            }
+        }
+        statements.clear();
+    }
+
+    private void evict() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (statements.size() > maxSize && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            it.remove();
+            eldest.evicted = true;
+            stats.eviction();
+            if (!eldest.inUse) {
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            //the connection is probably already gone
+        }
+    }
+
+    static PreparedStatement prepare(Connection connection, StatementKind kind, String sql) throws SQLException {
+        switch (kind) {
+            case GENERATED_KEYS:
+                return connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            case CALL:
+                return connection.prepareCall(sql);
+            default:
+                return connection.prepareStatement(sql);
+        }
+    }
+
+    /**
+     * A PreparedStatement that may be owned by a StatementCache along with the DBMetaData for its results.
+     */
+    static final class CachedStatement {
+        final PreparedStatement statement;
+        private final boolean cached;
+        private DBMetaData metaData;
+        private boolean inUse = false;
+        private boolean evicted = false;
+
+        private CachedStatement(PreparedStatement statement, boolean cached) {
+            this.statement = statement;
+            this.cached = cached;
+        }
+
+        /**
+         * Prepare a statement that will be closed when released.
+         */
+        static CachedStatement uncached(Connection connection, StatementKind kind, String sql) throws SQLException {
+            return new CachedStatement(prepare(connection, kind, sql), false);
+        }
+
+        /**
+         * The DBMetaData for a ResultSet from this statement, only read from the ResultSet the first time.
+         */
+        DBMetaData getMetaData(ResultSet rs) throws SQLException {
+            if (metaData == null) {
+                metaData = new DBMetaData(rs.getMetaData());
+            }
+            return metaData;
+        }
+    }
+
+    private static final class Key {
+        private final StatementKind kind;
+        private final String sql;
+        private final int hash;
+
+        private Key(StatementKind kind, String sql) {
+            this.kind = kind;
+            this.sql = sql;
+            this.hash = 31 * kind.hashCode() + sql.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return kind == other.kind && sql.equals(other.sql);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.dbcontrol;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit/miss/eviction counters for StatementCaches, shared by all the connections of a DBControl.
+ */
+public class StatementCacheStats {
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    void eviction() {
+        evictions.incrementAndGet();
+    }
+
+    /**
+     * The number of times a statement was reused from a cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * The number of times a statement had to be prepared.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The number of statements closed to keep caches under their maximum size.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions();
+    }
+}
@@ -1,15 +1,26 @@
 package com.dbcontrol.config;
 
+import com.dbcontrol.QueryCache;
+import com.dbcontrol.config.cancel.DerbySQLCancellationDetector;
 import com.dbcontrol.config.cancel.MSSQLCancellationDetector;
 import com.dbcontrol.config.cancel.PostgresSQLCancellationDetector;
 import com.dbcontrol.config.cancel.SQLCancellationDetector;
+import com.dbcontrol.intercept.LoggingInterceptor;
+import com.dbcontrol.intercept.StatementInterceptor;
+import com.dbcontrol.metrics.DBMetricsListener;
+import com.dbcontrol.results.LobPolicy;
+import com.dbcontrol.results.TemporalTypes;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Configurations for initializing a DBControl.
  *
  * @author Derek Mulvihill - Aug 27, 2014
  */
-public class DBControlConfig {
+public class DBControlConfig implements Cloneable {
     private String url;
     private String username;
     private String password;
@@ -17,6 +28,39 @@ public class DBControlConfig {
     private String testQuery;
     private Integer idleConnectionTestSeconds;
     private SQLCancellationDetector sqlCancellationDetector;
+    private int statementCacheSize = 0;
+    private int batchSize = 1000;
+    private RowMatching rowMatching = RowMatching.PRIMARY_KEY;
+    private String versionColumn;
+    private int streamFetchSize = 1000;
+    private boolean streamInTransaction = false;
+    private long lobSpillBytes = 1 << 20;
+    private File lobSpillDirectory;
+    private TemporalTypes temporalTypes = TemporalTypes.JODA;
+    private int schemaCacheSeconds = 0;
+    private int asyncThreads = 4;
+    private int asyncQueueSize = 64;
+    private long asyncTimeoutMillis = 0;
+    private int minPoolSize = 5;
+    private int maxPoolSize = 20;
+    private int acquireIncrement = 5;
+    private long connectionTimeoutMillis = 30000;
+    private long validateAfterIdleMillis = 500;
+    private long idleTimeoutMillis = 600000;
+    private long maxLifetimeMillis = 1800000;
+    private long leakDetectionMillis = 0;
+    private DBMetricsListener metricsListener;
+    private List<StatementInterceptor> statementInterceptors = new ArrayList<>();
+    private List<DBControlConfig> replicas = new ArrayList<>();
+    private String replicaLagQuery;
+    private long maxReplicaLagMillis = 10000;
+    private long replicaLagCheckMillis = 5000;
+    private long readYourWritesMillis = 0;
+    private QueryCache queryCache;
+
+    public DBControlConfig() {
+        statementInterceptors.add(new LoggingInterceptor());
+    }
 
     public String getUrl() {
         return url;
@@ -75,6 +119,377 @@ public class DBControlConfig {
         this.sqlCancellationDetector = sqlCancellationDetector;
     }
 
+    /**
+     * The maximum number of PreparedStatements cached for each pooled connection. 0 or less disables statement caching.
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * The maximum number of rows sent to the database in a single JDBC batch by executeBatch/batchInsert.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * How DBConnection.update/delete find the record for a DBRow.
+     */
+    public RowMatching getRowMatching() {
+        return rowMatching;
+    }
+
+    public void setRowMatching(RowMatching rowMatching) {
+        this.rowMatching = rowMatching;
+    }
+
+    /**
+     * The name of an optional optimistic locking column.<br>
+     * When a DBRow passed to DBConnection.update/delete has this column, the record must still have the same value
+     * and updates increment it. Null disables version checking.
+     */
+    public String getVersionColumn() {
+        return versionColumn;
+    }
+
+    public void setVersionColumn(String versionColumn) {
+        this.versionColumn = versionColumn;
+    }
+
+    /**
+     * The number of rows the driver fetches at a time for DBConnection.stream.
+     */
+    public int getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    public void setStreamFetchSize(int streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    /**
+     * If DBConnection.stream should open its cursor inside a transaction.<br>
+     * Some drivers (Eg. PostgreSQL) ignore the fetch size and read every result into memory when auto-commit is on.
+     */
+    public boolean isStreamInTransaction() {
+        return streamInTransaction;
+    }
+
+    public void setStreamInTransaction(boolean streamInTransaction) {
+        this.streamInTransaction = streamInTransaction;
+    }
+
+    /**
+     * The largest CLOB or BLOB (CLOBs count 2 bytes per character) read into memory by query and the other methods that return rows after their
+     * ResultSet is closed, larger LOBs are copied to temp files and read from there when used (see DBRow.getReader and getInputStream).<br>
+     * Less than 0 reads every LOB into memory. Rows from stream and queryHandle always keep the driver's LOBs and read them when used.
+     */
+    public long getLobSpillBytes() {
+        return lobSpillBytes;
+    }
+
+    public void setLobSpillBytes(long lobSpillBytes) {
+        this.lobSpillBytes = lobSpillBytes;
+    }
+
+    /**
+     * The directory spilled LOBs are written to, null (the default) for java.io.tmpdir.
+     */
+    public File getLobSpillDirectory() {
+        return lobSpillDirectory;
+    }
+
+    public void setLobSpillDirectory(File lobSpillDirectory) {
+        this.lobSpillDirectory = lobSpillDirectory;
+    }
+
+    /**
+     * The LobPolicy for rows that are read into memory, from getLobSpillBytes and getLobSpillDirectory.
+     */
+    public LobPolicy getLobPolicy() {
+        return lobSpillBytes < 0 ? LobPolicy.eager() : LobPolicy.spillOver(lobSpillBytes, lobSpillDirectory);
+    }
+
+    /**
+     * The classes DBRows hold DATE, DATETIME and TIME values as, Joda-Time (the default) or java.time read directly with ResultSet.getObject(column, Class).<br>
+     * java.time parameters are bound directly with PreparedStatement.setObject in either mode. With JAVA_TIME, Joda parameters are converted to
+     * java.time and bound the same way, instead of through java.sql types in the default time zone.
+     */
+    public TemporalTypes getTemporalTypes() {
+        return temporalTypes;
+    }
+
+    public void setTemporalTypes(TemporalTypes temporalTypes) {
+        this.temporalTypes = temporalTypes;
+    }
+
+    /**
+     * How long table metadata and foreign keys are cached by the DBControl.<br>
+     * 0 caches them until they are invalidated (DDL run through alterExecute invalidates everything), less than 0 disables the cache.
+     */
+    public int getSchemaCacheSeconds() {
+        return schemaCacheSeconds;
+    }
+
+    public void setSchemaCacheSeconds(int schemaCacheSeconds) {
+        this.schemaCacheSeconds = schemaCacheSeconds;
+    }
+
+    /**
+     * The number of threads an AsyncDBControl created from this configuration runs tasks on, each task holds a pooled connection while it runs.
+     */
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    public void setAsyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+    }
+
+    /**
+     * The number of tasks an AsyncDBControl queues while all of its threads are busy, tasks beyond that are rejected.
+     */
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+    public void setAsyncQueueSize(int asyncQueueSize) {
+        this.asyncQueueSize = asyncQueueSize;
+    }
+
+    /**
+     * The default timeout for AsyncDBControl tasks, 0 for no timeout.
+     */
+    public long getAsyncTimeoutMillis() {
+        return asyncTimeoutMillis;
+    }
+
+    public void setAsyncTimeoutMillis(long asyncTimeoutMillis) {
+        this.asyncTimeoutMillis = asyncTimeoutMillis;
+    }
+
+    /**
+     * The number of connections the pool keeps open even when they are idle.
+     */
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    public void setMinPoolSize(int minPoolSize) {
+        this.minPoolSize = minPoolSize;
+    }
+
+    /**
+     * The maximum number of connections the pool opens, checkouts wait for a connection to be returned once this is reached.
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * The number of connections C3P0 opens at once when it runs out, PooledDBControl opens connections one at a time.
+     */
+    public int getAcquireIncrement() {
+        return acquireIncrement;
+    }
+
+    public void setAcquireIncrement(int acquireIncrement) {
+        this.acquireIncrement = acquireIncrement;
+    }
+
+    /**
+     * How long a PooledDBControl waits for a connection before failing with a SQLException.
+     */
+    public long getConnectionTimeoutMillis() {
+        return connectionTimeoutMillis;
+    }
+
+    public void setConnectionTimeoutMillis(long connectionTimeoutMillis) {
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+    }
+
+    /**
+     * How long a connection has to be idle before a PooledDBControl checks it with Connection.isValid on checkout, less than 0 never checks.
+     */
+    public long getValidateAfterIdleMillis() {
+        return validateAfterIdleMillis;
+    }
+
+    public void setValidateAfterIdleMillis(long validateAfterIdleMillis) {
+        this.validateAfterIdleMillis = validateAfterIdleMillis;
+    }
+
+    /**
+     * How long a PooledDBControl keeps idle connections above the minimum pool size, 0 keeps them.
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * How long a PooledDBControl uses a connection before replacing it with a new one (once it is returned), 0 for no limit.
+     */
+    public long getMaxLifetimeMillis() {
+        return maxLifetimeMillis;
+    }
+
+    public void setMaxLifetimeMillis(long maxLifetimeMillis) {
+        this.maxLifetimeMillis = maxLifetimeMillis;
+    }
+
+    /**
+     * How long a connection can be checked out of a PooledDBControl before a possible leak is logged along with the stack trace
+     * of where it was checked out, 0 disables leak detection.
+     */
+    public long getLeakDetectionMillis() {
+        return leakDetectionMillis;
+    }
+
+    public void setLeakDetectionMillis(long leakDetectionMillis) {
+        this.leakDetectionMillis = leakDetectionMillis;
+    }
+
+    /**
+     * The listener for connection, statement, fetch, batch and transaction metrics, null (the default) doesn't record anything.
+     */
+    public DBMetricsListener getMetricsListener() {
+        return metricsListener;
+    }
+
+    public void setMetricsListener(DBMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * The interceptors run around every statement in order, the default is a LoggingInterceptor that traces the SQL and parameters.<br>
+     * Interceptors that aren't enabled when a connection is checked out are skipped for that connection.
+     */
+    public List<StatementInterceptor> getStatementInterceptors() {
+        return statementInterceptors;
+    }
+
+    /**
+     * Replace all the interceptors, including the default LoggingInterceptor. Add a LoggingInterceptor to the list to keep tracing SQL,
+     * or use {@link #addStatementInterceptor(StatementInterceptor)} to keep the ones already configured.
+     */
+    public void setStatementInterceptors(List<StatementInterceptor> statementInterceptors) {
+        this.statementInterceptors = statementInterceptors;
+    }
+
+    /**
+     * Add an interceptor after the ones already configured.
+     */
+    public void addStatementInterceptor(StatementInterceptor interceptor) {
+        statementInterceptors.add(interceptor);
+    }
+
+    /**
+     * The configurations of the read replicas a RoutingDBControl sends withReadOnlyConnection work to, empty by default.
+     */
+    public List<DBControlConfig> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<DBControlConfig> replicas) {
+        this.replicas = replicas;
+    }
+
+    /**
+     * Add a read replica after the ones already configured.
+     */
+    public void addReplica(DBControlConfig replica) {
+        replicas.add(replica);
+    }
+
+    /**
+     * SQL run on each replica by a RoutingDBControl to check how far it is behind the primary, the first column of the first row
+     * is the lag in milliseconds. Null (the default for databases other than postgres) disables lag checks.
+     */
+    public String getReplicaLagQuery() {
+        return replicaLagQuery;
+    }
+
+    public void setReplicaLagQuery(String replicaLagQuery) {
+        this.replicaLagQuery = replicaLagQuery;
+    }
+
+    /**
+     * Replicas further behind than this (or whose lag check fails) aren't sent reads until they catch up.
+     */
+    public long getMaxReplicaLagMillis() {
+        return maxReplicaLagMillis;
+    }
+
+    public void setMaxReplicaLagMillis(long maxReplicaLagMillis) {
+        this.maxReplicaLagMillis = maxReplicaLagMillis;
+    }
+
+    /**
+     * How often replica lag is checked.
+     */
+    public long getReplicaLagCheckMillis() {
+        return replicaLagCheckMillis;
+    }
+
+    public void setReplicaLagCheckMillis(long replicaLagCheckMillis) {
+        this.replicaLagCheckMillis = replicaLagCheckMillis;
+    }
+
+    /**
+     * How long reads from a thread go to the primary after that thread writes through a RoutingDBControl, so it reads its own writes
+     * even from a lagging replica. 0 (the default) disables pinning.
+     */
+    public long getReadYourWritesMillis() {
+        return readYourWritesMillis;
+    }
+
+    public void setReadYourWritesMillis(long readYourWritesMillis) {
+        this.readYourWritesMillis = readYourWritesMillis;
+    }
+
+    /**
+     * The cache used by DBConnection.queryCached, null (the default) disables caching.
+     * The same QueryCache can be set on the configurations of several DBControls (Eg. a primary and its replicas) to share it.
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    public void setQueryCache(QueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
+
+    /**
+     * A copy of this configuration with its own interceptor and replica lists, the interceptors, replicas and other objects in it are shared.
+     */
+    public DBControlConfig copy() {
+        try {
+            DBControlConfig copy = (DBControlConfig) super.clone();
+            copy.statementInterceptors = new ArrayList<>(statementInterceptors);
+            copy.replicas = new ArrayList<>(replicas);
+            return copy;
+        } catch (CloneNotSupportedException ex) {
+            throw new AssertionError(ex);
+        }
+    }
+
     /**
      * Create a DBControl with defaults for microsoft sql server.
      */
@@ -103,6 +518,7 @@ public class DBControlConfig {
         config.setDriverClass("org.apache.derby.jdbc.EmbeddedDriver");
         config.setTestQuery("SELECT 1 FROM SYSIBM.SYSDUMMY1");
         config.setIdleConnectionTestSeconds(60);
+        config.setSQLCancellationDetector(new DerbySQLCancellationDetector());
         return config;
     }
 
@@ -111,6 +527,20 @@ public class DBControlConfig {
         config.setDriverClass("org.postgresql.Driver");
         config.setTestQuery("SELECT 1");
         config.setSQLCancellationDetector(new PostgresSQLCancellationDetector());
+        config.setStreamInTransaction(true);
+        //a replica that has replayed everything it received isn't behind, even if the last transaction was a while ago
+        config.setReplicaLagQuery("SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+                + " ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 END");
         return config;
     }
+
+    /**
+     * The ways a DBRow can be matched to the database record it came from.
+     */
+    public enum RowMatching {
+        //compare the primary key of the table, tables without a primary key fall back to ALL_COLUMNS
+        PRIMARY_KEY,
+        //compare every column of the row
+        ALL_COLUMNS,
+    }
 }
@@ -0,0 +1,13 @@
+package com.dbcontrol.config.cancel;
+
+import java.sql.SQLException;
+
+/**
+ * Detects canceled (or timed out) SQLExceptions for Apache Derby.
+ */
+public class DerbySQLCancellationDetector implements SQLCancellationDetector {
+    @Override
+    public boolean isSQLCanceled(SQLException exception) {
+        return "XCL52".equals(exception.getSQLState());
+    }
+}
@@ -0,0 +1,15 @@
+package com.dbcontrol.entity;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Names the column of a field in a DBTable entity, the field name is used for fields without it.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface DBColumn {
+    String name();
+}
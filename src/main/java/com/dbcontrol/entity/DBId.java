@@ -0,0 +1,18 @@
+package com.dbcontrol.entity;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the primary key field of a DBTable entity, which updates and deletes find the row by. An entity has at most one.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface DBId {
+    /**
+     * If the database generates the key, it is left out of inserts and set on the entity from the generated keys afterwards.
+     */
+    boolean generated() default false;
+}
@@ -0,0 +1,20 @@
+package com.dbcontrol.entity;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class as an entity stored in a table. The dbcontrol-processor annotation processor generates an EntityMapping for it at compile time,
+ * named after the class with a Mapping suffix (Eg. OrderMapping for Order).<br>
+ * Every non-static, non-transient field of the class and its superclasses is a column, in declaration order (superclass fields first).
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface DBTable {
+    /**
+     * The table name, the simple name of the class if empty.
+     */
+    String name() default "";
+}
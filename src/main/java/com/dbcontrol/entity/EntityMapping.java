@@ -0,0 +1,41 @@
+package com.dbcontrol.entity;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The SQL and PreparedStatement binding for writing an entity, generated at compile time for DBTable classes by dbcontrol-processor.<br>
+ * Used with DBConnection.insert/update/delete and their batch variants, which bind each entity with typed setters instead of building SQL
+ * and parameters from a Map.
+ */
+public interface EntityMapping<T> {
+    String getTableName();
+
+    String getInsertSql();
+
+    /**
+     * The UPDATE of every column by the DBId, null if the entity doesn't have a DBId.
+     */
+    String getUpdateSql();
+
+    /**
+     * The DELETE by the DBId, null if the entity doesn't have a DBId.
+     */
+    String getDeleteSql();
+
+    /**
+     * If the DBId is generated by the database and should be set with {@link #setGeneratedKey(Object, Object)} after inserts.
+     */
+    boolean hasGeneratedKey();
+
+    void bindInsert(PreparedStatement ps, T entity) throws SQLException;
+
+    void bindUpdate(PreparedStatement ps, T entity) throws SQLException;
+
+    void bindDelete(PreparedStatement ps, T entity) throws SQLException;
+
+    /**
+     * Set the DBId of an inserted entity from the key the driver returned.
+     */
+    void setGeneratedKey(T entity, Object key);
+}
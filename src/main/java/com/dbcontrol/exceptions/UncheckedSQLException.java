@@ -0,0 +1,17 @@
+package com.dbcontrol.exceptions;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps a SQLException where a checked exception can't be thrown (Eg. from a Stream of results).
+ */
+public class UncheckedSQLException extends RuntimeException {
+    public UncheckedSQLException(SQLException cause) {
+        super(cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
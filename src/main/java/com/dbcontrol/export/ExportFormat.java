@@ -0,0 +1,16 @@
+package com.dbcontrol.export;
+
+/**
+ * The formats a ResultSetExporter can write.
+ */
+public enum ExportFormat {
+    /**
+     * RFC 4180 CSV: a header line of field names, CRLF line endings, and fields quoted only when they need to be (CLOBs are always quoted).
+     * Nulls are empty fields.
+     */
+    CSV,
+    /**
+     * Newline-delimited JSON: one object per row keyed by field name. Numbers and booleans are JSON values, NaN and infinite doubles are null.
+     */
+    NDJSON,
+}
@@ -0,0 +1,691 @@
+package com.dbcontrol.export;
+
+import com.dbcontrol.results.DBMetaData;
+import com.dbcontrol.results.DBMetaData.DBFieldData;
+import com.dbcontrol.results.TemporalTypes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+
+/**
+ * Writes the rows of a ResultSet as CSV or newline-delimited JSON straight from the ResultSet, without a DBRow per row.<br>
+ * How each column is written is chosen once from the DBMetaData, field names are encoded once, and values are encoded as UTF-8 into a
+ * ByteBuffer that is reused for every row (and every export by the same exporter), so memory stays flat however many rows are exported.<br>
+ * Values are formatted like the objects DBRow returns: dates and times as ISO-8601 (yyyy-MM-dd'T'HH:mm:ss.SSS), DECIMALs as plain numbers
+ * and BINARY values as Base64. CLOB and BINARY values are streamed from the driver.<br>
+ * An exporter isn't thread safe, but can be reused for any number of exports.
+ */
+public class ResultSetExporter {
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final int[] POWERS_OF_TEN = {1, 10, 100, 1000};
+    //how a string is escaped while it is encoded
+    private static final int PLAIN = 0;
+    private static final int CSV_QUOTED = 1;
+    private static final int JSON = 2;
+
+    private final ExportFormat format;
+    private char delimiter = ',';
+    private boolean header = true;
+    private int bufferSize = 64 * 1024;
+
+    //the buffers are kept for the next export, heap for OutputStreams and direct for channels (which copy heap buffers into a direct buffer)
+    private ByteBuffer heapBuffer;
+    private ByteBuffer directBuffer;
+    private ByteBuffer buffer;
+    private OutputStream out;
+    private WritableByteChannel channel;
+    private final char[] chars = new char[8192];
+    private final byte[] bytes = new byte[3 * 2730];
+    private final byte[] digits = new byte[20];
+    private char highSurrogate = 0;
+
+    public ResultSetExporter(ExportFormat format) {
+        this.format = format;
+    }
+
+    public ExportFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * The CSV field delimiter, ',' by default.
+     */
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public void setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * If CSV starts with a line of field names, true by default.
+     */
+    public boolean isHeader() {
+        return header;
+    }
+
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    /**
+     * The size of the buffer values are encoded into before they are written, 64KB by default.
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize != this.bufferSize) {
+            heapBuffer = null;
+            directBuffer = null;
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Write the remaining rows of the ResultSet to an OutputStream. The OutputStream isn't flushed or closed.
+     *
+     * @return the number of rows written
+     */
+    public long export(ResultSet rs, DBMetaData dbm, OutputStream out) throws SQLException, IOException {
+        if (heapBuffer == null) {
+            heapBuffer = ByteBuffer.allocate(Math.max(64, bufferSize));
+        }
+        this.out = out;
+        try {
+            return export(rs, dbm, heapBuffer);
+        } finally {
+            this.out = null;
+        }
+    }
+
+    /**
+     * Write the remaining rows of the ResultSet to a channel (Eg. a SocketChannel or FileChannel). The channel isn't closed.
+     *
+     * @return the number of rows written
+     */
+    public long export(ResultSet rs, DBMetaData dbm, WritableByteChannel channel) throws SQLException, IOException {
+        if (directBuffer == null) {
+            directBuffer = ByteBuffer.allocateDirect(Math.max(64, bufferSize));
+        }
+        this.channel = channel;
+        try {
+            return export(rs, dbm, directBuffer);
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    private long export(ResultSet rs, DBMetaData dbm, ByteBuffer buffer) throws SQLException, IOException {
+        this.buffer = buffer;
+        buffer.clear();
+        highSurrogate = 0;
+        Column[] columns = new Column[dbm.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = column(dbm.getField(i + 1));
+        }
+        //what is written before each value and at the end of each row
+        byte[][] prefixes = new byte[columns.length][];
+        byte[] rowEnd;
+        if (format == ExportFormat.CSV) {
+            byte[] separator = encode(String.valueOf(delimiter), null, null);
+            for (int i = 0; i < columns.length; i++) {
+                prefixes[i] = i == 0 ? new byte[0] : separator;
+            }
+            rowEnd = CRLF;
+            if (header && columns.length > 0) {
+                for (int i = 0; i < columns.length; i++) {
+                    String name = dbm.getField(i + 1).getCasedName();
+                    write(prefixes[i]);
+                    write(needsQuotes(name) ? encode("\"", name, "\"") : encode(name, null, null));
+                }
+                write(rowEnd);
+            }
+        } else {
+            for (int i = 0; i < columns.length; i++) {
+                prefixes[i] = encode(i == 0 ? "{\"" : ",\"", dbm.getField(i + 1).getCasedName(), "\":");
+            }
+            rowEnd = encode(columns.length == 0 ? "{}\n" : "}\n", null, null);
+        }
+
+        long count = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columns.length; i++) {
+                write(prefixes[i]);
+                columns[i].write(rs, i + 1);
+            }
+            write(rowEnd);
+            count++;
+        }
+        flush();
+        return count;
+    }
+
+    /**
+     * Encode a short string once (Eg. a field name), with a name escaped as a CSV quoted field or JSON string between the prefix and suffix.
+     */
+    private byte[] encode(String prefix, String name, String suffix) throws IOException {
+        ByteBuffer saved = buffer;
+        ByteBuffer encoded = ByteBuffer.allocate(16 + 12 * (prefix.length() + (name == null ? 0 : name.length() + suffix.length())));
+        buffer = encoded;
+        try {
+            writeString(prefix, PLAIN);
+            if (name != null) {
+                writeString(name, format == ExportFormat.CSV ? CSV_QUOTED : JSON);
+                writeString(suffix, PLAIN);
+            }
+        } finally {
+            buffer = saved;
+        }
+        byte[] result = new byte[encoded.position()];
+        encoded.flip();
+        encoded.get(result);
+        return result;
+    }
+
+    private Column column(DBFieldData field) {
+        switch (field.getType()) {
+            case CHAR:
+            case VARCHAR:
+            case NVARCHAR:
+                return new StringColumn();
+            case CLOB:
+                return new ClobColumn();
+            case LONG:
+                return new LongColumn();
+            case INT:
+            case SHORT:
+                return new IntColumn();
+            case FLOAT:
+                return new FloatColumn();
+            case DOUBLE:
+                return new DoubleColumn();
+            case DECIMAL:
+                return new DecimalColumn();
+            case DATE:
+                return new DateColumn();
+            case DATETIME:
+                return new DateTimeColumn();
+            case TIME:
+                return new TimeColumn();
+            case DATETIME_OFFSET:
+                return new OffsetDateTimeColumn();
+            case BOOL:
+                return new BoolColumn();
+            case BINARY:
+                return new BinaryColumn();
+            default:
+                throw new IllegalArgumentException("Field [" + field.getCasedName() + "] can't be exported: " + field.getType());
+        }
+    }
+
+    /**
+     * Writes the value of one column of the current row.
+     */
+    private abstract class Column {
+        abstract void write(ResultSet rs, int column) throws SQLException, IOException;
+    }
+
+    private final class StringColumn extends Column {
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            String value = rs.getString(column);
+            if (value == null) {
+                writeNull();
+            } else if (format == ExportFormat.CSV) {
+                boolean quote = needsQuotes(value);
+                if (quote) {
+                    writeByte('"');
+                }
+                writeString(value, quote ? CSV_QUOTED : PLAIN);
+                if (quote) {
+                    writeByte('"');
+                }
+            } else {
+                writeByte('"');
+                writeString(value, JSON);
+                writeByte('"');
+            }
+        }
+    }
+
+    private final class ClobColumn extends Column {
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            try (Reader reader = rs.getCharacterStream(column)) {
+                if (reader == null) {
+                    writeNull();
+                    return;
+                }
+                writeByte('"');
+                int escape = format == ExportFormat.CSV ? CSV_QUOTED : JSON;
+                int read;
+                while ((read = reader.read(chars)) != -1) {
+                    for (int i = 0; i < read; i++) {
+                        writeChar(chars[i], escape);
+                    }
+                }
+                endString();
+                writeByte('"');
+            }
+        }
+    }
+
+    private final class LongColumn extends Column {
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            long value = rs.getLong(column);
+            if (rs.wasNull()) {
+                writeNull();
+            } else {
+                writeLong(value);
+            }
+        }
+    }
+
+    private final class IntColumn extends Column {
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            int value = rs.getInt(column);
+            if (rs.wasNull()) {
+                writeNull();
+            } else {
+                writeLong(value);
+            }
+        }
+    }
+
+    private final class FloatColumn extends Column {
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            float value = rs.getFloat(column);
+            if (rs.wasNull()) {
+                writeNull();
+            } else {
+                writeDouble(value, Float.toString(value));
+            }
+        }
+    }
+
+    private final class DoubleColumn extends Column {
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            double value = rs.getDouble(column);
+            if (rs.wasNull()) {
+                writeNull();
+            } else {
+                writeDouble(value, Double.toString(value));
+            }
+        }
+    }
+
+    private final class DecimalColumn extends Column {
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            BigDecimal value = rs.getBigDecimal(column);
+            if (value == null) {
+                writeNull();
+            } else {
+                writeString(value.toPlainString(), PLAIN);
+            }
+        }
+    }
+
+    private final class DateColumn extends Column {
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            Date value = rs.getDate(column);
+            if (value == null) {
+                writeNull();
+            } else {
+                writeQuoteForJson();
+                writeDate(value.toLocalDate());
+                writeQuoteForJson();
+            }
+        }
+    }
+
+    private final class DateTimeColumn extends Column {
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            Timestamp value = rs.getTimestamp(column);
+            if (value == null) {
+                writeNull();
+            } else {
+                LocalDateTime dateTime = value.toLocalDateTime();
+                writeQuoteForJson();
+                writeDate(dateTime.toLocalDate());
+                writeByte('T');
+                writeTime(dateTime.toLocalTime(), dateTime.getNano() / 1000000);
+                writeQuoteForJson();
+            }
+        }
+    }
+
+    private final class TimeColumn extends Column {
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            Time value = rs.getTime(column);
+            if (value == null) {
+                writeNull();
+            } else {
+                writeQuoteForJson();
+                writeTime(value.toLocalTime(), (int) Math.floorMod(value.getTime(), 1000L));
+                writeQuoteForJson();
+            }
+        }
+    }
+
+    /**
+     * Written with its offset (Eg. 2026-10-17T09:30:00+01:00), read as an OffsetDateTime where the driver supports it, otherwise from the
+     * Timestamp in the default time zone.
+     */
+    private final class OffsetDateTimeColumn extends Column {
+        private boolean unsupported;
+
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            OffsetDateTime value = null;
+            boolean fallback = unsupported;
+            if (!fallback) {
+                try {
+                    value = rs.getObject(column, OffsetDateTime.class);
+                } catch (SQLFeatureNotSupportedException ex) {
+                    unsupported = fallback = true;
+                } catch (SQLDataException ex) {
+                    unsupported = TemporalTypes.isUnsupportedConversion(ex);
+                    fallback = true;
+                }
+            }
+            if (fallback) {
+                Timestamp timestamp = rs.getTimestamp(column);
+                value = timestamp == null ? null : OffsetDateTime.ofInstant(timestamp.toInstant(), ZoneId.systemDefault());
+            }
+            if (value == null) {
+                writeNull();
+            } else {
+                writeQuoteForJson();
+                writeString(value.toString(), PLAIN);
+                writeQuoteForJson();
+            }
+        }
+    }
+
+    private final class BoolColumn extends Column {
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            boolean value = rs.getBoolean(column);
+            if (rs.wasNull()) {
+                writeNull();
+            } else {
+                ResultSetExporter.this.write(value ? TRUE : FALSE);
+            }
+        }
+    }
+
+    private final class BinaryColumn extends Column {
+        @Override
+        void write(ResultSet rs, int column) throws SQLException, IOException {
+            try (InputStream in = rs.getBinaryStream(column)) {
+                if (in == null) {
+                    writeNull();
+                    return;
+                }
+                writeQuoteForJson();
+                writeBase64(in);
+                writeQuoteForJson();
+            }
+        }
+    }
+
+    private void writeNull() throws IOException {
+        if (format == ExportFormat.NDJSON) {
+            write(NULL);
+        }
+    }
+
+    private void writeQuoteForJson() throws IOException {
+        if (format == ExportFormat.NDJSON) {
+            writeByte('"');
+        }
+    }
+
+    private boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeDouble(double value, String text) throws IOException {
+        if (format == ExportFormat.NDJSON && (Double.isNaN(value) || Double.isInfinite(value))) {
+            write(NULL);
+        } else {
+            writeString(text, PLAIN);
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeString(Long.toString(value), PLAIN);
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        buffer.put(digits, i, digits.length - i);
+    }
+
+    private void writeDigits(int value, int width) throws IOException {
+        ensure(width);
+        for (int divisor = POWERS_OF_TEN[width - 1]; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    private void writeDate(LocalDate date) throws IOException {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            writeString(Integer.toString(year), PLAIN);
+        } else {
+            writeDigits(year, 4);
+        }
+        writeByte('-');
+        writeDigits(date.getMonthValue(), 2);
+        writeByte('-');
+        writeDigits(date.getDayOfMonth(), 2);
+    }
+
+    private void writeTime(LocalTime time, int millis) throws IOException {
+        writeDigits(time.getHour(), 2);
+        writeByte(':');
+        writeDigits(time.getMinute(), 2);
+        writeByte(':');
+        writeDigits(time.getSecond(), 2);
+        writeByte('.');
+        writeDigits(millis, 3);
+    }
+
+    private void writeBase64(InputStream in) throws IOException {
+        int pending = 0;
+        int read;
+        while ((read = in.read(bytes, pending, bytes.length - pending)) != -1) {
+            pending += read;
+            int whole = pending - pending % 3;
+            for (int i = 0; i < whole; i += 3) {
+                int bits = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+                ensure(4);
+                buffer.put(BASE64[bits >>> 18]).put(BASE64[bits >>> 12 & 63]).put(BASE64[bits >>> 6 & 63]).put(BASE64[bits & 63]);
+            }
+            //keep the last 1 or 2 bytes for the next read
+            for (int i = whole; i < pending; i++) {
+                bytes[i - whole] = bytes[i];
+            }
+            pending -= whole;
+        }
+        if (pending > 0) {
+            int bits = (bytes[0] & 0xff) << 16 | (pending == 2 ? (bytes[1] & 0xff) << 8 : 0);
+            ensure(4);
+            buffer.put(BASE64[bits >>> 18]).put(BASE64[bits >>> 12 & 63]);
+            buffer.put(pending == 2 ? BASE64[bits >>> 6 & 63] : (byte) '=').put((byte) '=');
+        }
+    }
+
+    private void writeString(String value, int escape) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            writeChar(value.charAt(i), escape);
+        }
+        endString();
+    }
+
+    /**
+     * Replace a high surrogate at the end of a value that didn't have its low surrogate.
+     */
+    private void endString() throws IOException {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            writeCodePoint('?');
+        }
+    }
+
+    /**
+     * Escape and encode a char as UTF-8. Surrogate pairs are combined into one code point, even when split between reads of a CLOB.
+     */
+    private void writeChar(char c, int escape) throws IOException {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                writeCodePoint(Character.toCodePoint(high, c));
+                return;
+            }
+            writeCodePoint('?');
+        }
+        if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+            return;
+        } else if (Character.isLowSurrogate(c)) {
+            writeCodePoint('?');
+            return;
+        }
+        if (escape == CSV_QUOTED && c == '"') {
+            writeByte('"');
+        } else if (escape == JSON && (c < 0x20 || c == '"' || c == '\\')) {
+            ensure(6);
+            buffer.put((byte) '\\');
+            switch (c) {
+                case '"':
+                case '\\':
+                    buffer.put((byte) c);
+                    return;
+                case '\n':
+                    buffer.put((byte) 'n');
+                    return;
+                case '\r':
+                    buffer.put((byte) 'r');
+                    return;
+                case '\t':
+                    buffer.put((byte) 't');
+                    return;
+                case '\b':
+                    buffer.put((byte) 'b');
+                    return;
+                case '\f':
+                    buffer.put((byte) 'f');
+                    return;
+                default:
+                    buffer.put((byte) 'u').put((byte) '0').put((byte) '0').put(HEX[c >>> 4]).put(HEX[c & 15]);
+                    return;
+            }
+        }
+        writeCodePoint(c);
+    }
+
+    private void writeCodePoint(int c) throws IOException {
+        ensure(4);
+        if (c < 0x80) {
+            buffer.put((byte) c);
+        } else if (c < 0x800) {
+            buffer.put((byte) (0xc0 | c >>> 6)).put((byte) (0x80 | c & 0x3f));
+        } else if (c < 0x10000) {
+            buffer.put((byte) (0xe0 | c >>> 12)).put((byte) (0x80 | c >>> 6 & 0x3f)).put((byte) (0x80 | c & 0x3f));
+        } else {
+            buffer.put((byte) (0xf0 | c >>> 18)).put((byte) (0x80 | c >>> 12 & 0x3f)).put((byte) (0x80 | c >>> 6 & 0x3f)).put((byte) (0x80 | c & 0x3f));
+        }
+    }
+
+    private void writeByte(char c) throws IOException {
+        ensure(1);
+        buffer.put((byte) c);
+    }
+
+    private void write(byte[] encoded) throws IOException {
+        if (encoded.length > buffer.remaining()) {
+            flush();
+            if (encoded.length > buffer.remaining()) {
+                writeOut(ByteBuffer.wrap(encoded));
+                return;
+            }
+        }
+        buffer.put(encoded);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        writeOut(buffer);
+        buffer.clear();
+    }
+
+    private void writeOut(ByteBuffer bytes) throws IOException {
+        if (out != null) {
+            //only heap buffers are written to OutputStreams
+            out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+            bytes.position(bytes.limit());
+        } else if (channel != null) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.dbcontrol.intercept;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Logs SQL and parameters at trace level before statements are executed.<br>
+ * Only enabled when trace logging is on for its logger, nothing is formatted otherwise.
+ */
+public class LoggingInterceptor implements StatementInterceptor {
+    private final Logger logger;
+
+    /**
+     * Log to the com.dbcontrol.JDBCDBConnection logger (where SQL has always been logged).
+     */
+    public LoggingInterceptor() {
+        this(LoggerFactory.getLogger("com.dbcontrol.JDBCDBConnection"));
+    }
+
+    public LoggingInterceptor(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return logger.isTraceEnabled();
+    }
+
+    @Override
+    public void beforeExecute(StatementContext context) {
+        if (!logger.isTraceEnabled()) {
+            return;
+        }
+        if (context.isBatch()) {
+            logger.trace("Batch SQL: {}", context.getSql());
+            logger.trace("Batch rows: {}", context.getBatchSize());
+        } else {
+            logger.trace("{} SQL: {}", context.getKind(), context.getSql());
+            logger.trace("Parameters: {}", Arrays.toString(context.getParams()));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.dbcontrol.intercept;
+
+import com.dbcontrol.StatementCache.StatementKind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Captures statements that take longer than a threshold to execute (or to execute and read the results of, for queries), including ones
+ * that fail after running that long (Eg. canceled by the query timeout).<br>
+ * Slow statements are logged at warn level, or error level past the error threshold, and the most recent ones are kept for {@link #getSlowQueries()}.<br>
+ * Parameters are redacted by default (only their types are shown) so values like passwords don't end up in logs.
+ */
+public class SlowQueryInterceptor implements StatementInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(SlowQueryInterceptor.class);
+    private static final int DEFAULT_CAPTURED = 100;
+
+    private final long warnNanos;
+    private final long errorNanos;
+    private boolean redactParameters = true;
+    private int maxCaptured = DEFAULT_CAPTURED;
+    private final Deque<SlowQuery> captured = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger capturedCount = new AtomicInteger();
+
+    /**
+     * @param warnMillis statements slower than this are captured and logged at warn level
+     */
+    public SlowQueryInterceptor(long warnMillis) {
+        this(warnMillis, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param warnMillis  statements slower than this are captured and logged at warn level
+     * @param errorMillis statements slower than this are logged at error level
+     */
+    public SlowQueryInterceptor(long warnMillis, long errorMillis) {
+        this.warnNanos = TimeUnit.MILLISECONDS.toNanos(warnMillis);
+        this.errorNanos = errorMillis == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(errorMillis);
+    }
+
+    /**
+     * Whether parameter values are replaced by their types in logs and captured queries, true by default.
+     */
+    public SlowQueryInterceptor redactParameters(boolean redactParameters) {
+        this.redactParameters = redactParameters;
+        return this;
+    }
+
+    /**
+     * The number of recent slow queries kept, 100 by default.
+     */
+    public SlowQueryInterceptor maxCaptured(int maxCaptured) {
+        this.maxCaptured = maxCaptured;
+        return this;
+    }
+
+    @Override
+    public void afterExecute(StatementContext context, long executeNanos) {
+        if (context.getKind() != StatementKind.QUERY) {
+            check(context, executeNanos, 0, -1);
+        }
+    }
+
+    @Override
+    public void afterFetch(StatementContext context, long fetchNanos, int rows) {
+        check(context, context.getExecuteNanos(), fetchNanos, rows);
+    }
+
+    @Override
+    public void onError(StatementContext context, long nanos, SQLException ex) {
+        check(context, nanos, 0, -1, ex);
+    }
+
+    private void check(StatementContext context, long executeNanos, long fetchNanos, int rows) {
+        check(context, executeNanos, fetchNanos, rows, null);
+    }
+
+    private void check(StatementContext context, long executeNanos, long fetchNanos, int rows, SQLException error) {
+        long total = executeNanos + fetchNanos;
+        if (total < warnNanos) {
+            return;
+        }
+        SlowQuery slow = new SlowQuery(context.getSql(), formatParameters(context), executeNanos, fetchNanos, rows, error);
+        if (total >= errorNanos) {
+            logger.error("Slow SQL: {}", slow);
+        } else {
+            logger.warn("Slow SQL: {}", slow);
+        }
+        captured.addLast(slow);
+        if (capturedCount.incrementAndGet() > maxCaptured && captured.pollFirst() != null) {
+            capturedCount.decrementAndGet();
+        }
+    }
+
+    private String formatParameters(StatementContext context) {
+        Object[] params = context.getParams();
+        if (params == null) {
+            return context.isBatch() ? "batch of " + context.getBatchSize() : "[]";
+        }
+        if (!redactParameters) {
+            return Arrays.toString(params);
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(params[i] == null ? "null" : params[i].getClass().getSimpleName());
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * The most recent slow queries, oldest first.
+     */
+    public List<SlowQuery> getSlowQueries() {
+        return Collections.unmodifiableList(new ArrayList<>(captured));
+    }
+
+    /**
+     * A statement that was slower than the threshold.
+     */
+    public static class SlowQuery {
+        private final long capturedAt = System.currentTimeMillis();
+        private final String sql;
+        private final String parameters;
+        private final long executeNanos;
+        private final long fetchNanos;
+        private final int rows;
+        private final SQLException error;
+
+        private SlowQuery(String sql, String parameters, long executeNanos, long fetchNanos, int rows, SQLException error) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.executeNanos = executeNanos;
+            this.fetchNanos = fetchNanos;
+            this.rows = rows;
+            this.error = error;
+        }
+
+        public long getCapturedAt() {
+            return capturedAt;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * The parameters formatted for logging, redacted unless redaction was turned off.
+         */
+        public String getParameters() {
+            return parameters;
+        }
+
+        public long getExecuteNanos() {
+            return executeNanos;
+        }
+
+        public long getFetchNanos() {
+            return fetchNanos;
+        }
+
+        /**
+         * The number of rows read, -1 if the statement wasn't a query or failed.
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * The exception the statement failed with, null if it completed.
+         */
+        public SQLException getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return TimeUnit.NANOSECONDS.toMillis(executeNanos + fetchNanos) + "ms (execute " + TimeUnit.NANOSECONDS.toMillis(executeNanos)
+                    + "ms, fetch " + TimeUnit.NANOSECONDS.toMillis(fetchNanos) + "ms, " + rows + " rows) " + sql + " " + parameters
+                    + (error == null ? "" : " failed: " + error);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.dbcontrol.intercept;
+
+import com.dbcontrol.StatementCache.StatementKind;
+
+import java.util.function.Supplier;
+
+/**
+ * Prefixes SQL with a comment tag (Eg. the name of the service or endpoint) so it can be found in database side logs and monitoring.<br>
+ * NOTE: Each distinct tag is a distinct SQL string to the statement cache, use tags with few distinct values.
+ */
+public class SqlTagInterceptor implements StatementInterceptor {
+    private final Supplier<String> tag;
+
+    /**
+     * @param tag the tag for the current statement, null for no tag. Must not contain "*&#47;"
+     */
+    public SqlTagInterceptor(Supplier<String> tag) {
+        this.tag = tag;
+    }
+
+    @Override
+    public String prepare(StatementContext context) {
+        String value = tag.get();
+        if (value == null || context.getKind() == StatementKind.CALL) {
+            return context.getSql(); //JDBC escape syntax for calls has to come first
+        }
+        if (value.contains("*/")) {
+            throw new IllegalArgumentException("SQL tag can't contain */: " + value);
+        }
+        return "/* " + value + " */ " + context.getSql();
+    }
+}
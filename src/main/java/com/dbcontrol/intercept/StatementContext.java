@@ -0,0 +1,87 @@
+package com.dbcontrol.intercept;
+
+import com.dbcontrol.StatementCache.StatementKind;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A statement passed through the StatementInterceptors of a DBConnection.
+ */
+public class StatementContext {
+    private final StatementKind kind;
+    private final Object[] params;
+    private final int batchSize;
+    private String sql;
+    private long executeNanos;
+    private Map<String, Object> attributes;
+
+    /**
+     * @param params    the parameters, null for batches
+     * @param batchSize the number of rows in a batch, 0 if the statement isn't a batch
+     */
+    public StatementContext(StatementKind kind, String sql, Object[] params, int batchSize) {
+        this.kind = kind;
+        this.sql = sql;
+        this.params = params;
+        this.batchSize = batchSize;
+    }
+
+    public StatementKind getKind() {
+        return kind;
+    }
+
+    /**
+     * The SQL to run, including changes from interceptors that ran before.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public void setSql(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * The parameters, null for batches.
+     */
+    public Object[] getParams() {
+        return params;
+    }
+
+    /**
+     * The number of rows in a batch, 0 if the statement isn't a batch.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public boolean isBatch() {
+        return batchSize > 0;
+    }
+
+    /**
+     * How long the statement took to execute, 0 before it has executed.
+     */
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    public void setExecuteNanos(long executeNanos) {
+        this.executeNanos = executeNanos;
+    }
+
+    /**
+     * A value an interceptor stored on this statement (Eg. in beforeExecute to read in afterFetch).
+     */
+    public Object getAttribute(String name) {
+        return attributes == null ? null : attributes.get(name);
+    }
+
+    public void setAttribute(String name, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>();
+        }
+        attributes.put(name, value);
+    }
+}
@@ -0,0 +1,55 @@
+package com.dbcontrol.intercept;
+
+import java.sql.SQLException;
+
+/**
+ * Interface to implement to run code around every statement a DBConnection prepares, executes and reads results from
+ * (Eg. logging, rewriting or tagging SQL, capturing slow queries). Interceptors are registered with DBControlConfig.addStatementInterceptor
+ * and called in the order they were added.<br>
+ * Interceptors that aren't enabled when a DBConnection is created are skipped, if none are enabled no StatementContexts are created.
+ */
+public interface StatementInterceptor {
+    /**
+     * Whether the interceptor should be called for DBConnections created now (Eg. if the logger it writes to is enabled).
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called before the statement is prepared.<br>
+     * NOTE: SQL that is rewritten differently every time (Eg. with a request id) can't reuse cached statements.
+     *
+     * @return the SQL to run, {@link StatementContext#getSql()} to leave it unchanged
+     */
+    default String prepare(StatementContext context) {
+        return context.getSql();
+    }
+
+    /**
+     * Called just before the statement is executed, after any rewriting.
+     */
+    default void beforeExecute(StatementContext context) {
+    }
+
+    /**
+     * Called after the statement has executed, for queries this is before the results are read.
+     */
+    default void afterExecute(StatementContext context, long executeNanos) {
+    }
+
+    /**
+     * Called after the results of a query have been read (for streams, when the stream is closed).
+     */
+    default void afterFetch(StatementContext context, long fetchNanos, int rows) {
+    }
+
+    /**
+     * Called when the statement fails to execute or its results fail to be read (Eg. it was canceled by the query timeout). afterExecute isn't
+     * called if executing failed, afterFetch may still be called for a stream whose rows failed to be read.
+     *
+     * @param nanos the time from executing the statement until it failed
+     */
+    default void onError(StatementContext context, long nanos, SQLException ex) {
+    }
+}
@@ -0,0 +1,53 @@
+package com.dbcontrol.metrics;
+
+/**
+ * Interface to implement to receive timings and counts from a DBControl, registered with DBControlConfig.setMetricsListener.<br>
+ * Methods are called on the thread doing the work, so implementations must be thread safe and fast.<br>
+ * Times are in nanoseconds. Nothing is timed when no listener is registered.
+ */
+public interface DBMetricsListener {
+    /**
+     * A connection was checked out of the pool.
+     *
+     * @param waitNanos         how long it took to get the connection
+     * @param activeConnections the number of connections checked out (including this one)
+     * @param totalConnections  the number of connections open in the pool
+     */
+    default void connectionAcquired(long waitNanos, int activeConnections, int totalConnections) {
+    }
+
+    /**
+     * A statement was executed, for queries this doesn't include reading the results.
+     */
+    default void statementExecuted(String sql, long executeNanos) {
+    }
+
+    /**
+     * The results of a query were read.
+     *
+     * @param fetchNanos how long it took to read the results (for streams, how long the stream was open)
+     * @param rows       the number of rows read
+     */
+    default void rowsFetched(String sql, long fetchNanos, int rows) {
+    }
+
+    /**
+     * A JDBC batch was executed.
+     *
+     * @param size the number of statements in the batch
+     */
+    default void batchExecuted(String sql, long executeNanos, int size) {
+    }
+
+    /**
+     * A transaction was committed.
+     */
+    default void transactionCommitted() {
+    }
+
+    /**
+     * A transaction was rolled back.
+     */
+    default void transactionRolledBack() {
+    }
+}
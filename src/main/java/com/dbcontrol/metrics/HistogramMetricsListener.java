@@ -0,0 +1,187 @@
+package com.dbcontrol.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DBMetricsListener that records everything in LogLinearHistograms and LongAdders, so recording never locks.<br>
+ * Call {@link #snapshot()} to export the current values (Eg. on a timer to a metrics system).
+ */
+public class HistogramMetricsListener implements DBMetricsListener {
+    private final LogLinearHistogram acquireNanos = new LogLinearHistogram();
+    private final LogLinearHistogram executeNanos = new LogLinearHistogram();
+    private final LogLinearHistogram fetchNanos = new LogLinearHistogram();
+    private final LogLinearHistogram rows = new LogLinearHistogram();
+    private final LogLinearHistogram batchNanos = new LogLinearHistogram();
+    private final LogLinearHistogram batchSizes = new LogLinearHistogram();
+    private final LogLinearHistogram activeConnections = new LogLinearHistogram();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder rollbacks = new LongAdder();
+    private volatile int lastActiveConnections;
+    private volatile int lastTotalConnections;
+
+    @Override
+    public void connectionAcquired(long waitNanos, int activeConnections, int totalConnections) {
+        acquireNanos.record(waitNanos);
+        this.activeConnections.record(activeConnections);
+        lastActiveConnections = activeConnections;
+        lastTotalConnections = totalConnections;
+    }
+
+    @Override
+    public void statementExecuted(String sql, long executeNanos) {
+        this.executeNanos.record(executeNanos);
+    }
+
+    @Override
+    public void rowsFetched(String sql, long fetchNanos, int rows) {
+        this.fetchNanos.record(fetchNanos);
+        this.rows.record(rows);
+    }
+
+    @Override
+    public void batchExecuted(String sql, long executeNanos, int size) {
+        batchNanos.record(executeNanos);
+        batchSizes.record(size);
+    }
+
+    @Override
+    public void transactionCommitted() {
+        commits.increment();
+    }
+
+    @Override
+    public void transactionRolledBack() {
+        rollbacks.increment();
+    }
+
+    /**
+     * Copy the current values.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public void reset() {
+        acquireNanos.reset();
+        executeNanos.reset();
+        fetchNanos.reset();
+        rows.reset();
+        batchNanos.reset();
+        batchSizes.reset();
+        activeConnections.reset();
+        commits.reset();
+        rollbacks.reset();
+    }
+
+    /**
+     * The values of a HistogramMetricsListener at a point in time.
+     */
+    public static class Snapshot {
+        private final HistogramSnapshot acquireNanos;
+        private final HistogramSnapshot executeNanos;
+        private final HistogramSnapshot fetchNanos;
+        private final HistogramSnapshot rows;
+        private final HistogramSnapshot batchNanos;
+        private final HistogramSnapshot batchSizes;
+        private final HistogramSnapshot activeConnections;
+        private final long commits;
+        private final long rollbacks;
+        private final int lastActiveConnections;
+        private final int lastTotalConnections;
+
+        private Snapshot(HistogramMetricsListener listener) {
+            this.acquireNanos = listener.acquireNanos.snapshot();
+            this.executeNanos = listener.executeNanos.snapshot();
+            this.fetchNanos = listener.fetchNanos.snapshot();
+            this.rows = listener.rows.snapshot();
+            this.batchNanos = listener.batchNanos.snapshot();
+            this.batchSizes = listener.batchSizes.snapshot();
+            this.activeConnections = listener.activeConnections.snapshot();
+            this.commits = listener.commits.sum();
+            this.rollbacks = listener.rollbacks.sum();
+            this.lastActiveConnections = listener.lastActiveConnections;
+            this.lastTotalConnections = listener.lastTotalConnections;
+        }
+
+        /**
+         * Time waiting for pooled connections.
+         */
+        public HistogramSnapshot getAcquireNanos() {
+            return acquireNanos;
+        }
+
+        /**
+         * Time executing statements, not including reading query results.
+         */
+        public HistogramSnapshot getExecuteNanos() {
+            return executeNanos;
+        }
+
+        /**
+         * Time reading query results into DBRows (or other results).
+         */
+        public HistogramSnapshot getFetchNanos() {
+            return fetchNanos;
+        }
+
+        /**
+         * Rows read per query.
+         */
+        public HistogramSnapshot getRows() {
+            return rows;
+        }
+
+        /**
+         * Time executing JDBC batches.
+         */
+        public HistogramSnapshot getBatchNanos() {
+            return batchNanos;
+        }
+
+        /**
+         * Statements per JDBC batch.
+         */
+        public HistogramSnapshot getBatchSizes() {
+            return batchSizes;
+        }
+
+        /**
+         * Connections checked out of the pool, sampled each time one is checked out.
+         */
+        public HistogramSnapshot getActiveConnections() {
+            return activeConnections;
+        }
+
+        public long getCommits() {
+            return commits;
+        }
+
+        public long getRollbacks() {
+            return rollbacks;
+        }
+
+        /**
+         * The number of connections checked out the last time one was checked out.
+         */
+        public int getLastActiveConnections() {
+            return lastActiveConnections;
+        }
+
+        /**
+         * The number of connections open in the pool the last time one was checked out.
+         */
+        public int getLastTotalConnections() {
+            return lastTotalConnections;
+        }
+
+        @Override
+        public String toString() {
+            return "acquireNanos[" + acquireNanos + "], executeNanos[" + executeNanos + "], fetchNanos[" + fetchNanos + "], rows[" + rows
+                    + "], batchNanos[" + batchNanos + "], batchSizes[" + batchSizes + "], activeConnections[" + activeConnections
+                    + "], commits=" + commits + ", rollbacks=" + rollbacks + ", pool=" + lastActiveConnections + "/" + lastTotalConnections;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.dbcontrol.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The counts of a LogLinearHistogram at a point in time.
+ */
+public class HistogramSnapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long count, long sum, long max) {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * The value at a percentile (0-100), reported as the upper bound of the bucket it falls in (never more than the max).
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank)) {
+                long upper = i + 1 < counts.length ? LogLinearHistogram.bucketLowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upper, max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * The non-empty buckets for exporting, mapped from the smallest value counted in the bucket to the count.
+     */
+    public Map<Long, Long> getBuckets() {
+        Map<Long, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                buckets.put(LogLinearHistogram.bucketLowerBound(i), counts[i]);
+            }
+        }
+        return buckets;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", mean=" + Math.round(getMean()) + ", p50=" + getPercentile(50) + ", p99=" + getPercentile(99) + ", max=" + max;
+    }
+}
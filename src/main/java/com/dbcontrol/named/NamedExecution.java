@@ -0,0 +1,130 @@
+package com.dbcontrol.named;
+
+import com.dbcontrol.DBConnection;
+import com.dbcontrol.QueryBuilder;
+import com.dbcontrol.exceptions.UncheckedSQLException;
+import com.dbcontrol.export.ResultSetExporter;
+import com.dbcontrol.handlers.QueryHandler;
+import com.dbcontrol.results.DBResultTable;
+import com.dbcontrol.results.DBRow;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Runs the executions of a named query (more than one when a collection parameter is split) and merges the results.
+ */
+final class NamedExecution {
+    private NamedExecution() {
+    }
+
+    static QueryBuilder single(List<QueryBuilder> executions) {
+        if (executions.size() > 1) {
+            throw new IllegalArgumentException("Collection parameter needs " + executions.size() + " executions");
+        }
+        return executions.get(0);
+    }
+
+    static List<DBRow> query(DBConnection connect, List<QueryBuilder> executions) throws SQLException {
+        if (executions.size() == 1) {
+            return connect.query(executions.get(0).getSql(), executions.get(0).getParams());
+        }
+        List<DBRow> rows = new ArrayList<>();
+        for (QueryBuilder qb : executions) {
+            rows.addAll(connect.query(qb.getSql(), qb.getParams()));
+        }
+        return rows;
+    }
+
+    static List<DBRow> queryCached(DBConnection connect, List<QueryBuilder> executions, long ttlMillis) throws SQLException {
+        if (executions.size() == 1) {
+            return connect.queryCached(ttlMillis, executions.get(0).getSql(), executions.get(0).getParams());
+        }
+        List<DBRow> rows = new ArrayList<>();
+        for (QueryBuilder qb : executions) {
+            rows.addAll(connect.queryCached(ttlMillis, qb.getSql(), qb.getParams()));
+        }
+        return Collections.unmodifiableList(rows);
+    }
+
+    static Stream<DBRow> stream(DBConnection connect, List<QueryBuilder> executions) throws SQLException {
+        if (executions.size() == 1) {
+            return connect.stream(executions.get(0).getSql(), executions.get(0).getParams());
+        }
+        //each execution is only started once the previous one has been read and closed
+        return executions.stream().flatMap(qb -> {
+            try {
+                return connect.stream(qb.getSql(), qb.getParams());
+            } catch (SQLException ex) {
+                throw new UncheckedSQLException(ex);
+            }
+        });
+    }
+
+    static DBResultTable queryColumnar(DBConnection connect, List<QueryBuilder> executions) throws SQLException {
+        QueryBuilder qb = single(executions);
+        return connect.queryColumnar(qb.getSql(), qb.getParams());
+    }
+
+    static long export(DBConnection connect, List<QueryBuilder> executions, ResultSetExporter exporter, OutputStream out) throws SQLException, IOException {
+        QueryBuilder qb = single(executions);
+        return connect.export(qb.getSql(), qb.getParams(), exporter, out);
+    }
+
+    static long export(DBConnection connect, List<QueryBuilder> executions, ResultSetExporter exporter, WritableByteChannel out) throws SQLException, IOException {
+        QueryBuilder qb = single(executions);
+        return connect.export(qb.getSql(), qb.getParams(), exporter, out);
+    }
+
+    static int queryHandle(DBConnection connect, List<QueryBuilder> executions, QueryHandler queryHandler) throws SQLException {
+        int count = 0;
+        for (QueryBuilder qb : executions) {
+            count += connect.queryHandle(qb.getSql(), qb.getParams(), queryHandler);
+        }
+        return count;
+    }
+
+    /**
+     * Split executions run in one transaction, so a failure part way through doesn't leave the earlier parts committed.
+     */
+    static int directExecute(DBConnection connect, List<QueryBuilder> executions) throws SQLException {
+        if (executions.size() == 1) {
+            return connect.directExecute(executions.get(0).getSql(), executions.get(0).getParams());
+        }
+        return connect.inTransaction(c -> {
+            int count = 0;
+            for (QueryBuilder qb : executions) {
+                count += c.directExecute(qb.getSql(), qb.getParams());
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Split executions run in one transaction, so a failure part way through doesn't leave the earlier parts committed.
+     */
+    static List<DBRow> alterExecute(DBConnection connect, List<QueryBuilder> executions) throws SQLException {
+        if (executions.size() == 1) {
+            return connect.alterExecute(executions.get(0).getSql(), executions.get(0).getParams());
+        }
+        return connect.inTransaction(c -> {
+            List<DBRow> rows = null;
+            for (QueryBuilder qb : executions) {
+                List<DBRow> results = c.alterExecute(qb.getSql(), qb.getParams());
+                if (results != null) {
+                    if (rows == null) {
+                        rows = new ArrayList<>();
+                    }
+                    rows.addAll(results);
+                }
+            }
+            return rows;
+        });
+    }
+}
@@ -2,22 +2,27 @@ package com.dbcontrol.named;
 
 import com.dbcontrol.DBConnection;
 import com.dbcontrol.QueryBuilder;
+import com.dbcontrol.export.ResultSetExporter;
 import com.dbcontrol.handlers.QueryHandler;
+import com.dbcontrol.results.DBResultTable;
 import com.dbcontrol.results.DBRow;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
 import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * Object representing a query with named parameters.<br>
  * SQL provided to this class must use # delimited parameters.<br>
  * Eg:<br>
  * <code>SELECT * FROM orders WHERE id = #orderId</code>
- * Parameters can only contain word characters (upper/lowercase A-Z and 0-9).
+ * Parameters can only contain word characters (upper/lowercase A-Z and 0-9).<br>
+ * The SQL is parsed once into a cached {@link NamedQueryTemplate}, so creating a NamedQuery for a constant SQL string is cheap.
  *
  * @author Derek Mulvihill - Apr 09, 2017
  */
@@ -31,57 +36,91 @@ public class NamedQuery {
 
     private final String sql;
     private final Map<String, Object> parameters = new HashMap<>();
+    private int maxListSize = NamedQueryTemplate.DEFAULT_MAX_LIST_SIZE;
+    private long cacheMillis = 0;
 
     public NamedQuery(String sql) {
         this.sql = sql;
     }
 
+    /**
+     * Bind a value to a parameter. Collection and array values (other than byte[]) are expanded to a list of parameters (Eg. for IN clauses),
+     * they must not be empty.
+     */
     public NamedQuery param(String name, Object parameter) {
         parameters.put(name, parameter);
         return this;
     }
 
+    /**
+     * The maximum number of ? a collection parameter is expanded to before the query is split into several executions.
+     */
+    public NamedQuery maxListSize(int maxListSize) {
+        this.maxListSize = maxListSize;
+        return this;
+    }
+
+    /**
+     * Cache the results of {@link #query(DBConnection)} in the QueryCache of the DBControlConfig (see DBConnection.queryCached).
+     *
+     * @param ttlMillis how long the results can be cached for, 0 to not cache them
+     */
+    public NamedQuery cache(long ttlMillis) {
+        this.cacheMillis = ttlMillis;
+        return this;
+    }
+
     public List<DBRow> query(DBConnection connect) throws SQLException {
-        QueryBuilder qb = toQueryBuilder();
-        return connect.query(qb.getSql(), qb.getParams());
+        if (cacheMillis > 0) {
+            return NamedExecution.queryCached(connect, toQueryBuilders(), cacheMillis);
+        }
+        return NamedExecution.query(connect, toQueryBuilders());
+    }
+
+    public Stream<DBRow> stream(DBConnection connect) throws SQLException {
+        return NamedExecution.stream(connect, toQueryBuilders());
+    }
+
+    public DBResultTable queryColumnar(DBConnection connect) throws SQLException {
+        return NamedExecution.queryColumnar(connect, toQueryBuilders());
+    }
+
+    public long export(DBConnection connect, ResultSetExporter exporter, OutputStream out) throws SQLException, IOException {
+        return NamedExecution.export(connect, toQueryBuilders(), exporter, out);
+    }
+
+    public long export(DBConnection connect, ResultSetExporter exporter, WritableByteChannel out) throws SQLException, IOException {
+        return NamedExecution.export(connect, toQueryBuilders(), exporter, out);
     }
 
     public int queryHandle(DBConnection connect, QueryHandler queryHandler) throws SQLException {
-        QueryBuilder qb = toQueryBuilder();
-        return connect.queryHandle(qb.getSql(), qb.getParams(), queryHandler);
+        return NamedExecution.queryHandle(connect, toQueryBuilders(), queryHandler);
     }
 
     public int directExecute(DBConnection connect) throws SQLException {
-        QueryBuilder qb = toQueryBuilder();
-        return connect.directExecute(qb.getSql(), qb.getParams());
+        return NamedExecution.directExecute(connect, toQueryBuilders());
     }
 
     public List<DBRow> alterExecute(DBConnection connect) throws SQLException {
-        QueryBuilder qb = toQueryBuilder();
-        return connect.alterExecute(qb.getSql(), qb.getParams());
+        return NamedExecution.alterExecute(connect, toQueryBuilders());
+    }
+
+    /**
+     * Creates QueryBuilder objects for each execution needed, there is more than one if a collection parameter has more values than the maximum list size.
+     *
+     * @throws UnboundNameQueryParameterException If the SQL contains a hash prefixed named parameter, but the parameter hasn't been provided yet.
+     */
+    public List<QueryBuilder> toQueryBuilders() {
+        return NamedQueryTemplate.compile(sql).toQueryBuilders(parameters, maxListSize);
     }
 
     /**
      * Creates a QueryBuilder object based on the SQL and parameters provided.
      *
      * @throws UnboundNameQueryParameterException If the SQL contains a hash prefixed named parameter, but the parameter hasn't been provided yet.
+     * @throws IllegalArgumentException           If a collection parameter has more values than the maximum list size.
      */
     public QueryBuilder toQueryBuilder() {
-        QueryBuilder qb = new QueryBuilder();
-        Pattern p = Pattern.compile("#(\\w+)");
-        Matcher m = p.matcher(sql);
-        //index of the beginning of the SQL that still needs to be added to the query (beginning of the query or the character after the last parameter name)
-        int startIndex = 0;
-        while (m.find()) {
-            String param = m.group(1);
-            if (parameters.containsKey(param)) {
-                qb.append(sql.substring(startIndex, m.start()) + "?", parameters.get(param));
-            } else {
-                throw new UnboundNameQueryParameterException(param);
-            }
-            startIndex = m.end();
-        }
-        qb.append(sql.substring(startIndex));
-        return qb;
+        return NamedExecution.single(toQueryBuilders());
     }
 }
@@ -0,0 +1,487 @@
+package com.dbcontrol.named;
+
+import com.dbcontrol.DBConnection;
+import com.dbcontrol.QueryBuilder;
+import com.dbcontrol.handlers.QueryHandler;
+import com.dbcontrol.results.DBResultTable;
+import com.dbcontrol.results.DBRow;
+
+import java.lang.reflect.Array;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * A named query that has been parsed once into SQL with JDBC ? parameters and the parameter name for each ?.<br>
+ * Templates are immutable and thread safe, and compiled templates are cached by SQL text, so the same SQL can be
+ * compiled for every request without being parsed again. Values are bound with a {@link Binding}:<br>
+ * <code>NamedQueryTemplate.compile("SELECT * FROM orders WHERE id = #orderId").bind().param("orderId", 5).query(connect)</code><br>
+ * Hash characters in string literals, quoted identifiers and comments are not treated as parameters.<br>
+ * Collection and array values (other than byte[]) are expanded to a list of ? (Eg. for IN clauses). The number of ? is
+ * padded up to a power of 2 (up to the maximum list size) by repeating the last value, so only a few SQL strings are ever
+ * created for a query. Lists larger than the maximum are split across several executions whose results are merged, which
+ * is only allowed when merging gives the same result as one execution: the parameter is used once, as a plain IN list, and
+ * the query has no NOT, OR, ORDER BY, GROUP BY, DISTINCT, aggregates or row limits. The split values are de-duplicated so
+ * a row can't be matched by two executions.<br>
+ * Empty lists are rejected, because there is no IN list that matches nothing (IN (NULL) also makes NOT IN match nothing).
+ */
+public final class NamedQueryTemplate {
+    /**
+     * The default maximum number of ? a collection parameter is expanded to in a single execution.
+     */
+    public static final int DEFAULT_MAX_LIST_SIZE = 512;
+    private static final int CACHE_SIZE = 1024;
+    private static final ConcurrentMap<String, NamedQueryTemplate> cache = new ConcurrentHashMap<>();
+    //clauses that make the merged results of split executions differ from the results of one execution
+    private static final Pattern MERGE_UNSAFE = Pattern.compile(
+            "\\b(NOT|OR|ORDER\\s+BY|GROUP\\s+BY|HAVING|DISTINCT|UNION|INTERSECT|EXCEPT|MINUS|LIMIT|OFFSET|FETCH|TOP|ROWNUM|OVER)\\b"
+                    + "|\\b(COUNT|SUM|AVG|MIN|MAX)\\s*\\(", Pattern.CASE_INSENSITIVE);
+    private static final Pattern IN_LIST_START = Pattern.compile("\\bIN\\s*\\(\\s*$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern IN_LIST_END = Pattern.compile("^\\s*\\)");
+
+    /**
+     * Get the compiled template for the SQL, parsing it if it isn't cached.
+     */
+    public static NamedQueryTemplate compile(String sql) {
+        NamedQueryTemplate template = cache.get(sql);
+        if (template == null) {
+            template = new NamedQueryTemplate(sql);
+            if (cache.size() >= CACHE_SIZE) {
+                //approximate eviction, only on a miss so lookups never write
+                Iterator<String> it = cache.keySet().iterator();
+                if (it.hasNext()) {
+                    it.next();
+                    it.remove();
+                }
+            }
+            NamedQueryTemplate existing = cache.putIfAbsent(sql, template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+        return template;
+    }
+
+    private final String namedSql;
+    //literal SQL between parameters, there is always one more segment than slots
+    private final String[] segments;
+    //the index in names of the parameter for each ?
+    private final int[] slots;
+    private final String[] names;
+    private final Map<String, Integer> nameIndexes;
+    private final String sql;
+    //whether each parameter can be split across several executions
+    private final boolean[] splittable;
+    //SQL for the numbers of ? at each slot when collection parameters are expanded
+    private final Map<List<Integer>, String> expandedSql = new ConcurrentHashMap<>();
+
+    private NamedQueryTemplate(String namedSql) {
+        this.namedSql = namedSql;
+        List<String> segments = new ArrayList<>();
+        List<Integer> slots = new ArrayList<>();
+        Map<String, Integer> nameIndexes = new LinkedHashMap<>();
+        //the SQL without literals, quoted identifiers and comments
+        StringBuilder code = new StringBuilder(namedSql.length());
+
+        int length = namedSql.length();
+        int segmentStart = 0;
+        int i = 0;
+        while (i < length) {
+            char c = namedSql.charAt(i);
+            if (c == '\'' || c == '"') {
+                i = skipQuoted(namedSql, i, c);
+                code.append(' ');
+            } else if (c == '-' && i + 1 < length && namedSql.charAt(i + 1) == '-') {
+                int end = namedSql.indexOf('\n', i);
+                i = end < 0 ? length : end + 1;
+                code.append(' ');
+            } else if (c == '/' && i + 1 < length && namedSql.charAt(i + 1) == '*') {
+                int end = namedSql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                code.append(' ');
+            } else if (c == '#' && i + 1 < length && isWordChar(namedSql.charAt(i + 1))) {
+                int end = i + 1;
+                while (end < length && isWordChar(namedSql.charAt(end))) {
+                    end++;
+                }
+                String name = namedSql.substring(i + 1, end);
+                Integer index = nameIndexes.get(name);
+                if (index == null) {
+                    index = nameIndexes.size();
+                    nameIndexes.put(name, index);
+                }
+                segments.add(namedSql.substring(segmentStart, i));
+                slots.add(index);
+                segmentStart = i = end;
+                code.append(' ');
+            } else {
+                code.append(c);
+                i++;
+            }
+        }
+        segments.add(namedSql.substring(segmentStart));
+
+        this.segments = segments.toArray(new String[segments.size()]);
+        this.slots = new int[slots.size()];
+        for (int s = 0; s < this.slots.length; s++) {
+            this.slots[s] = slots.get(s);
+        }
+        this.names = nameIndexes.keySet().toArray(new String[nameIndexes.size()]);
+        this.nameIndexes = Collections.unmodifiableMap(nameIndexes);
+        this.sql = buildSql();
+        this.splittable = findSplittable(!MERGE_UNSAFE.matcher(code).find());
+    }
+
+    /**
+     * A parameter can be split if the query is safe to merge and the parameter's only ? is the whole of an IN list.
+     */
+    private boolean[] findSplittable(boolean mergeable) {
+        boolean[] splittable = new boolean[names.length];
+        if (!mergeable) {
+            return splittable;
+        }
+        int[] uses = new int[names.length];
+        for (int s = 0; s < slots.length; s++) {
+            uses[slots[s]]++;
+            splittable[slots[s]] = IN_LIST_START.matcher(segments[s]).find() && IN_LIST_END.matcher(segments[s + 1]).find();
+        }
+        for (int n = 0; n < names.length; n++) {
+            splittable[n] &= uses[n] == 1;
+        }
+        return splittable;
+    }
+
+    /**
+     * The index after the closing quote, doubled quotes are escaped quotes.
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            if (sql.charAt(i) == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private String buildSql() {
+        StringBuilder sb = new StringBuilder(namedSql.length());
+        for (int s = 0; s < slots.length; s++) {
+            sb.append(segments[s]);
+            sb.append('?');
+        }
+        sb.append(segments[slots.length]);
+        return sb.toString();
+    }
+
+    /**
+     * The SQL with the given number of ? for each slot.
+     */
+    private String buildSql(List<Integer> counts) {
+        StringBuilder sb = new StringBuilder(namedSql.length() + counts.size() * 3);
+        for (int s = 0; s < slots.length; s++) {
+            sb.append(segments[s]);
+            for (int p = 0; p < counts.get(s); p++) {
+                sb.append(p == 0 ? "?" : ", ?");
+            }
+        }
+        sb.append(segments[slots.length]);
+        return sb.toString();
+    }
+
+    /**
+     * The values of a collection or array parameter, or null if the value is a single parameter (including byte[]).
+     */
+    private static List<?> asList(Object value) {
+        if (value instanceof Collection) {
+            return value instanceof List ? (List<?>) value : new ArrayList<>((Collection<?>) value);
+        } else if (value instanceof Object[]) {
+            return Arrays.asList((Object[]) value);
+        } else if (value != null && value.getClass().isArray() && !(value instanceof byte[])) {
+            int length = Array.getLength(value);
+            List<Object> list = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                list.add(Array.get(value, i));
+            }
+            return list;
+        }
+        return null;
+    }
+
+    /**
+     * The number of ? for a list, the next power of 2 up to the maximum.
+     */
+    private static int bucket(int size, int maxListSize) {
+        if (size <= 1) {
+            return 1;
+        }
+        int bucket = Integer.highestOneBit(size);
+        if (bucket < size) {
+            bucket <<= 1;
+        }
+        return Math.min(bucket, maxListSize);
+    }
+
+    /**
+     * The SQL and JDBC parameters for each execution needed for values indexed the same as {@link #getParameterNames()}.<br>
+     * There is only more than one execution if a collection parameter is larger than maxListSize.
+     *
+     * @param bound which values have been bound
+     * @throws UnboundNameQueryParameterException if a parameter hasn't been bound
+     * @throws IllegalArgumentException           if a collection parameter is empty, or is larger than maxListSize and
+     *                                            can't be split (see the class description)
+     */
+    List<QueryBuilder> toQueryBuilders(Object[] values, boolean[] bound, int maxListSize) {
+        if (maxListSize < 1) {
+            throw new IllegalArgumentException("maxListSize must be positive: " + maxListSize);
+        }
+        List<?>[] lists = null;
+        int split = -1;
+        for (int n = 0; n < names.length; n++) {
+            List<?> list = asList(values[n]);
+            if (list != null) {
+                if (lists == null) {
+                    lists = new List<?>[names.length];
+                }
+                if (list.isEmpty()) {
+                    throw new IllegalArgumentException("Collection parameter is empty: " + names[n]);
+                }
+                if (list.size() > maxListSize) {
+                    if (split >= 0) {
+                        throw new IllegalArgumentException("Only one collection parameter can have more than " + maxListSize + " values: "
+                                + names[split] + ", " + names[n]);
+                    }
+                    if (!splittable[n]) {
+                        throw new IllegalArgumentException("Collection parameter " + names[n] + " has more than " + maxListSize
+                                + " values and can only be split in a plain IN list without NOT, OR, ORDER BY, grouping or aggregates");
+                    }
+                    list = new ArrayList<>(new LinkedHashSet<>(list));
+                    split = n;
+                }
+                lists[n] = list;
+            }
+        }
+        if (lists == null) {
+            return Collections.singletonList(new QueryBuilder().append(sql, toParams(values, bound)));
+        }
+
+        List<QueryBuilder> executions = new ArrayList<>();
+        int splitSize = split < 0 ? 0 : lists[split].size();
+        List<?> whole = split < 0 ? null : lists[split];
+        for (int start = 0; start == 0 || start < splitSize; start += maxListSize) {
+            if (split >= 0) {
+                lists[split] = whole.subList(start, Math.min(start + maxListSize, splitSize));
+            }
+            List<Integer> counts = new ArrayList<>(slots.length);
+            List<Object> params = new ArrayList<>();
+            for (int s = 0; s < slots.length; s++) {
+                int n = slots[s];
+                if (!bound[n]) {
+                    throw new UnboundNameQueryParameterException(names[n]);
+                }
+                List<?> list = lists[n];
+                if (list == null) {
+                    counts.add(1);
+                    params.add(values[n]);
+                    continue;
+                }
+                int bucket = bucket(list.size(), maxListSize);
+                counts.add(bucket);
+                params.addAll(list);
+                Object last = list.get(list.size() - 1);
+                for (int p = list.size(); p < bucket; p++) {
+                    params.add(last);
+                }
+            }
+            String executionSql = expandedSql.computeIfAbsent(counts, this::buildSql);
+            executions.add(new QueryBuilder().append(executionSql, params.toArray()));
+        }
+        return executions;
+    }
+
+    /**
+     * The SQL as it was given, with named parameters.
+     */
+    public String getNamedSql() {
+        return namedSql;
+    }
+
+    /**
+     * The SQL with a JDBC ? for each named parameter.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * The distinct parameter names in the order they first appear.
+     */
+    public List<String> getParameterNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * The index of a parameter name in {@link #getParameterNames()}, or -1 if it isn't in the SQL.
+     */
+    public int indexOf(String name) {
+        Integer index = nameIndexes.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * The JDBC parameters for values indexed the same as {@link #getParameterNames()}.
+     *
+     * @param bound which values have been bound
+     * @throws UnboundNameQueryParameterException if a parameter hasn't been bound
+     */
+    Object[] toParams(Object[] values, boolean[] bound) {
+        Object[] params = new Object[slots.length];
+        for (int s = 0; s < slots.length; s++) {
+            if (!bound[slots[s]]) {
+                throw new UnboundNameQueryParameterException(names[slots[s]]);
+            }
+            params[s] = values[slots[s]];
+        }
+        return params;
+    }
+
+    /**
+     * The JDBC parameters from a map of parameter names to values.
+     *
+     * @throws UnboundNameQueryParameterException if a parameter isn't in the map
+     */
+    public Object[] toParams(Map<String, ?> parameters) {
+        Object[] values = new Object[names.length];
+        boolean[] bound = new boolean[names.length];
+        bindMap(parameters, values, bound);
+        return toParams(values, bound);
+    }
+
+    /**
+     * The SQL and JDBC parameters for each execution needed for a map of parameter names to values, with collection parameters expanded.
+     *
+     * @throws UnboundNameQueryParameterException if a parameter isn't in the map
+     * @throws IllegalArgumentException           if a collection parameter is empty, or is larger than maxListSize and can't be split
+     */
+    public List<QueryBuilder> toQueryBuilders(Map<String, ?> parameters, int maxListSize) {
+        Object[] values = new Object[names.length];
+        boolean[] bound = new boolean[names.length];
+        bindMap(parameters, values, bound);
+        return toQueryBuilders(values, bound, maxListSize);
+    }
+
+    private void bindMap(Map<String, ?> parameters, Object[] values, boolean[] bound) {
+        for (int n = 0; n < names.length; n++) {
+            if (parameters.containsKey(names[n])) {
+                values[n] = parameters.get(names[n]);
+                bound[n] = true;
+            }
+        }
+    }
+
+    /**
+     * Start binding values to a new execution of this template.
+     */
+    public Binding bind() {
+        return new Binding();
+    }
+
+    /**
+     * Parameter values for one execution of a NamedQueryTemplate. Not thread safe.
+     */
+    public final class Binding {
+        private final Object[] values = new Object[names.length];
+        private final boolean[] bound = new boolean[names.length];
+        private int maxListSize = DEFAULT_MAX_LIST_SIZE;
+
+        private Binding() {
+        }
+
+        /**
+         * The maximum number of ? a collection parameter is expanded to before the query is split into several executions.
+         */
+        public Binding maxListSize(int maxListSize) {
+            this.maxListSize = maxListSize;
+            return this;
+        }
+
+        /**
+         * Bind a value to a parameter, names that aren't in the SQL are ignored like NamedQuery.
+         */
+        public Binding param(String name, Object parameter) {
+            Integer index = nameIndexes.get(name);
+            if (index != null) {
+                values[index] = parameter;
+                bound[index] = true;
+            }
+            return this;
+        }
+
+        /**
+         * Bind a value by its index in {@link NamedQueryTemplate#getParameterNames()}.
+         */
+        public Binding param(int index, Object parameter) {
+            values[index] = parameter;
+            bound[index] = true;
+            return this;
+        }
+
+        /**
+         * The JDBC parameters without expanding collection parameters.
+         *
+         * @throws UnboundNameQueryParameterException if a parameter hasn't been bound
+         */
+        public Object[] getParams() {
+            return toParams(values, bound);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * The SQL and parameters with collection parameters expanded.
+         *
+         * @throws IllegalArgumentException if a collection parameter is larger than the maximum list size
+         */
+        public QueryBuilder toQueryBuilder() {
+            return NamedExecution.single(toQueryBuilders(values, bound, maxListSize));
+        }
+
+        public List<DBRow> query(DBConnection connect) throws SQLException {
+            return NamedExecution.query(connect, toQueryBuilders(values, bound, maxListSize));
+        }
+
+        public Stream<DBRow> stream(DBConnection connect) throws SQLException {
+            return NamedExecution.stream(connect, toQueryBuilders(values, bound, maxListSize));
+        }
+
+        public DBResultTable queryColumnar(DBConnection connect) throws SQLException {
+            return NamedExecution.queryColumnar(connect, toQueryBuilders(values, bound, maxListSize));
+        }
+
+        public int queryHandle(DBConnection connect, QueryHandler queryHandler) throws SQLException {
+            return NamedExecution.queryHandle(connect, toQueryBuilders(values, bound, maxListSize), queryHandler);
+        }
+
+        public int directExecute(DBConnection connect) throws SQLException {
+            return NamedExecution.directExecute(connect, toQueryBuilders(values, bound, maxListSize));
+        }
+
+        public List<DBRow> alterExecute(DBConnection connect) throws SQLException {
+            return NamedExecution.alterExecute(connect, toQueryBuilders(values, bound, maxListSize));
+        }
+    }
+}
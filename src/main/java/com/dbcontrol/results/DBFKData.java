@@ -2,8 +2,11 @@ package com.dbcontrol.results;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -15,16 +18,33 @@ public class DBFKData {
     private final Map<String, DBFKFieldData> fieldFK;
 
     public DBFKData(ResultSet rs) throws SQLException {
+        this(readFKs(rs));
+    }
+
+    /**
+     * Create foreign key data from already read foreign keys (Eg. a cached copy).
+     */
+    public DBFKData(Collection<DBFKFieldData> fks) {
         Map<String, DBFKFieldData> fieldFK = new HashMap<>();
+        for (DBFKFieldData fkFieldData : fks) {
+            fieldFK.put(fkFieldData.getForeignKeyColumnName().toLowerCase(), fkFieldData);
+        }
+        this.fieldFK = Collections.unmodifiableMap(fieldFK);
+    }
+
+    /**
+     * Read each foreign key from a DatabaseMetaData.getImportedKeys ResultSet.
+     */
+    public static List<DBFKFieldData> readFKs(ResultSet rs) throws SQLException {
+        List<DBFKFieldData> fks = new ArrayList<>();
         while (rs.next()) {
-            DBFKFieldData fkFieldData = new DBFKFieldData(
+            fks.add(new DBFKFieldData(
                     rs.getString("PKTABLE_NAME"),
                     rs.getString("PKCOLUMN_NAME"),
                     rs.getString("FKTABLE_NAME"),
-                    rs.getString("FKCOLUMN_NAME"));
-            fieldFK.put(fkFieldData.getForeignKeyColumnName().toLowerCase(), fkFieldData);
+                    rs.getString("FKCOLUMN_NAME")));
         }
-        this.fieldFK = Collections.unmodifiableMap(fieldFK);
+        return fks;
     }
 
     public Map<String, DBFKFieldData> getFKData() {
@@ -37,7 +57,7 @@ public class DBFKData {
         private final String fkTableName;
         private final String fkColumnName;
 
-        private DBFKFieldData(String pkTableName, String pkColumnName, String fkTableName, String fkColumnName) {
+        public DBFKFieldData(String pkTableName, String pkColumnName, String fkTableName, String fkColumnName) {
             this.pkTableName = pkTableName;
             this.pkColumnName = pkColumnName;
             this.fkTableName = fkTableName;
@@ -3,15 +3,20 @@ package com.dbcontrol.results;
 import java.io.InputStream;
 
 /**
- * Wrapper around an InputStream with a specified length use as a field value in DBControl/ConnectionWrapper.
+ * Wrapper around an InputStream with a specified length use as a field value in DBControl/ConnectionWrapper.<br>
+ * Lengths over Integer.MAX_VALUE are bound with setBinaryStream(int, InputStream, long), which needs a JDBC 4 driver.
  *
  * @author Derek Mulvihill - Jun 21, 2014
  */
 public class DBInputStreamWrapper {
     public final InputStream inputStream;
-    public final int length;
+    public final long length;
 
     public DBInputStreamWrapper(InputStream inputStream, int length) {
+        this(inputStream, (long) length);
+    }
+
+    public DBInputStreamWrapper(InputStream inputStream, long length) {
         this.inputStream = inputStream;
         this.length = length;
     }
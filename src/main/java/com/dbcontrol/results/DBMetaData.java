@@ -14,19 +14,60 @@ import java.util.Map;
  */
 public class DBMetaData {
     private final Map<String, DBFieldData> fieldData;
+    //fields by column number - 1
+    private final DBFieldData[] fields;
+    //open addressing hash table of fields by case insensitive name, so lookups don't need to allocate a lower case name
+    private final DBFieldData[] nameTable;
 
     public DBMetaData(ResultSetMetaData metaData) throws SQLException {
-        Map<String, DBFieldData> fieldData = new HashMap<>();
+        this(readFields(metaData));
+    }
+
+    /**
+     * Create metadata for fields described somewhere other than a ResultSet (Eg. DatabaseMetaData.getColumns or a cached copy).
+     * The field at index 0 is column number 1.
+     */
+    public DBMetaData(String[] casedNames, DBFieldType[] types, int[] precisions) {
+        this(createFields(casedNames, types, precisions));
+    }
+
+    private static DBFieldData[] readFields(ResultSetMetaData metaData) throws SQLException {
+        DBFieldData[] fields = new DBFieldData[metaData.getColumnCount()];
         for (int i = 1; i <= metaData.getColumnCount(); i++) {
-            DBFieldData field = new DBFieldData();
-            field.number = i;
-            field.casedName = metaData.getColumnLabel(i);
-            field.name = field.casedName.toLowerCase();
-            field.type = DBFieldType.getTypeFromJDBCType(metaData.getColumnType(i));
-            field.precision = metaData.getPrecision(i);
+            fields[i - 1] = new DBFieldData(i, metaData.getColumnLabel(i),
+                    DBFieldType.getTypeFromJDBCType(metaData.getColumnType(i)), metaData.getPrecision(i));
+        }
+        return fields;
+    }
+
+    private static DBFieldData[] createFields(String[] casedNames, DBFieldType[] types, int[] precisions) {
+        DBFieldData[] fields = new DBFieldData[casedNames.length];
+        for (int i = 0; i < casedNames.length; i++) {
+            fields[i] = new DBFieldData(i + 1, casedNames[i], types[i], precisions[i]);
+        }
+        return fields;
+    }
+
+    private DBMetaData(DBFieldData[] fields) {
+        this.fields = fields;
+        Map<String, DBFieldData> fieldData = new HashMap<>();
+        for (DBFieldData field : fields) {
             fieldData.put(field.name, field);
         }
         this.fieldData = Collections.unmodifiableMap(fieldData);
+
+        int size = 4;
+        while (size < fieldData.size() * 2) {
+            size <<= 1;
+        }
+        nameTable = new DBFieldData[size];
+        for (DBFieldData field : fieldData.values()) {
+            int slot = hashIgnoreCase(field.name) & (size - 1);
+            while (nameTable[slot] != null) {
+                slot = (slot + 1) & (size - 1);
+            }
+            nameTable[slot] = field;
+        }
     }
 
     /**
@@ -36,19 +77,73 @@ public class DBMetaData {
         return fieldData;
     }
 
+    /**
+     * The number of columns/fields.
+     */
+    public int getColumnCount() {
+        return fields.length;
+    }
+
+    /**
+     * The DBFieldData for a column number (the first column is number 1), or null if there isn't a column with that number.
+     */
+    public DBFieldData getField(int columnNumber) {
+        if (columnNumber < 1 || columnNumber > fields.length) {
+            return null;
+        }
+        return fields[columnNumber - 1];
+    }
+
+    /**
+     * The DBFieldData for a case insensitive field name, or null if there isn't a field with that name.
+     */
+    public DBFieldData getField(String name) {
+        int mask = nameTable.length - 1;
+        int slot = hashIgnoreCase(name) & mask;
+        DBFieldData field;
+        while ((field = nameTable[slot]) != null) {
+            if (field.name.equalsIgnoreCase(name)) {
+                return field;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * The column number for a case insensitive field name, or -1 if there isn't a field with that name.
+     */
+    public int getColumnNumber(String name) {
+        DBFieldData field = getField(name);
+        return field == null ? -1 : field.number;
+    }
+
+    private static int hashIgnoreCase(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
     /**
      * Data about a specific column/field returned from a query.
      *
      * @author Derek Mulvihill - Aug 2, 2013
      */
     public static class DBFieldData {
-        private int number;
-        private String name;
-        private String casedName;
-        private DBFieldType type;
-        private int precision;
+        private final int number;
+        private final String name;
+        private final String casedName;
+        private final DBFieldType type;
+        private final int precision;
 
-        private DBFieldData() {
+        private DBFieldData(int number, String casedName, DBFieldType type, int precision) {
+            this.number = number;
+            this.casedName = casedName;
+            this.name = casedName.toLowerCase();
+            this.type = type;
+            this.precision = precision;
         }
 
         /**
@@ -110,16 +205,18 @@ public class DBMetaData {
         DOUBLE,
         //BigDecimals
         DECIMAL,
-        //java.sql.Date (modified to jodatime LocalDate)
+        //java.sql.Date (modified to jodatime LocalDate, or java.time with TemporalTypes.JAVA_TIME)
         DATE,
-        //java.sql.Timestamp (modified to jodatime LocalDateTime)
+        //java.sql.Timestamp (modified to jodatime LocalDateTime, or java.time with TemporalTypes.JAVA_TIME)
         DATETIME,
-        //java.sql.Time (modified to jodatime LocalTime)
+        //java.sql.Time (modified to jodatime LocalTime, or java.time with TemporalTypes.JAVA_TIME)
         TIME,
         //Booleans
         BOOL,
         //byte[]
         BINARY,
+        //TIMESTAMP WITH TIME ZONE (java.time OffsetDateTime), new types go last since SchemaCache snapshots store the ordinal
+        DATETIME_OFFSET,
         //
         ;
 
@@ -132,6 +229,7 @@ public class DBMetaData {
                 case Types.NVARCHAR:
                     return NVARCHAR;
                 case Types.CLOB:
+                case Types.NCLOB:
                     return CLOB;
                 case Types.BIGINT:
                     return LONG;
@@ -152,10 +250,15 @@ public class DBMetaData {
                     return DATETIME;
                 case Types.TIME:
                     return TIME;
+                case Types.TIMESTAMP_WITH_TIMEZONE:
+                    return DATETIME_OFFSET;
                 case Types.BIT:
                 case Types.BOOLEAN:
                     return BOOL;
                 case Types.BINARY:
+                case Types.VARBINARY:
+                case Types.LONGVARBINARY:
+                case Types.BLOB:
                     return BINARY;
             }
             throw new RuntimeException("Unknown JDBC column type: "
@@ -0,0 +1,559 @@
+package com.dbcontrol.results;
+
+import com.dbcontrol.exceptions.InvalidFieldException;
+import com.dbcontrol.results.DBMetaData.DBFieldData;
+import com.dbcontrol.results.DBMetaData.DBFieldType;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Column oriented results from a query, an alternative to a List of DBRows for large or wide numeric results.<br>
+ * LONG, INT/SHORT, DOUBLE and BOOL fields are stored in primitive arrays with a bitmap for nulls instead of as boxed objects.
+ * Other field types are stored as the same objects a DBRow would return, with CLOB and BLOB values read as the LobPolicy says.<br>
+ * Values are stored in chunks so reading the results never copies already read values to a larger array.<br>
+ * Rows are numbered from 0, columns are numbered from 1 like JDBC.
+ */
+public class DBResultTable implements Iterable<DBResultTable.RowView> {
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final DBMetaData metadata;
+    private final Column[] columns;
+    private int rowCount = 0;
+
+    /**
+     * Read all the remaining rows of the ResultSet.
+     */
+    public DBResultTable(DBMetaData dbm, ResultSet rs) throws SQLException {
+        this(dbm, rs, LobPolicy.eager());
+    }
+
+    /**
+     * Read all the remaining rows of the ResultSet, with CLOB and BLOB values read as the LobPolicy says.
+     */
+    public DBResultTable(DBMetaData dbm, ResultSet rs, LobPolicy lobs) throws SQLException {
+        this(dbm, rs, lobs, TemporalTypes.JODA);
+    }
+
+    /**
+     * Read all the remaining rows of the ResultSet, with CLOB and BLOB values read as the LobPolicy says and DATE, DATETIME and TIME values as
+     * the TemporalTypes.
+     */
+    public DBResultTable(DBMetaData dbm, ResultSet rs, LobPolicy lobs, TemporalTypes temporals) throws SQLException {
+        this.metadata = dbm;
+        this.columns = new Column[dbm.getColumnCount()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Column.create(dbm.getField(i + 1), lobs, temporals);
+        }
+        while (rs.next()) {
+            if ((rowCount & CHUNK_MASK) == 0) {
+                for (Column column : columns) {
+                    column.addChunk();
+                }
+            }
+            for (Column column : columns) {
+                column.read(rs, rowCount);
+            }
+            rowCount++;
+        }
+    }
+
+    /**
+     * Metadata about the fields in the table.
+     */
+    public DBMetaData getMetadata() {
+        return metadata;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isNull(int row, int column) {
+        return getColumn(column).isNull(checkRow(row));
+    }
+
+    /**
+     * Returns the value for the LONG field type, 0 if the value is null.
+     */
+    public long getLong(int row, int column) {
+        return getColumn(column, LongColumn.class, "long").get(checkRow(row));
+    }
+
+    /**
+     * Returns the value for the INT and SHORT field types, 0 if the value is null.
+     */
+    public int getInt(int row, int column) {
+        return getColumn(column, IntColumn.class, "int").get(checkRow(row));
+    }
+
+    /**
+     * Returns the value for the DOUBLE field type, 0 if the value is null.
+     */
+    public double getDouble(int row, int column) {
+        return getColumn(column, DoubleColumn.class, "double").get(checkRow(row));
+    }
+
+    /**
+     * Returns the value for the BOOL field type, false if the value is null.
+     */
+    public boolean getBool(int row, int column) {
+        return getColumn(column, BoolColumn.class, "boolean").get(checkRow(row));
+    }
+
+    /**
+     * Returns the value of any field type as the same object DBRow.getObject would return.
+     */
+    public Object getObject(int row, int column) {
+        return getColumn(column).getObject(checkRow(row));
+    }
+
+    /**
+     * Iterate the values of a LONG column, nulls are returned as 0.
+     */
+    public PrimitiveIterator.OfLong longIterator(int column) {
+        final LongColumn values = getColumn(column, LongColumn.class, "long");
+        return new PrimitiveIterator.OfLong() {
+            private int row = 0;
+
+            @Override
+            public boolean hasNext() {
+                return row < rowCount;
+            }
+
+            @Override
+            public long nextLong() {
+                return values.get(nextRow(row++));
+            }
+        };
+    }
+
+    /**
+     * Iterate the values of an INT or SHORT column, nulls are returned as 0.
+     */
+    public PrimitiveIterator.OfInt intIterator(int column) {
+        final IntColumn values = getColumn(column, IntColumn.class, "int");
+        return new PrimitiveIterator.OfInt() {
+            private int row = 0;
+
+            @Override
+            public boolean hasNext() {
+                return row < rowCount;
+            }
+
+            @Override
+            public int nextInt() {
+                return values.get(nextRow(row++));
+            }
+        };
+    }
+
+    /**
+     * Iterate the values of a DOUBLE column, nulls are returned as 0.
+     */
+    public PrimitiveIterator.OfDouble doubleIterator(int column) {
+        final DoubleColumn values = getColumn(column, DoubleColumn.class, "double");
+        return new PrimitiveIterator.OfDouble() {
+            private int row = 0;
+
+            @Override
+            public boolean hasNext() {
+                return row < rowCount;
+            }
+
+            @Override
+            public double nextDouble() {
+                return values.get(nextRow(row++));
+            }
+        };
+    }
+
+    /**
+     * Iterate the values of any column as the same objects DBRow.getObject would return.
+     */
+    public Iterator<Object> objectIterator(int column) {
+        final Column values = getColumn(column);
+        return new Iterator<Object>() {
+            private int row = 0;
+
+            @Override
+            public boolean hasNext() {
+                return row < rowCount;
+            }
+
+            @Override
+            public Object next() {
+                return values.getObject(nextRow(row++));
+            }
+        };
+    }
+
+    /**
+     * A view of a single row of the table.
+     */
+    public RowView getRow(int row) {
+        return new RowView(checkRow(row));
+    }
+
+    /**
+     * Iterate the rows of the table. The same RowView is moved along to each row, so it shouldn't be kept between iterations.
+     */
+    @Override
+    public Iterator<RowView> iterator() {
+        final RowView view = new RowView(-1);
+        return new Iterator<RowView>() {
+            @Override
+            public boolean hasNext() {
+                return view.row + 1 < rowCount;
+            }
+
+            @Override
+            public RowView next() {
+                nextRow(view.row + 1);
+                view.row++;
+                return view;
+            }
+        };
+    }
+
+    private int nextRow(int row) {
+        if (row >= rowCount) {
+            throw new NoSuchElementException();
+        }
+        return row;
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + rowCount);
+        }
+        return row;
+    }
+
+    private Column getColumn(int column) {
+        if (column < 1 || column > columns.length) {
+            throw new InvalidFieldException("Column [" + column + "] not in table");
+        }
+        return columns[column - 1];
+    }
+
+    private <C extends Column> C getColumn(int column, Class<C> type, String representation) {
+        Column values = getColumn(column);
+        if (!type.isInstance(values)) {
+            throw new InvalidFieldException("Field [" + values.field.getCasedName() + "] does not have a " + representation + " representation");
+        }
+        return type.cast(values);
+    }
+
+    private int getColumnNumber(String field) {
+        DBFieldData data = metadata.getField(field);
+        if (data == null) {
+            throw new InvalidFieldException("Field [" + field + "] not in table");
+        }
+        return data.getColumnNumber();
+    }
+
+    /**
+     * A single row of a DBResultTable with the same kind of case insensitive field access as a DBRow.
+     */
+    public class RowView {
+        private int row;
+
+        private RowView(int row) {
+            this.row = row;
+        }
+
+        /**
+         * The number of this row in the table (the first row is 0).
+         */
+        public int getRowNumber() {
+            return row;
+        }
+
+        public boolean isNull(String field) {
+            return DBResultTable.this.isNull(row, getColumnNumber(field));
+        }
+
+        public long getLong(String field) {
+            return DBResultTable.this.getLong(row, getColumnNumber(field));
+        }
+
+        public int getInt(String field) {
+            return DBResultTable.this.getInt(row, getColumnNumber(field));
+        }
+
+        public double getDouble(String field) {
+            return DBResultTable.this.getDouble(row, getColumnNumber(field));
+        }
+
+        public boolean getBool(String field) {
+            return DBResultTable.this.getBool(row, getColumnNumber(field));
+        }
+
+        public Object getObject(String field) {
+            return DBResultTable.this.getObject(row, getColumnNumber(field));
+        }
+
+        /**
+         * Copy this row into a DBRow.
+         */
+        public DBRow toDBRow() {
+            Object[] values = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = columns[i].getValue(row);
+            }
+            return new DBRow(metadata, values);
+        }
+
+        @Override
+        public String toString() {
+            return toDBRow().toString();
+        }
+    }
+
+    /**
+     * The values of a single column in chunks of CHUNK_SIZE rows along with a null bitmap for each chunk.
+     */
+    private abstract static class Column {
+        final DBFieldData field;
+        //bitmaps are only allocated for chunks that have a null
+        private final List<long[]> nulls = new ArrayList<>();
+
+        Column(DBFieldData field) {
+            this.field = field;
+        }
+
+        static Column create(DBFieldData field, LobPolicy lobs, TemporalTypes temporals) {
+            switch (field.getType()) {
+                case LONG:
+                    return new LongColumn(field);
+                case INT:
+                case SHORT:
+                    return new IntColumn(field);
+                case DOUBLE:
+                    return new DoubleColumn(field);
+                case BOOL:
+                    return new BoolColumn(field);
+                default:
+                    return new ObjectColumn(field, lobs, temporals);
+            }
+        }
+
+        void addChunk() {
+            nulls.add(null);
+        }
+
+        void setNull(int row) {
+            int chunk = row >>> CHUNK_SHIFT;
+            long[] bits = nulls.get(chunk);
+            if (bits == null) {
+                bits = new long[CHUNK_SIZE / 64];
+                nulls.set(chunk, bits);
+            }
+            int index = row & CHUNK_MASK;
+            bits[index >>> 6] |= 1L << index;
+        }
+
+        boolean isNull(int row) {
+            long[] bits = nulls.get(row >>> CHUNK_SHIFT);
+            if (bits == null) {
+                return false;
+            }
+            int index = row & CHUNK_MASK;
+            return (bits[index >>> 6] & (1L << index)) != 0;
+        }
+
+        abstract void read(ResultSet rs, int row) throws SQLException;
+
+        abstract Object getObject(int row);
+
+        /**
+         * The value as it is stored in a DBRow, which is the same as getObject except for LOBs that weren't read into memory.
+         */
+        Object getValue(int row) {
+            return getObject(row);
+        }
+    }
+
+    private static final class LongColumn extends Column {
+        private final List<long[]> chunks = new ArrayList<>();
+
+        LongColumn(DBFieldData field) {
+            super(field);
+        }
+
+        @Override
+        void addChunk() {
+            super.addChunk();
+            chunks.add(new long[CHUNK_SIZE]);
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            long value = rs.getLong(field.getColumnNumber());
+            if (rs.wasNull()) {
+                setNull(row);
+            } else {
+                chunks.get(row >>> CHUNK_SHIFT)[row & CHUNK_MASK] = value;
+            }
+        }
+
+        long get(int row) {
+            return chunks.get(row >>> CHUNK_SHIFT)[row & CHUNK_MASK];
+        }
+
+        @Override
+        Object getObject(int row) {
+            return isNull(row) ? null : get(row);
+        }
+    }
+
+    private static final class IntColumn extends Column {
+        private final List<int[]> chunks = new ArrayList<>();
+
+        IntColumn(DBFieldData field) {
+            super(field);
+        }
+
+        @Override
+        void addChunk() {
+            super.addChunk();
+            chunks.add(new int[CHUNK_SIZE]);
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            int value = rs.getInt(field.getColumnNumber());
+            if (rs.wasNull()) {
+                setNull(row);
+            } else {
+                chunks.get(row >>> CHUNK_SHIFT)[row & CHUNK_MASK] = value;
+            }
+        }
+
+        int get(int row) {
+            return chunks.get(row >>> CHUNK_SHIFT)[row & CHUNK_MASK];
+        }
+
+        @Override
+        Object getObject(int row) {
+            return isNull(row) ? null : get(row);
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+        private final List<double[]> chunks = new ArrayList<>();
+
+        DoubleColumn(DBFieldData field) {
+            super(field);
+        }
+
+        @Override
+        void addChunk() {
+            super.addChunk();
+            chunks.add(new double[CHUNK_SIZE]);
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            double value = rs.getDouble(field.getColumnNumber());
+            if (rs.wasNull()) {
+                setNull(row);
+            } else {
+                chunks.get(row >>> CHUNK_SHIFT)[row & CHUNK_MASK] = value;
+            }
+        }
+
+        double get(int row) {
+            return chunks.get(row >>> CHUNK_SHIFT)[row & CHUNK_MASK];
+        }
+
+        @Override
+        Object getObject(int row) {
+            return isNull(row) ? null : get(row);
+        }
+    }
+
+    private static final class BoolColumn extends Column {
+        private final List<boolean[]> chunks = new ArrayList<>();
+
+        BoolColumn(DBFieldData field) {
+            super(field);
+        }
+
+        @Override
+        void addChunk() {
+            super.addChunk();
+            chunks.add(new boolean[CHUNK_SIZE]);
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            boolean value = rs.getBoolean(field.getColumnNumber());
+            if (rs.wasNull()) {
+                setNull(row);
+            } else {
+                chunks.get(row >>> CHUNK_SHIFT)[row & CHUNK_MASK] = value;
+            }
+        }
+
+        boolean get(int row) {
+            return chunks.get(row >>> CHUNK_SHIFT)[row & CHUNK_MASK];
+        }
+
+        @Override
+        Object getObject(int row) {
+            return isNull(row) ? null : get(row);
+        }
+    }
+
+    private static final class ObjectColumn extends Column {
+        private final List<Object[]> chunks = new ArrayList<>();
+        private final LobPolicy lobs;
+        private final TemporalTypes temporals;
+
+        ObjectColumn(DBFieldData field, LobPolicy lobs, TemporalTypes temporals) {
+            super(field);
+            this.lobs = lobs;
+            this.temporals = temporals;
+        }
+
+        @Override
+        void addChunk() {
+            super.addChunk();
+            chunks.add(new Object[CHUNK_SIZE]);
+        }
+
+        @Override
+        void read(ResultSet rs, int row) throws SQLException {
+            Object value = DBRow.readValue(field, rs, lobs, temporals);
+            if (value == null) {
+                setNull(row);
+            } else {
+                chunks.get(row >>> CHUNK_SHIFT)[row & CHUNK_MASK] = value;
+            }
+        }
+
+        @Override
+        Object getObject(int row) {
+            Object value = getValue(row);
+            if (value instanceof LobValue) {
+                LobValue lob = (LobValue) value;
+                return field.getType() == DBFieldType.CLOB ? lob.string() : lob.bytes();
+            }
+            return value;
+        }
+
+        @Override
+        Object getValue(int row) {
+            return chunks.get(row >>> CHUNK_SHIFT)[row & CHUNK_MASK];
+        }
+    }
+}
@@ -7,10 +7,13 @@ import org.joda.time.LocalDate;
 import org.joda.time.LocalDateTime;
 import org.joda.time.LocalTime;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.sql.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.time.OffsetDateTime;
 
 /**
  * A single row of results from a query, or a record from a database table.
@@ -19,85 +22,128 @@ import java.util.Map;
  */
 public class DBRow {
     private final DBMetaData metadata;
-    private final Map<String, Object> values = new HashMap<>();
+    //values by column number - 1
+    private final Object[] values;
+    private final boolean readOnly;
 
     public DBRow(DBMetaData dbm, ResultSet rs) throws SQLException {
+        this(dbm, rs, LobPolicy.eager());
+    }
+
+    /**
+     * Read the current row of the ResultSet, with CLOB and BLOB values read as the LobPolicy says.
+     */
+    public DBRow(DBMetaData dbm, ResultSet rs, LobPolicy lobs) throws SQLException {
+        this(dbm, rs, lobs, TemporalTypes.JODA);
+    }
+
+    /**
+     * Read the current row of the ResultSet, with CLOB and BLOB values read as the LobPolicy says and DATE, DATETIME and TIME values as the
+     * TemporalTypes.
+     */
+    public DBRow(DBMetaData dbm, ResultSet rs, LobPolicy lobs, TemporalTypes temporals) throws SQLException {
         this.metadata = dbm;
+        this.values = new Object[dbm.getColumnCount()];
+        this.readOnly = false;
         if (rs != null) {
-            for (DBFieldData field : dbm.getFieldData().values()) {
-                if (field.getType() == DBFieldType.DATE) {
-                    java.sql.Date value = (java.sql.Date) rs.getObject(field.getColumnNumber());
-                    if (value == null) {
-                        values.put(field.getName(), null);
-                    } else {
-                        values.put(field.getName(), new LocalDate(value.getTime()));
-                    }
-                } else if (field.getType() == DBFieldType.DATETIME) {
-                    Timestamp value = (Timestamp) rs.getObject(field.getColumnNumber());
-                    if (value == null) {
-                        values.put(field.getName(), null);
-                    } else {
-                        values.put(field.getName(), new LocalDateTime(value.getTime()));
-                    }
-                } else if (field.getType() == DBFieldType.TIME) {
-                    Time value = (Time) rs.getObject(field.getColumnNumber());
-                    if (value == null) {
-                        values.put(field.getName(), null);
-                    } else {
-                        values.put(field.getName(), new LocalTime(value.getTime()));
-                    }
-                } else if (field.getType() == DBFieldType.CLOB) {
-                    Clob value = (Clob) rs.getObject(field.getColumnNumber());
-                    if (value == null) {
-                        values.put(field.getName(), null);
-                    } else {
-                        values.put(field.getName(), value.getSubString(1, (int) value.length()));
-                    }
-                } else {
-                    values.put(field.getName(), rs.getObject(field.getColumnNumber()));
-                }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readValue(dbm.getField(i + 1), rs, lobs, temporals);
             }
+        }
+    }
+
+    /**
+     * Create a row from values that have already been read, indexed by column number - 1.
+     */
+    DBRow(DBMetaData dbm, Object[] values) {
+        this(dbm, values, false);
+    }
+
+    private DBRow(DBMetaData dbm, Object[] values, boolean readOnly) {
+        this.metadata = dbm;
+        this.values = values;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * A read-only view of this row that can be shared between threads (Eg. cached query results).<br>
+     * setObject on the view throws UnsupportedOperationException and byte[] values are copied when read.
+     * The view shares values with this row, so this row shouldn't be changed afterwards either.
+     */
+    public DBRow toReadOnly() {
+        return readOnly ? this : new DBRow(metadata, values, true);
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Read the value for a field from the current row of the ResultSet, converted to the type DBRow returns for the field.
+     * CLOB and BLOB values can instead be a LobValue, as the LobPolicy says.
+     */
+    static Object readValue(DBFieldData field, ResultSet rs, LobPolicy lobs, TemporalTypes temporals) throws SQLException {
+        if (field.getType() == DBFieldType.DATE || field.getType() == DBFieldType.DATETIME || field.getType() == DBFieldType.TIME
+                || field.getType() == DBFieldType.DATETIME_OFFSET) {
+            return temporals.read(field.getType(), rs, field.getColumnNumber());
+        } else if (field.getType() == DBFieldType.CLOB) {
+            Object value = rs.getObject(field.getColumnNumber());
+            return value instanceof Clob ? LobValue.read((Clob) value, lobs) : value;
+        } else if (field.getType() == DBFieldType.BINARY) {
+            Object value = rs.getObject(field.getColumnNumber());
+            return value instanceof Blob ? LobValue.read((Blob) value, lobs) : value;
         } else {
-            for (DBFieldData field : dbm.getFieldData().values()) {
-                values.put(field.getName(), null);
-            }
+            return rs.getObject(field.getColumnNumber());
         }
     }
 
     /**
      * Return the value from the corresponding getXXX function depending on the type of the given field.
+     * DATE, DATETIME and TIME values are the Joda-Time or java.time objects the row was read with (see TemporalTypes), DATETIME_OFFSET values are OffsetDateTimes.
      */
     public Object getObject(String field) {
-        DBFieldData data = getFieldData(field);
+        return getObject(getFieldData(field));
+    }
+
+    /**
+     * Return the value from the corresponding getXXX function depending on the type of the given column (the first column is number 1).
+     * DATE, DATETIME and TIME values are the Joda-Time or java.time objects the row was read with (see TemporalTypes), DATETIME_OFFSET values are OffsetDateTimes.
+     */
+    public Object getObject(int column) {
+        return getObject(getFieldData(column));
+    }
+
+    private Object getObject(DBFieldData data) {
         switch (data.getType()) {
             case CHAR:
             case VARCHAR:
             case NVARCHAR:
             case CLOB:
-                return getString(field);
+                return getString(data);
             case LONG:
-                return getLong(field);
+                return getLong(data);
             case INT:
             case SHORT:
-                return getInt(field);
+                return getInt(data);
             case FLOAT:
-                return getFloat(field);
+                return getFloat(data);
             case DOUBLE:
-                return getDouble(field);
+                return getDouble(data);
             case DECIMAL:
-                return getDecimal(field);
+                return getDecimal(data);
             case DATE:
-                return getDate(field);
             case DATETIME:
-                return getDateTime(field);
             case TIME:
-                return getTime(field);
+                //Joda or java.time, as the row was read
+                return values[data.getColumnNumber() - 1];
+            case DATETIME_OFFSET:
+                return getOffsetDateTime(data);
             case BOOL:
-                return getBool(field);
+                return getBool(data);
             case BINARY:
-                return getBytes(field);
+                return getBytes(data);
             default:
-                throw new InvalidFieldException("Field [" + field + "] does not have a known representation");
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a known representation");
         }
     }
 
@@ -105,7 +151,20 @@ public class DBRow {
      * Change a key-value pair for this row. The class of value will be checked.
      */
     public void setObject(String field, Object value) {
-        DBFieldData data = getFieldData(field);
+        setObject(getFieldData(field), value);
+    }
+
+    /**
+     * Change the value of a column for this row (the first column is number 1). The class of value will be checked.
+     */
+    public void setObject(int column, Object value) {
+        setObject(getFieldData(column), value);
+    }
+
+    private void setObject(DBFieldData data, Object value) {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Row is read-only");
+        }
         if (value != null) {
             boolean correctType;
             switch (data.getType()) {
@@ -132,13 +191,16 @@ public class DBRow {
                     correctType = value instanceof BigDecimal;
                     break;
                 case DATE:
-                    correctType = value instanceof LocalDate;
+                    correctType = value instanceof LocalDate || value instanceof java.time.LocalDate;
                     break;
                 case DATETIME:
-                    correctType = value instanceof LocalDateTime;
+                    correctType = value instanceof LocalDateTime || value instanceof java.time.LocalDateTime;
                     break;
                 case TIME:
-                    correctType = value instanceof LocalTime;
+                    correctType = value instanceof LocalTime || value instanceof java.time.LocalTime;
+                    break;
+                case DATETIME_OFFSET:
+                    correctType = value instanceof OffsetDateTime;
                     break;
                 case BOOL:
                     correctType = value instanceof Boolean;
@@ -151,25 +213,37 @@ public class DBRow {
                     break;
             }
             if (!correctType) {
-                throw new InvalidFieldException("Invalid field type for field [" + field + "]: " + data.getType() + " " + (value.getClass().getName()));
+                throw new InvalidFieldException("Invalid field type for field [" + data.getCasedName() + "]: " + data.getType() + " " + (value.getClass().getName()));
             }
         }
-        values.put(field, value);
+        values[data.getColumnNumber() - 1] = value;
     }
 
     /**
-     * Returns the String value for CHAR, VARCHAR, NVARCHAR, and CLOB field types.
+     * Returns the String value for the CHAR, VARCHAR, NVARCHAR, and CLOB field types.
      */
     public String getString(String field) {
-        DBFieldData data = getFieldData(field);
+        return getString(getFieldData(field));
+    }
+
+    /**
+     * Returns the String value of a column (the first column is number 1) for the CHAR, VARCHAR, NVARCHAR, and CLOB field types.
+     */
+    public String getString(int column) {
+        return getString(getFieldData(column));
+    }
+
+    private String getString(DBFieldData data) {
         switch (data.getType()) {
             case CHAR:
             case VARCHAR:
             case NVARCHAR:
+                return (String) values[data.getColumnNumber() - 1];
             case CLOB:
-                return (String) values.get(data.getName());
+                Object value = values[data.getColumnNumber() - 1];
+                return value instanceof LobValue ? ((LobValue) value).string() : (String) value;
             default:
-                throw new InvalidFieldException("Field [" + field + "] does not have a String representation");
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a String representation");
         }
     }
 
@@ -177,12 +251,22 @@ public class DBRow {
      * Returns the Long value for the LONG field type.
      */
     public Long getLong(String field) {
-        DBFieldData data = getFieldData(field);
+        return getLong(getFieldData(field));
+    }
+
+    /**
+     * Returns the Long value of a column (the first column is number 1) for the LONG field type.
+     */
+    public Long getLong(int column) {
+        return getLong(getFieldData(column));
+    }
+
+    private Long getLong(DBFieldData data) {
         switch (data.getType()) {
             case LONG:
-                return (Long) values.get(data.getName());
+                return (Long) values[data.getColumnNumber() - 1];
             default:
-                throw new InvalidFieldException("Field [" + field + "] does not have a Long representation");
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a Long representation");
         }
     }
 
@@ -190,13 +274,23 @@ public class DBRow {
      * Returns the Integer value for the INT and SHORT field types.
      */
     public Integer getInt(String field) {
-        DBFieldData data = getFieldData(field);
+        return getInt(getFieldData(field));
+    }
+
+    /**
+     * Returns the Integer value of a column (the first column is number 1) for the INT and SHORT field types.
+     */
+    public Integer getInt(int column) {
+        return getInt(getFieldData(column));
+    }
+
+    private Integer getInt(DBFieldData data) {
         switch (data.getType()) {
             case INT:
             case SHORT:
-                return (Integer) values.get(data.getName());
+                return (Integer) values[data.getColumnNumber() - 1];
             default:
-                throw new InvalidFieldException("Field [" + field + "] does not have a Integer representation");
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a Integer representation");
         }
     }
 
@@ -204,12 +298,22 @@ public class DBRow {
      * Returns the Float value for the FLOAT field type.
      */
     public Float getFloat(String field) {
-        DBFieldData data = getFieldData(field);
+        return getFloat(getFieldData(field));
+    }
+
+    /**
+     * Returns the Float value of a column (the first column is number 1) for the FLOAT field type.
+     */
+    public Float getFloat(int column) {
+        return getFloat(getFieldData(column));
+    }
+
+    private Float getFloat(DBFieldData data) {
         switch (data.getType()) {
             case FLOAT:
-                return (Float) values.get(data.getName());
+                return (Float) values[data.getColumnNumber() - 1];
             default:
-                throw new InvalidFieldException("Field [" + field + "] does not have a Float representation");
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a Float representation");
         }
     }
 
@@ -217,12 +321,22 @@ public class DBRow {
      * Returns the Double value for the DOUBLE field type.
      */
     public Double getDouble(String field) {
-        DBFieldData data = getFieldData(field);
+        return getDouble(getFieldData(field));
+    }
+
+    /**
+     * Returns the Double value of a column (the first column is number 1) for the DOUBLE field type.
+     */
+    public Double getDouble(int column) {
+        return getDouble(getFieldData(column));
+    }
+
+    private Double getDouble(DBFieldData data) {
         switch (data.getType()) {
             case DOUBLE:
-                return (Double) values.get(data.getName());
+                return (Double) values[data.getColumnNumber() - 1];
             default:
-                throw new InvalidFieldException("Field [" + field + "] does not have a Double representation");
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a Double representation");
         }
     }
 
@@ -230,13 +344,22 @@ public class DBRow {
      * Returns the BigDecimal value for the DECIMAL field type.
      */
     public BigDecimal getDecimal(String field) {
-        DBFieldData data = getFieldData(field);
+        return getDecimal(getFieldData(field));
+    }
+
+    /**
+     * Returns the BigDecimal value of a column (the first column is number 1) for the DECIMAL field type.
+     */
+    public BigDecimal getDecimal(int column) {
+        return getDecimal(getFieldData(column));
+    }
+
+    private BigDecimal getDecimal(DBFieldData data) {
         switch (data.getType()) {
-            case DECIMAL: {
-                return (BigDecimal) values.get(data.getName());
-            }
+            case DECIMAL:
+                return (BigDecimal) values[data.getColumnNumber() - 1];
             default:
-                throw new InvalidFieldException("Field [" + field + "] does not have a BigDecimal representation");
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a BigDecimal representation");
         }
     }
 
@@ -244,12 +367,23 @@ public class DBRow {
      * Returns the LocalDate value for the DATE field type.
      */
     public LocalDate getDate(String field) {
-        DBFieldData data = getFieldData(field);
+        return getDate(getFieldData(field));
+    }
+
+    /**
+     * Returns the LocalDate value of a column (the first column is number 1) for the DATE field type.
+     */
+    public LocalDate getDate(int column) {
+        return getDate(getFieldData(column));
+    }
+
+    private LocalDate getDate(DBFieldData data) {
         switch (data.getType()) {
             case DATE:
-                return (LocalDate) values.get(data.getName());
+                Object value = values[data.getColumnNumber() - 1];
+                return value instanceof java.time.LocalDate ? TemporalTypes.toJoda((java.time.LocalDate) value) : (LocalDate) value;
             default:
-                throw new InvalidFieldException("Field [" + field + "] does not have a LocalDate representation");
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a LocalDate representation");
         }
     }
 
@@ -257,25 +391,142 @@ public class DBRow {
      * Returns the LocalDateTime value for the DATETIME field type.
      */
     public LocalDateTime getDateTime(String field) {
-        DBFieldData data = getFieldData(field);
+        return getDateTime(getFieldData(field));
+    }
+
+    /**
+     * Returns the LocalDateTime value of a column (the first column is number 1) for the DATETIME field type.
+     */
+    public LocalDateTime getDateTime(int column) {
+        return getDateTime(getFieldData(column));
+    }
+
+    private LocalDateTime getDateTime(DBFieldData data) {
         switch (data.getType()) {
             case DATETIME:
-                return (LocalDateTime) values.get(data.getName());
+                Object value = values[data.getColumnNumber() - 1];
+                return value instanceof java.time.LocalDateTime ? TemporalTypes.toJoda((java.time.LocalDateTime) value) : (LocalDateTime) value;
             default:
-                throw new InvalidFieldException("Field [" + field + "] does not have a LocalDateTime representation");
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a LocalDateTime representation");
         }
     }
 
     /**
-     * Returns the LocalTime value for the DATETIME field type.
+     * Returns the LocalTime value for the TIME field type.
      */
     public LocalTime getTime(String field) {
-        DBFieldData data = getFieldData(field);
+        return getTime(getFieldData(field));
+    }
+
+    /**
+     * Returns the LocalTime value of a column (the first column is number 1) for the TIME field type.
+     */
+    public LocalTime getTime(int column) {
+        return getTime(getFieldData(column));
+    }
+
+    private LocalTime getTime(DBFieldData data) {
+        switch (data.getType()) {
+            case TIME:
+                Object value = values[data.getColumnNumber() - 1];
+                return value instanceof java.time.LocalTime ? TemporalTypes.toJoda((java.time.LocalTime) value) : (LocalTime) value;
+            default:
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a LocalTime representation");
+        }
+    }
+
+    /**
+     * Returns the java.time LocalDate value for the DATE field type.
+     */
+    public java.time.LocalDate getLocalDate(String field) {
+        return getLocalDate(getFieldData(field));
+    }
+
+    /**
+     * Returns the java.time LocalDate value of a column (the first column is number 1) for the DATE field type.
+     */
+    public java.time.LocalDate getLocalDate(int column) {
+        return getLocalDate(getFieldData(column));
+    }
+
+    private java.time.LocalDate getLocalDate(DBFieldData data) {
+        switch (data.getType()) {
+            case DATE:
+                Object value = values[data.getColumnNumber() - 1];
+                return value instanceof LocalDate ? TemporalTypes.toJavaTime((LocalDate) value) : (java.time.LocalDate) value;
+            default:
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a LocalDate representation");
+        }
+    }
+
+    /**
+     * Returns the java.time LocalDateTime value for the DATETIME field type.
+     */
+    public java.time.LocalDateTime getLocalDateTime(String field) {
+        return getLocalDateTime(getFieldData(field));
+    }
+
+    /**
+     * Returns the java.time LocalDateTime value of a column (the first column is number 1) for the DATETIME field type.
+     */
+    public java.time.LocalDateTime getLocalDateTime(int column) {
+        return getLocalDateTime(getFieldData(column));
+    }
+
+    private java.time.LocalDateTime getLocalDateTime(DBFieldData data) {
+        switch (data.getType()) {
+            case DATETIME:
+                Object value = values[data.getColumnNumber() - 1];
+                return value instanceof LocalDateTime ? TemporalTypes.toJavaTime((LocalDateTime) value) : (java.time.LocalDateTime) value;
+            default:
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a LocalDateTime representation");
+        }
+    }
+
+    /**
+     * Returns the java.time LocalTime value for the TIME field type.
+     */
+    public java.time.LocalTime getLocalTime(String field) {
+        return getLocalTime(getFieldData(field));
+    }
+
+    /**
+     * Returns the java.time LocalTime value of a column (the first column is number 1) for the TIME field type.
+     */
+    public java.time.LocalTime getLocalTime(int column) {
+        return getLocalTime(getFieldData(column));
+    }
+
+    private java.time.LocalTime getLocalTime(DBFieldData data) {
         switch (data.getType()) {
             case TIME:
-                return (LocalTime) values.get(data.getName());
+                Object value = values[data.getColumnNumber() - 1];
+                return value instanceof LocalTime ? TemporalTypes.toJavaTime((LocalTime) value) : (java.time.LocalTime) value;
             default:
-                throw new InvalidFieldException("Field [" + field + "] does not have a LocalTime representation");
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a LocalTime representation");
+        }
+    }
+
+    /**
+     * Returns the OffsetDateTime value for the DATETIME_OFFSET field type.
+     */
+    public OffsetDateTime getOffsetDateTime(String field) {
+        return getOffsetDateTime(getFieldData(field));
+    }
+
+    /**
+     * Returns the OffsetDateTime value of a column (the first column is number 1) for the DATETIME_OFFSET field type.
+     */
+    public OffsetDateTime getOffsetDateTime(int column) {
+        return getOffsetDateTime(getFieldData(column));
+    }
+
+    private OffsetDateTime getOffsetDateTime(DBFieldData data) {
+        switch (data.getType()) {
+            case DATETIME_OFFSET:
+                return (OffsetDateTime) values[data.getColumnNumber() - 1];
+            default:
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have an OffsetDateTime representation");
         }
     }
 
@@ -283,12 +534,22 @@ public class DBRow {
      * Returns the Boolean value for the BOOL field type.
      */
     public Boolean getBool(String field) {
-        DBFieldData data = getFieldData(field);
+        return getBool(getFieldData(field));
+    }
+
+    /**
+     * Returns the Boolean value of a column (the first column is number 1) for the BOOL field type.
+     */
+    public Boolean getBool(int column) {
+        return getBool(getFieldData(column));
+    }
+
+    private Boolean getBool(DBFieldData data) {
         switch (data.getType()) {
             case BOOL:
-                return (Boolean) values.get(data.getName());
+                return (Boolean) values[data.getColumnNumber() - 1];
             default:
-                throw new InvalidFieldException("Field [" + field + "] does not have a Boolean representation");
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a Boolean representation");
         }
     }
 
@@ -296,26 +557,148 @@ public class DBRow {
      * Returns the byte[] value for the BINARY field type.
      */
     public byte[] getBytes(String field) {
-        DBFieldData data = getFieldData(field);
+        return getBytes(getFieldData(field));
+    }
+
+    /**
+     * Returns the byte[] value of a column (the first column is number 1) for the BINARY field type.
+     */
+    public byte[] getBytes(int column) {
+        return getBytes(getFieldData(column));
+    }
+
+    private byte[] getBytes(DBFieldData data) {
         switch (data.getType()) {
             case BINARY:
-                return (byte[]) values.get(data.getName());
+                Object value = values[data.getColumnNumber() - 1];
+                if (value instanceof LobValue) {
+                    return ((LobValue) value).bytes();
+                }
+                return readOnly && value != null ? ((byte[]) value).clone() : (byte[]) value;
             default:
-                throw new InvalidFieldException("Field [" + field + "] does not have a byte[] representation");
+                throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a byte[] representation");
+        }
+    }
+
+    /**
+     * Returns a Reader of the value for the CHAR, VARCHAR, NVARCHAR, and CLOB field types, null if the value is null.<br>
+     * A CLOB that wasn't read into memory (see LobPolicy) is read from the driver or its temp file as the Reader is read, so it can be larger than a String.
+     * The caller should close the Reader.
+     */
+    public Reader getReader(String field) {
+        return getReader(getFieldData(field));
+    }
+
+    /**
+     * Returns a Reader of the value of a column (the first column is number 1) for the CHAR, VARCHAR, NVARCHAR, and CLOB field types.
+     */
+    public Reader getReader(int column) {
+        return getReader(getFieldData(column));
+    }
+
+    private Reader getReader(DBFieldData data) {
+        Object value = data.getType() == DBFieldType.CLOB ? values[data.getColumnNumber() - 1] : getString(data);
+        if (value instanceof LobValue) {
+            return ((LobValue) value).reader();
+        }
+        return value == null ? null : new StringReader((String) value);
+    }
+
+    /**
+     * Returns an InputStream of the value for the BINARY field type, null if the value is null.<br>
+     * A BLOB that wasn't read into memory (see LobPolicy) is read from the driver or its temp file as the InputStream is read, so it can be larger than a byte[].
+     * The caller should close the InputStream.
+     */
+    public InputStream getInputStream(String field) {
+        return getInputStream(getFieldData(field));
+    }
+
+    /**
+     * Returns an InputStream of the value of a column (the first column is number 1) for the BINARY field type.
+     */
+    public InputStream getInputStream(int column) {
+        return getInputStream(getFieldData(column));
+    }
+
+    private InputStream getInputStream(DBFieldData data) {
+        if (data.getType() != DBFieldType.BINARY) {
+            throw new InvalidFieldException("Field [" + data.getCasedName() + "] does not have a byte[] representation");
+        }
+        Object value = values[data.getColumnNumber() - 1];
+        if (value instanceof LobValue) {
+            return ((LobValue) value).inputStream();
         }
+        return value == null ? null : new ByteArrayInputStream((byte[]) value);
+    }
+
+    /**
+     * The length of a CLOB (in characters) or BINARY (in bytes) value without reading it into memory, -1 if the value is null.
+     */
+    public long getLength(String field) {
+        return getLength(getFieldData(field));
+    }
+
+    /**
+     * The length of a CLOB (in characters) or BINARY (in bytes) value of a column (the first column is number 1), -1 if the value is null.
+     */
+    public long getLength(int column) {
+        return getLength(getFieldData(column));
+    }
+
+    private long getLength(DBFieldData data) {
+        if (data.getType() != DBFieldType.CLOB && data.getType() != DBFieldType.BINARY) {
+            throw new InvalidFieldException("Field [" + data.getCasedName() + "] is not a CLOB or BINARY field");
+        }
+        Object value = values[data.getColumnNumber() - 1];
+        if (value instanceof LobValue) {
+            return ((LobValue) value).length();
+        } else if (value instanceof String) {
+            return ((String) value).length();
+        }
+        return value == null ? -1 : ((byte[]) value).length;
+    }
+
+    /**
+     * A rough estimate of the memory used by this row and its values, LOBs that weren't read into memory count as a reference.
+     */
+    public long estimateBytes() {
+        long size = 48 + 8L * values.length;
+        for (Object value : values) {
+            if (value instanceof String) {
+                size += 40 + 2L * ((String) value).length();
+            } else if (value instanceof byte[]) {
+                size += 16 + ((byte[]) value).length;
+            } else if (value instanceof BigDecimal || value instanceof LobValue) {
+                size += 64;
+            } else if (value != null) {
+                size += 24;
+            }
+        }
+        return size;
     }
 
     /**
      * Get the DBFieldData instance for the provided field.
      */
     public DBFieldData getFieldData(String field) {
-        DBFieldData data = metadata.getFieldData().get(field.toLowerCase());
+        DBFieldData data = metadata.getField(field);
         if (data == null) {
             throw new InvalidFieldException("Field [" + field + "] not in row");
         }
         return data;
     }
 
+    /**
+     * Get the DBFieldData instance for the provided column number (the first column is number 1).
+     */
+    public DBFieldData getFieldData(int column) {
+        DBFieldData data = metadata.getField(column);
+        if (data == null) {
+            throw new InvalidFieldException("Column [" + column + "] not in row");
+        }
+        return data;
+    }
+
     /**
      * Metadata about the fields in the row.
      */
@@ -325,6 +708,13 @@ public class DBRow {
 
     @Override
     public String toString() {
-        return values.toString();
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(metadata.getField(i + 1).getName()).append('=').append(values[i]);
+        }
+        return sb.append('}').toString();
     }
 }
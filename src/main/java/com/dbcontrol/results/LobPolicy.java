@@ -0,0 +1,78 @@
+package com.dbcontrol.results;
+
+import java.io.File;
+
+/**
+ * How CLOB and BLOB values are read into a DBRow or DBResultTable.
+ * <ul>
+ * <li>{@link #eager()} reads every value into a String or byte[] while the row is read.</li>
+ * <li>{@link #streaming()} keeps the driver's Clob/Blob and reads nothing until the value is used, for rows that are used while their
+ * ResultSet is open (DBConnection.stream and queryHandle).</li>
+ * <li>{@link #spillOver(long, File)} reads small values into memory and copies larger values to temp files, which are read when the value is used
+ * and deleted once the row is garbage collected. Rows can outlive their ResultSet and connection while their memory stays bounded.</li>
+ * </ul>
+ */
+public final class LobPolicy {
+    private static final LobPolicy EAGER = new LobPolicy(false, Long.MAX_VALUE, null);
+    private static final LobPolicy STREAMING = new LobPolicy(true, Long.MAX_VALUE, null);
+
+    private final boolean streaming;
+    private final long spillBytes;
+    private final File directory;
+
+    private LobPolicy(boolean streaming, long spillBytes, File directory) {
+        this.streaming = streaming;
+        this.spillBytes = spillBytes;
+        this.directory = directory;
+    }
+
+    /**
+     * Read every LOB into memory (the behavior of the DBRow(DBMetaData, ResultSet) constructor).
+     */
+    public static LobPolicy eager() {
+        return EAGER;
+    }
+
+    /**
+     * Keep the driver's Clob/Blob, only valid while the ResultSet (or with most drivers, the transaction) is open.
+     */
+    public static LobPolicy streaming() {
+        return STREAMING;
+    }
+
+    /**
+     * Read LOBs into memory up to a size and copy larger LOBs to temp files.
+     *
+     * @param spillBytes the largest LOB to keep in memory, CLOBs count 2 bytes per character. 0 spills every non-null LOB
+     * @param directory  the directory for the temp files, null for java.io.tmpdir
+     */
+    public static LobPolicy spillOver(long spillBytes, File directory) {
+        return new LobPolicy(false, Math.max(0, spillBytes), directory);
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * The largest LOB read into memory, Long.MAX_VALUE if LOBs are never spilled.
+     */
+    public long getSpillBytes() {
+        return spillBytes;
+    }
+
+    /**
+     * The directory for spilled LOBs, null for java.io.tmpdir.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public String toString() {
+        if (streaming) {
+            return "streaming";
+        }
+        return spillBytes == Long.MAX_VALUE ? "eager" : "spillOver(" + spillBytes + (directory == null ? "" : ", " + directory) + ")";
+    }
+}
@@ -0,0 +1,296 @@
+package com.dbcontrol.results;
+
+import com.dbcontrol.exceptions.UncheckedSQLException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A CLOB or BLOB value that hasn't been read into memory, stored in a DBRow in place of its String or byte[].
+ */
+abstract class LobValue {
+    private static final Logger logger = LoggerFactory.getLogger(LobValue.class);
+
+    /**
+     * The length in characters for a CLOB or bytes for a BLOB.
+     */
+    abstract long length();
+
+    abstract Reader reader();
+
+    abstract InputStream inputStream();
+
+    /**
+     * Read the whole CLOB into a String.
+     */
+    String string() {
+        checkLength();
+        StringBuilder sb = new StringBuilder((int) length());
+        char[] buffer = new char[8192];
+        try (Reader reader = reader()) {
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Read the whole BLOB into a byte[].
+     */
+    byte[] bytes() {
+        checkLength();
+        byte[] bytes = new byte[(int) length()];
+        try (InputStream in = inputStream()) {
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes;
+    }
+
+    private void checkLength() {
+        if (length() > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("LOB of length " + length() + " is too large to read into memory, use getReader or getInputStream");
+        }
+    }
+
+    /**
+     * Read a Clob as the LobPolicy says: into a String, a SpilledLob or a DriverLob.
+     */
+    static Object read(Clob clob, LobPolicy lobs) throws SQLException {
+        if (lobs.isStreaming()) {
+            return new DriverLob(clob, null);
+        }
+        long length = clob.length();
+        if (length * 2 <= lobs.getSpillBytes()) {
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new SQLException("CLOB of length " + length + " is too large to read into a String");
+            }
+            return clob.getSubString(1, (int) length);
+        }
+        try (Reader reader = clob.getCharacterStream()) {
+            return SpilledLob.spill(reader, null, length, lobs.getDirectory());
+        } catch (IOException ex) {
+            throw new SQLException("Failed to spill CLOB to a temp file", ex);
+        } finally {
+            free(clob);
+        }
+    }
+
+    /**
+     * Read a Blob as the LobPolicy says: into a byte[], a SpilledLob or a DriverLob.
+     */
+    static Object read(Blob blob, LobPolicy lobs) throws SQLException {
+        if (lobs.isStreaming()) {
+            return new DriverLob(null, blob);
+        }
+        long length = blob.length();
+        if (length <= lobs.getSpillBytes()) {
+            if (length > Integer.MAX_VALUE - 8) {
+                throw new SQLException("BLOB of length " + length + " is too large to read into a byte[]");
+            }
+            return blob.getBytes(1, (int) length);
+        }
+        try (InputStream in = blob.getBinaryStream()) {
+            return SpilledLob.spill(null, in, length, lobs.getDirectory());
+        } catch (IOException ex) {
+            throw new SQLException("Failed to spill BLOB to a temp file", ex);
+        } finally {
+            free(blob);
+        }
+    }
+
+    private static void free(Clob clob) {
+        try {
+            clob.free();
+        } catch (SQLException | AbstractMethodError | UnsupportedOperationException ex) {
+            logger.debug("Failed to free CLOB", ex);
+        }
+    }
+
+    private static void free(Blob blob) {
+        try {
+            blob.free();
+        } catch (SQLException | AbstractMethodError | UnsupportedOperationException ex) {
+            logger.debug("Failed to free BLOB", ex);
+        }
+    }
+
+    /**
+     * The driver's Clob or Blob, read when it is used.
+     */
+    static final class DriverLob extends LobValue {
+        private final Clob clob;
+        private final Blob blob;
+
+        private DriverLob(Clob clob, Blob blob) {
+            this.clob = clob;
+            this.blob = blob;
+        }
+
+        @Override
+        long length() {
+            try {
+                return clob != null ? clob.length() : blob.length();
+            } catch (SQLException ex) {
+                throw new UncheckedSQLException(ex);
+            }
+        }
+
+        @Override
+        Reader reader() {
+            try {
+                return clob.getCharacterStream();
+            } catch (SQLException ex) {
+                throw new UncheckedSQLException(ex);
+            }
+        }
+
+        @Override
+        InputStream inputStream() {
+            try {
+                return blob.getBinaryStream();
+            } catch (SQLException ex) {
+                throw new UncheckedSQLException(ex);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return clob != null ? "<clob>" : "<blob>";
+        }
+    }
+
+    /**
+     * A LOB copied to a temp file (CLOBs as UTF-8), deleted once the SpilledLob is garbage collected.
+     */
+    static final class SpilledLob extends LobValue {
+        private static final ReferenceQueue<SpilledLob> collected = new ReferenceQueue<>();
+        //keeps the references reachable until they are enqueued
+        private static final Set<Cleanup> pending = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        private static Thread cleaner;
+
+        private final File file;
+        private final boolean clob;
+        private final long length;
+
+        private SpilledLob(File file, boolean clob, long length) {
+            this.file = file;
+            this.clob = clob;
+            this.length = length;
+        }
+
+        private static SpilledLob spill(Reader reader, InputStream in, long length, File directory) throws IOException {
+            startCleaner();
+            File file = File.createTempFile("dbcontrol-lob", ".tmp", directory);
+            try (OutputStream out = Files.newOutputStream(file.toPath())) {
+                if (reader != null) {
+                    Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                    char[] buffer = new char[8192];
+                    int read;
+                    while ((read = reader.read(buffer)) != -1) {
+                        writer.write(buffer, 0, read);
+                    }
+                    writer.flush();
+                } else {
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                }
+            } catch (IOException | RuntimeException ex) {
+                delete(file);
+                throw ex;
+            }
+            SpilledLob lob = new SpilledLob(file, reader != null, length);
+            pending.add(new Cleanup(lob, file));
+            return lob;
+        }
+
+        private static synchronized void startCleaner() {
+            if (cleaner == null) {
+                cleaner = new Thread(() -> {
+                    while (true) {
+                        try {
+                            Reference<? extends SpilledLob> reference = collected.remove();
+                            pending.remove(reference);
+                            delete(((Cleanup) reference).file);
+                        } catch (InterruptedException ex) {
+                            return;
+                        }
+                    }
+                }, "dbcontrol-lob-cleaner");
+                cleaner.setDaemon(true);
+                cleaner.start();
+            }
+        }
+
+        private static void delete(File file) {
+            if (!file.delete() && file.exists()) {
+                logger.warn("Failed to delete spilled LOB {}", file);
+            }
+        }
+
+        @Override
+        long length() {
+            return length;
+        }
+
+        @Override
+        Reader reader() {
+            return new InputStreamReader(inputStream(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        InputStream inputStream() {
+            try {
+                return Files.newInputStream(file.toPath());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "<" + (clob ? "clob" : "blob") + " of " + length + (clob ? " chars" : " bytes") + " in " + file.getName() + ">";
+        }
+    }
+
+    private static final class Cleanup extends PhantomReference<SpilledLob> {
+        private final File file;
+
+        private Cleanup(SpilledLob lob, File file) {
+            super(lob, SpilledLob.collected);
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.dbcontrol.results;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Creates an object from the current row of a ResultSet, reading each column by number with a typed getter instead of through a DBRow.
+ */
+public interface RowMapper<T> {
+    T map(ResultSet rs) throws SQLException;
+
+    /**
+     * The mapper for a class and the fields of a query, compiled with MethodHandles the first time a class is read from fields with those names and
+     * types, and cached afterwards.<br>
+     * Columns are matched to properties by name ignoring case and underscores (Eg. customer_id sets customerId). A class with a no argument
+     * constructor has its properties set with setXXX methods or fields, columns without a property are ignored. Other classes (Eg. immutable types)
+     * are created with the constructor whose parameter names all match columns (compiled with -parameters), or else the constructor with a
+     * parameter for each column in column order.
+     *
+     * @throws com.dbcontrol.exceptions.InvalidFieldException if the class can't be created from the fields
+     */
+    static <T> RowMapper<T> of(Class<T> type, DBMetaData dbm) {
+        return RowMappers.get(type, dbm);
+    }
+}
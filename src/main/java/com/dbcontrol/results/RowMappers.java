@@ -0,0 +1,549 @@
+package com.dbcontrol.results;
+
+import com.dbcontrol.exceptions.InvalidFieldException;
+import com.dbcontrol.results.DBMetaData.DBFieldData;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiles and caches RowMappers by class and the names and types of the fields they read.
+ */
+final class RowMappers {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final ClassValue<ConcurrentMap<Shape, RowMapper<?>>> MAPPERS = new ClassValue<ConcurrentMap<Shape, RowMapper<?>>>() {
+        @Override
+        protected ConcurrentMap<Shape, RowMapper<?>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private RowMappers() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> RowMapper<T> get(Class<T> type, DBMetaData dbm) {
+        ConcurrentMap<Shape, RowMapper<?>> mappers = MAPPERS.get(type);
+        Shape shape = new Shape(dbm);
+        RowMapper<?> mapper = mappers.get(shape);
+        if (mapper == null) {
+            mapper = compile(type, dbm);
+            RowMapper<?> existing = mappers.putIfAbsent(shape, mapper);
+            if (existing != null) {
+                mapper = existing;
+            }
+        }
+        return (RowMapper<T>) mapper;
+    }
+
+    /**
+     * The names and types of the fields of a query, in column order.
+     */
+    private static final class Shape {
+        private final String[] names;
+        private final DBMetaData.DBFieldType[] types;
+        private final int hash;
+
+        private Shape(DBMetaData dbm) {
+            names = new String[dbm.getColumnCount()];
+            types = new DBMetaData.DBFieldType[names.length];
+            for (int i = 0; i < names.length; i++) {
+                DBFieldData field = dbm.getField(i + 1);
+                names[i] = field.getName();
+                types[i] = field.getType();
+            }
+            hash = 31 * Arrays.hashCode(names) + Arrays.hashCode(types);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Shape)) {
+                return false;
+            }
+            Shape other = (Shape) o;
+            return hash == other.hash && Arrays.equals(names, other.names) && Arrays.equals(types, other.types);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static <T> RowMapper<T> compile(Class<T> type, DBMetaData dbm) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers()) || type.isPrimitive() || type.isArray()) {
+            throw new InvalidFieldException("Can't map rows to " + type.getName());
+        }
+        Map<String, DBFieldData> fields = new HashMap<>();
+        for (int i = 1; i <= dbm.getColumnCount(); i++) {
+            fields.putIfAbsent(propertyName(dbm.getField(i).getName()), dbm.getField(i));
+        }
+        try {
+            Constructor<?> noArgs = null;
+            for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+                if (constructor.getParameterCount() == 0) {
+                    noArgs = constructor;
+                }
+            }
+            if (noArgs != null) {
+                return new PropertyMapper<>(type, unreflect(noArgs), bindings(type, fields));
+            }
+            return constructorMapper(type, dbm, fields);
+        } catch (IllegalAccessException ex) {
+            throw new InvalidFieldException("Can't access " + type.getName() + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Column and property names compared without case or underscores.
+     */
+    private static String propertyName(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static MethodHandle unreflect(Constructor<?> constructor) throws IllegalAccessException {
+        constructor.setAccessible(true);
+        return LOOKUP.unreflectConstructor(constructor);
+    }
+
+    /**
+     * A binding for each column with a setXXX method or field, setters take precedence and subclasses hide their superclasses.
+     */
+    private static List<Binding> bindings(Class<?> type, Map<String, DBFieldData> fields) throws IllegalAccessException {
+        Map<String, Binding> bindings = new HashMap<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (method.getName().length() > 3 && method.getName().startsWith("set") && method.getParameterCount() == 1
+                        && !Modifier.isStatic(method.getModifiers()) && !method.isBridge()) {
+                    String property = propertyName(method.getName().substring(3));
+                    DBFieldData field = fields.get(property);
+                    if (field != null && !bindings.containsKey(property)) {
+                        method.setAccessible(true);
+                        bindings.put(property, binding(field, method.getParameterTypes()[0], LOOKUP.unreflect(method)));
+                    }
+                }
+            }
+        }
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field f : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(f.getModifiers()) && !Modifier.isFinal(f.getModifiers()) && !f.isSynthetic()) {
+                    String property = propertyName(f.getName());
+                    DBFieldData field = fields.get(property);
+                    if (field != null && !bindings.containsKey(property)) {
+                        f.setAccessible(true);
+                        bindings.put(property, binding(field, f.getType(), LOOKUP.unreflectSetter(f)));
+                    }
+                }
+            }
+        }
+        List<Binding> ordered = new ArrayList<>(bindings.values());
+        ordered.sort((a, b) -> Integer.compare(a.column, b.column));
+        return ordered;
+    }
+
+    /**
+     * Bind primitive properties with typed getters so values aren't boxed, and read objects as their property's type.
+     */
+    private static Binding binding(DBFieldData field, Class<?> type, MethodHandle setter) {
+        int column = field.getColumnNumber();
+        if (type == long.class) {
+            return new LongBinding(column, setter.asType(MethodType.methodType(void.class, Object.class, long.class)));
+        } else if (type == int.class) {
+            return new IntBinding(column, setter.asType(MethodType.methodType(void.class, Object.class, int.class)));
+        } else if (type == short.class) {
+            return new ShortBinding(column, setter.asType(MethodType.methodType(void.class, Object.class, short.class)));
+        } else if (type == byte.class) {
+            return new ByteBinding(column, setter.asType(MethodType.methodType(void.class, Object.class, byte.class)));
+        } else if (type == double.class) {
+            return new DoubleBinding(column, setter.asType(MethodType.methodType(void.class, Object.class, double.class)));
+        } else if (type == float.class) {
+            return new FloatBinding(column, setter.asType(MethodType.methodType(void.class, Object.class, float.class)));
+        } else if (type == boolean.class) {
+            return new BooleanBinding(column, setter.asType(MethodType.methodType(void.class, Object.class, boolean.class)));
+        }
+        return new ObjectBinding(column, reader(field, type), setter.asType(MethodType.methodType(void.class, Object.class, Object.class)));
+    }
+
+    private static <T> RowMapper<T> constructorMapper(Class<T> type, DBMetaData dbm, Map<String, DBFieldData> fields) throws IllegalAccessException {
+        Constructor<?> chosen = null;
+        DBFieldData[] chosenFields = null;
+        //the constructor with the most parameters whose names are all columns
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            Parameter[] parameters = constructor.getParameters();
+            if (chosen != null && parameters.length <= chosenFields.length) {
+                continue;
+            }
+            DBFieldData[] matched = new DBFieldData[parameters.length];
+            for (int i = 0; i < parameters.length && matched != null; i++) {
+                matched[i] = parameters[i].isNamePresent() ? fields.get(propertyName(parameters[i].getName())) : null;
+                if (matched[i] == null) {
+                    matched = null;
+                }
+            }
+            if (matched != null) {
+                chosen = constructor;
+                chosenFields = matched;
+            }
+        }
+        if (chosen == null) {
+            for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+                if (constructor.getParameterCount() == dbm.getColumnCount()) {
+                    chosen = constructor;
+                    chosenFields = new DBFieldData[dbm.getColumnCount()];
+                    for (int i = 0; i < chosenFields.length; i++) {
+                        chosenFields[i] = dbm.getField(i + 1);
+                    }
+                    break;
+                }
+            }
+        }
+        if (chosen == null) {
+            throw new InvalidFieldException("No constructor of " + type.getName() + " matches the fields " + dbm.getFieldData().keySet());
+        }
+        Class<?>[] parameterTypes = chosen.getParameterTypes();
+        ColumnReader[] readers = new ColumnReader[parameterTypes.length];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = reader(chosenFields[i], parameterTypes[i]);
+            if (parameterTypes[i].isPrimitive()) {
+                readers[i] = orDefault(readers[i], parameterTypes[i]);
+            }
+        }
+        MethodHandle constructor = unreflect(chosen).asSpreader(Object[].class, readers.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return new ConstructorMapper<>(type, constructor, readers, chosenFields);
+    }
+
+    /**
+     * Null values for primitive parameters are passed as 0/false.
+     */
+    private static ColumnReader orDefault(ColumnReader reader, Class<?> primitive) {
+        Object zero = Array.get(Array.newInstance(primitive, 1), 0);
+        return (rs, column) -> {
+            Object value = reader.read(rs, column);
+            return value == null ? zero : value;
+        };
+    }
+
+    /**
+     * Reads a column as a type with a typed getter, null for SQL NULL.
+     */
+    private interface ColumnReader {
+        Object read(ResultSet rs, int column) throws SQLException;
+    }
+
+    private static ColumnReader reader(DBFieldData field, Class<?> type) {
+        if (type == String.class) {
+            return ResultSet::getString;
+        } else if (type == long.class || type == Long.class) {
+            return (rs, column) -> {
+                long value = rs.getLong(column);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (type == int.class || type == Integer.class) {
+            return (rs, column) -> {
+                int value = rs.getInt(column);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (type == short.class || type == Short.class) {
+            return (rs, column) -> {
+                short value = rs.getShort(column);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (type == byte.class || type == Byte.class) {
+            return (rs, column) -> {
+                byte value = rs.getByte(column);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (type == double.class || type == Double.class) {
+            return (rs, column) -> {
+                double value = rs.getDouble(column);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (type == float.class || type == Float.class) {
+            return (rs, column) -> {
+                float value = rs.getFloat(column);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (type == boolean.class || type == Boolean.class) {
+            return (rs, column) -> {
+                boolean value = rs.getBoolean(column);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (type == BigDecimal.class) {
+            return ResultSet::getBigDecimal;
+        } else if (type == byte[].class) {
+            return ResultSet::getBytes;
+        } else if (type == LocalDate.class) {
+            return (rs, column) -> {
+                java.sql.Date value = rs.getDate(column);
+                return value == null ? null : new LocalDate(value.getTime());
+            };
+        } else if (type == LocalDateTime.class) {
+            return (rs, column) -> {
+                Timestamp value = rs.getTimestamp(column);
+                return value == null ? null : new LocalDateTime(value.getTime());
+            };
+        } else if (type == LocalTime.class) {
+            return (rs, column) -> {
+                Time value = rs.getTime(column);
+                return value == null ? null : new LocalTime(value.getTime());
+            };
+        } else if (type == java.time.LocalDate.class) {
+            return (rs, column) -> TemporalTypes.readJavaTime(DBMetaData.DBFieldType.DATE, rs, column);
+        } else if (type == java.time.LocalDateTime.class) {
+            return (rs, column) -> TemporalTypes.readJavaTime(DBMetaData.DBFieldType.DATETIME, rs, column);
+        } else if (type == java.time.LocalTime.class) {
+            return (rs, column) -> TemporalTypes.readJavaTime(DBMetaData.DBFieldType.TIME, rs, column);
+        } else if (type == java.time.OffsetDateTime.class) {
+            return (rs, column) -> TemporalTypes.readJavaTime(DBMetaData.DBFieldType.DATETIME_OFFSET, rs, column);
+        } else if (type == java.time.Instant.class) {
+            return (rs, column) -> {
+                Timestamp value = rs.getTimestamp(column);
+                return value == null ? null : value.toInstant();
+            };
+        } else if (type == java.sql.Date.class) {
+            return ResultSet::getDate;
+        } else if (type == Timestamp.class || type == java.util.Date.class) {
+            return ResultSet::getTimestamp;
+        } else if (type == Time.class) {
+            return ResultSet::getTime;
+        } else if (type.isEnum()) {
+            return enumReader(type.asSubclass(Enum.class));
+        } else if (type == Object.class) {
+            LobPolicy lobs = LobPolicy.eager();
+            return (rs, column) -> DBRow.readValue(field, rs, lobs, TemporalTypes.JODA);
+        }
+        return (rs, column) -> rs.getObject(column, type);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ColumnReader enumReader(Class<? extends Enum> type) {
+        return (rs, column) -> {
+            String value = rs.getString(column);
+            return value == null ? null : Enum.valueOf(type, value);
+        };
+    }
+
+    private static SQLException mappingException(Class<?> type, Throwable ex) throws SQLException {
+        if (ex instanceof SQLException) {
+            throw (SQLException) ex;
+        } else if (ex instanceof RuntimeException) {
+            throw (RuntimeException) ex;
+        } else if (ex instanceof Error) {
+            throw (Error) ex;
+        }
+        return new SQLException("Failed to map a row to " + type.getName(), ex);
+    }
+
+    /**
+     * Creates objects with a no argument constructor and sets each bound column.
+     */
+    private static final class PropertyMapper<T> implements RowMapper<T> {
+        private final Class<T> type;
+        private final MethodHandle constructor;
+        private final Binding[] bindings;
+
+        private PropertyMapper(Class<T> type, MethodHandle constructor, List<Binding> bindings) {
+            this.type = type;
+            this.constructor = constructor.asType(MethodType.methodType(Object.class));
+            this.bindings = bindings.toArray(new Binding[0]);
+        }
+
+        @Override
+        public T map(ResultSet rs) throws SQLException {
+            try {
+                Object target = (Object) constructor.invokeExact();
+                for (Binding binding : bindings) {
+                    binding.bind(target, rs);
+                }
+                return type.cast(target);
+            } catch (Throwable ex) {
+                throw mappingException(type, ex);
+            }
+        }
+    }
+
+    /**
+     * Creates objects with a constructor, reading a column for each parameter.
+     */
+    private static final class ConstructorMapper<T> implements RowMapper<T> {
+        private final Class<T> type;
+        private final MethodHandle constructor;
+        private final ColumnReader[] readers;
+        private final int[] columns;
+
+        private ConstructorMapper(Class<T> type, MethodHandle constructor, ColumnReader[] readers, DBFieldData[] fields) {
+            this.type = type;
+            this.constructor = constructor;
+            this.readers = readers;
+            this.columns = new int[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                columns[i] = fields[i].getColumnNumber();
+            }
+        }
+
+        @Override
+        public T map(ResultSet rs) throws SQLException {
+            Object[] args = new Object[readers.length];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = readers[i].read(rs, columns[i]);
+            }
+            try {
+                return type.cast((Object) constructor.invokeExact(args));
+            } catch (Throwable ex) {
+                throw mappingException(type, ex);
+            }
+        }
+    }
+
+    private abstract static class Binding {
+        final int column;
+        final MethodHandle setter;
+
+        Binding(int column, MethodHandle setter) {
+            this.column = column;
+            this.setter = setter;
+        }
+
+        abstract void bind(Object target, ResultSet rs) throws Throwable;
+    }
+
+    /**
+     * Primitive bindings leave the property unset for SQL NULL.
+     */
+    private static final class LongBinding extends Binding {
+        LongBinding(int column, MethodHandle setter) {
+            super(column, setter);
+        }
+
+        @Override
+        void bind(Object target, ResultSet rs) throws Throwable {
+            long value = rs.getLong(column);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class IntBinding extends Binding {
+        IntBinding(int column, MethodHandle setter) {
+            super(column, setter);
+        }
+
+        @Override
+        void bind(Object target, ResultSet rs) throws Throwable {
+            int value = rs.getInt(column);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    //short, byte and float are read with their own getters so the driver rejects values out of range instead of them being truncated
+    private static final class ShortBinding extends Binding {
+        ShortBinding(int column, MethodHandle setter) {
+            super(column, setter);
+        }
+
+        @Override
+        void bind(Object target, ResultSet rs) throws Throwable {
+            short value = rs.getShort(column);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class ByteBinding extends Binding {
+        ByteBinding(int column, MethodHandle setter) {
+            super(column, setter);
+        }
+
+        @Override
+        void bind(Object target, ResultSet rs) throws Throwable {
+            byte value = rs.getByte(column);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class FloatBinding extends Binding {
+        FloatBinding(int column, MethodHandle setter) {
+            super(column, setter);
+        }
+
+        @Override
+        void bind(Object target, ResultSet rs) throws Throwable {
+            float value = rs.getFloat(column);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class DoubleBinding extends Binding {
+        DoubleBinding(int column, MethodHandle setter) {
+            super(column, setter);
+        }
+
+        @Override
+        void bind(Object target, ResultSet rs) throws Throwable {
+            double value = rs.getDouble(column);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class BooleanBinding extends Binding {
+        BooleanBinding(int column, MethodHandle setter) {
+            super(column, setter);
+        }
+
+        @Override
+        void bind(Object target, ResultSet rs) throws Throwable {
+            boolean value = rs.getBoolean(column);
+            if (!rs.wasNull()) {
+                setter.invokeExact(target, value);
+            }
+        }
+    }
+
+    private static final class ObjectBinding extends Binding {
+        private final ColumnReader reader;
+
+        ObjectBinding(int column, ColumnReader reader, MethodHandle setter) {
+            super(column, setter);
+            this.reader = reader;
+        }
+
+        @Override
+        void bind(Object target, ResultSet rs) throws Throwable {
+            setter.invokeExact(target, reader.read(rs, column));
+        }
+    }
+}
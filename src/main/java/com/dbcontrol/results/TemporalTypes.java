@@ -0,0 +1,141 @@
+package com.dbcontrol.results;
+
+import com.dbcontrol.results.DBMetaData.DBFieldType;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+
+import java.sql.ResultSet;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+
+/**
+ * Which classes DBRows hold DATE, DATETIME and TIME values as (DATETIME_OFFSET values are always java.time.OffsetDateTime).
+ */
+public enum TemporalTypes {
+    /**
+     * Joda-Time LocalDate, LocalDateTime and LocalTime, converted from java.sql.Date, Timestamp and Time (the default).
+     */
+    JODA,
+    /**
+     * java.time LocalDate, LocalDateTime and LocalTime read with ResultSet.getObject(column, Class) (JDBC 4.2) without java.sql or Joda objects
+     * in between. Drivers that don't support java.time in getObject (Eg. Derby) are read through java.sql types instead.
+     */
+    JAVA_TIME;
+
+    //ResultSet classes whose getObject(int, Class) failed for java.time classes
+    private static final ClassValue<boolean[]> UNSUPPORTED = new ClassValue<boolean[]>() {
+        @Override
+        protected boolean[] computeValue(Class<?> type) {
+            return new boolean[1];
+        }
+    };
+
+    /**
+     * Read a DATE, DATETIME, TIME or DATETIME_OFFSET column as these types.
+     */
+    Object read(DBFieldType type, ResultSet rs, int column) throws SQLException {
+        if (this == JODA && type != DBFieldType.DATETIME_OFFSET) {
+            return readJoda(type, rs, column);
+        }
+        return readJavaTime(type, rs, column);
+    }
+
+    private static Object readJoda(DBFieldType type, ResultSet rs, int column) throws SQLException {
+        switch (type) {
+            case DATE:
+                java.sql.Date date = (java.sql.Date) rs.getObject(column);
+                return date == null ? null : new LocalDate(date.getTime());
+            case DATETIME:
+                Timestamp timestamp = (Timestamp) rs.getObject(column);
+                return timestamp == null ? null : new LocalDateTime(timestamp.getTime());
+            case TIME:
+                Time time = (Time) rs.getObject(column);
+                return time == null ? null : new LocalTime(time.getTime());
+            default:
+                throw new IllegalArgumentException(type.toString());
+        }
+    }
+
+    static Object readJavaTime(DBFieldType type, ResultSet rs, int column) throws SQLException {
+        boolean[] unsupported = UNSUPPORTED.get(rs.getClass());
+        if (!unsupported[0]) {
+            try {
+                return rs.getObject(column, javaTimeClass(type));
+            } catch (SQLFeatureNotSupportedException | AbstractMethodError ex) {
+                unsupported[0] = true;
+            } catch (SQLDataException ex) {
+                //only a conversion error (Eg. Derby's) means the driver can't read java.time, other data errors fall back for this value
+                unsupported[0] = isUnsupportedConversion(ex);
+            }
+        }
+        switch (type) {
+            case DATE:
+                java.sql.Date date = rs.getDate(column);
+                return date == null ? null : date.toLocalDate();
+            case DATETIME:
+                Timestamp timestamp = rs.getTimestamp(column);
+                return timestamp == null ? null : timestamp.toLocalDateTime();
+            case TIME:
+                Time time = rs.getTime(column);
+                return time == null ? null : time.toLocalTime();
+            default:
+                Timestamp instant = rs.getTimestamp(column);
+                return instant == null ? null : OffsetDateTime.ofInstant(instant.toInstant(), ZoneId.systemDefault());
+        }
+    }
+
+    /**
+     * Whether a SQLDataException from getObject/setObject with a java.time value is the driver not supporting the class (SQLState 22005,
+     * Eg. Derby) rather than a bad value.
+     */
+    public static boolean isUnsupportedConversion(SQLDataException ex) {
+        return "22005".equals(ex.getSQLState());
+    }
+
+    private static Class<?> javaTimeClass(DBFieldType type) {
+        switch (type) {
+            case DATE:
+                return java.time.LocalDate.class;
+            case DATETIME:
+                return java.time.LocalDateTime.class;
+            case TIME:
+                return java.time.LocalTime.class;
+            case DATETIME_OFFSET:
+                return OffsetDateTime.class;
+            default:
+                throw new IllegalArgumentException(type.toString());
+        }
+    }
+
+    static LocalDate toJoda(java.time.LocalDate date) {
+        return new LocalDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+
+    static LocalDateTime toJoda(java.time.LocalDateTime dateTime) {
+        return new LocalDateTime(dateTime.getYear(), dateTime.getMonthValue(), dateTime.getDayOfMonth(),
+                dateTime.getHour(), dateTime.getMinute(), dateTime.getSecond(), dateTime.getNano() / 1000000);
+    }
+
+    static LocalTime toJoda(java.time.LocalTime time) {
+        return new LocalTime(time.getHour(), time.getMinute(), time.getSecond(), time.getNano() / 1000000);
+    }
+
+    static java.time.LocalDate toJavaTime(LocalDate date) {
+        return java.time.LocalDate.of(date.getYear(), date.getMonthOfYear(), date.getDayOfMonth());
+    }
+
+    static java.time.LocalDateTime toJavaTime(LocalDateTime dateTime) {
+        return java.time.LocalDateTime.of(dateTime.getYear(), dateTime.getMonthOfYear(), dateTime.getDayOfMonth(),
+                dateTime.getHourOfDay(), dateTime.getMinuteOfHour(), dateTime.getSecondOfMinute(), dateTime.getMillisOfSecond() * 1000000);
+    }
+
+    static java.time.LocalTime toJavaTime(LocalTime time) {
+        return java.time.LocalTime.of(time.getHourOfDay(), time.getMinuteOfHour(), time.getSecondOfMinute(), time.getMillisOfSecond() * 1000000);
+    }
+}
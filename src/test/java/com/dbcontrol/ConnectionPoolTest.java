@@ -0,0 +1,105 @@
+package com.dbcontrol;
+
+import com.dbcontrol.config.DBControlConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionPoolTest {
+    private DBControlConfig config;
+    private PooledDBControl db;
+
+    @Before
+    public void setUp() throws Exception {
+        config = DBControlConfig.derby("memory:connectionpooltest;create=true");
+        config.setMinPoolSize(0);
+        config.setMaxPoolSize(1);
+        db = new PooledDBControl();
+        db.init(config);
+        db.withConnection(c -> c.alterExecute("CREATE TABLE item (id INT)"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (db != null) {
+            db.withConnection(c -> c.alterExecute("DROP TABLE item"));
+            db.close();
+        }
+    }
+
+    @Test
+    public void readOnlyIsResetOnRelease() throws SQLException {
+        db.withConnection(c -> {
+            c.setReadOnly(true);
+            return null;
+        });
+        //the pool only has one connection, so this is the one that was left read-only
+        assertEquals(1, db.withConnection(c -> c.directExecute("INSERT INTO item VALUES (1)")).intValue());
+    }
+
+    @Test
+    public void isolationIsResetOnRelease() throws SQLException {
+        String isolation = db.withConnection(c -> c.query("VALUES CURRENT ISOLATION").get(0).getString(1));
+        db.withConnection(c -> c.directExecute("SET ISOLATION SERIALIZABLE"));
+        assertEquals(isolation, db.withConnection(c -> c.query("VALUES CURRENT ISOLATION").get(0).getString(1)));
+    }
+
+    @Test
+    public void connectionCheckedOutWhenClosedIsClosedOnRelease() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(config, new StatementCacheStats());
+        pool.start();
+        ConnectionPool.Entry entry = pool.borrow();
+        pool.close();
+        assertFalse(entry.connection.isClosed());
+        pool.release(entry);
+        assertTrue(entry.connection.isClosed());
+        assertEquals(0, pool.getTotalConnections());
+    }
+
+    @Test
+    public void releaseRacingCloseClosesEveryConnection() throws Exception {
+        DBControlConfig racing = DBControlConfig.derby("memory:connectionpooltest;create=true");
+        racing.setMinPoolSize(0);
+        racing.setMaxPoolSize(8);
+        for (int run = 0; run < 20; run++) {
+            ConnectionPool pool = new ConnectionPool(racing, new StatementCacheStats());
+            pool.start();
+            List<ConnectionPool.Entry> borrowed = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                borrowed.add(pool.borrow());
+            }
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (ConnectionPool.Entry entry : borrowed) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    pool.release(entry);
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            pool.close();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            for (ConnectionPool.Entry entry : borrowed) {
+                assertTrue(entry.connection.isClosed());
+            }
+            assertEquals(0, pool.getTotalConnections());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.dbcontrol.named;
+
+import com.dbcontrol.PooledDBControl;
+import com.dbcontrol.config.DBControlConfig;
+import com.dbcontrol.results.DBRow;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class NamedQueryTest {
+    private PooledDBControl db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = new PooledDBControl();
+        db.init(DBControlConfig.derby("memory:namedquerytest;create=true"));
+        db.withConnection(c -> {
+            c.alterExecute("CREATE TABLE item (id INT, v INT)");
+            c.directExecute("INSERT INTO item VALUES (1, 10), (2, 20), (3, 30), (4, 40), (5, 50)");
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        db.withConnection(c -> c.alterExecute("DROP TABLE item"));
+        db.close();
+    }
+
+    private List<Integer> ids(List<DBRow> rows) {
+        List<Integer> ids = new ArrayList<>();
+        for (DBRow row : rows) {
+            ids.add(row.getInt("id"));
+        }
+        return ids;
+    }
+
+    @Test
+    public void emptyCollectionIsRejected() throws SQLException {
+        try {
+            db.withConnection(c -> new NamedQuery("SELECT * FROM item WHERE id NOT IN (#ids)").param("ids", Collections.emptyList()).query(c));
+            fail("empty collection was bound");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Collection parameter is empty: ids", ex.getMessage());
+        }
+        try {
+            db.withConnection(c -> new NamedQuery("SELECT * FROM item WHERE id IN (#ids)").param("ids", new int[0]).query(c));
+            fail("empty array was bound");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("Collection parameter is empty: ids", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void plainInIsSplit() throws SQLException {
+        List<DBRow> rows = db.withConnection(c -> new NamedQuery("SELECT * FROM item WHERE id IN (#ids)")
+                .param("ids", Arrays.asList(1, 2, 4, 5, 2)).maxListSize(2).query(c));
+        List<Integer> ids = ids(rows);
+        Collections.sort(ids);
+        assertEquals(Arrays.asList(1, 2, 4, 5), ids);
+    }
+
+    @Test
+    public void notInIsNotSplit() throws SQLException {
+        try {
+            db.withConnection(c -> new NamedQuery("SELECT * FROM item WHERE id NOT IN (#ids)")
+                    .param("ids", Arrays.asList(1, 2, 3)).maxListSize(2).query(c));
+            fail("NOT IN was split");
+        } catch (IllegalArgumentException expected) {
+        }
+        List<DBRow> rows = db.withConnection(c -> new NamedQuery("SELECT * FROM item WHERE id NOT IN (#ids)")
+                .param("ids", Arrays.asList(1, 2, 3)).query(c));
+        assertEquals(Arrays.asList(4, 5), ids(rows));
+    }
+
+    @Test
+    public void orderByIsNotSplit() throws SQLException {
+        try {
+            db.withConnection(c -> new NamedQuery("SELECT * FROM item WHERE id IN (#ids) ORDER BY v DESC")
+                    .param("ids", Arrays.asList(1, 3, 5)).maxListSize(2).query(c));
+            fail("ORDER BY was split");
+        } catch (IllegalArgumentException expected) {
+        }
+        List<DBRow> rows = db.withConnection(c -> new NamedQuery("SELECT * FROM item WHERE id IN (#ids) ORDER BY v DESC")
+                .param("ids", Arrays.asList(1, 3, 5)).query(c));
+        assertEquals(Arrays.asList(5, 3, 1), ids(rows));
+    }
+
+    @Test
+    public void aggregateIsNotSplit() throws SQLException {
+        try {
+            db.withConnection(c -> new NamedQuery("SELECT COUNT(*) AS n FROM item WHERE id IN (#ids)")
+                    .param("ids", Arrays.asList(1, 3, 5)).maxListSize(2).query(c));
+            fail("COUNT(*) was split");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void keywordsInLiteralsDontPreventSplit() throws SQLException {
+        List<DBRow> rows = db.withConnection(c -> new NamedQuery("SELECT id, 'not ordered' AS label FROM item WHERE id IN (#ids) -- ORDER BY id")
+                .param("ids", Arrays.asList(1, 3, 5)).maxListSize(2).query(c));
+        assertEquals(3, rows.size());
+    }
+}